@@ -0,0 +1,71 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.benchmarks;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.common.BrotliCommon;
+import com.aayushatharva.brotli4j.encoder.PreparedDictionary;
+import com.aayushatharva.brotli4j.encoder.PreparedDictionaryGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link PreparedDictionaryGenerator} across dictionary sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedDictionaryGeneratorBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private ByteBuffer source;
+
+    @Setup
+    public void setup() {
+        Brotli4jLoader.ensureAvailability();
+        // Text-like content: skewed alphabet, so that buckets fill unevenly.
+        byte[] dictionary = new byte[size];
+        Random random = new Random(5);
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = (byte) ('a' + random.nextInt(random.nextInt(26) + 1));
+        }
+        source = BrotliCommon.makeNative(dictionary);
+    }
+
+    @Benchmark
+    public PreparedDictionary generate() {
+        return PreparedDictionaryGenerator.generate(source);
+    }
+}
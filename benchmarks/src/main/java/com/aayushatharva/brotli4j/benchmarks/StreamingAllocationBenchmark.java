@@ -0,0 +1,210 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.benchmarks;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.decoder.UnsynchronizedDecoderChannel;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.UnsynchronizedEncoderChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small writes and reads through the single-owner channels and the streams. Run with {@code -prof gc}:
+ * steady state allocates nothing per operation except the buffer view that native code creates for
+ * each output chunk, amortized over the operations that fill the chunk. Reads restart the stream
+ * once it ends, which adds a tiny amortized share of the decoder setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingAllocationBenchmark {
+
+    private static final int CHUNK_SIZE = 64;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int BLOCK_COUNT = 4096;
+
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    private byte[] compressed;
+    private UnsynchronizedEncoderChannel encoderChannel;
+    private BrotliOutputStream outputStream;
+    private UnsynchronizedDecoderChannel decoderChannel;
+    private BrotliInputStream inputStream;
+    private int value;
+
+    @Setup
+    public void setup() throws IOException {
+        Brotli4jLoader.ensureAvailability();
+        byte[] block = new byte[BLOCK_SIZE];
+        Random random = new Random(5);
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) ('a' + random.nextInt(random.nextInt(26) + 1));
+        }
+        // 256 MiB of content, so that reads rarely hit the end of the stream.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (UnsynchronizedEncoderChannel encoder = new UnsynchronizedEncoderChannel(Channels.newChannel(out),
+                Encoder.Parameters.create(1, 22))) {
+            for (int i = 0; i < BLOCK_COUNT; i++) {
+                encoder.write(ByteBuffer.wrap(block));
+            }
+        }
+        compressed = out.toByteArray();
+        System.arraycopy(block, 0, chunk.array(), 0, CHUNK_SIZE);
+
+        encoderChannel = new UnsynchronizedEncoderChannel(new DiscardingChannel(), Encoder.Parameters.create(1));
+        outputStream = new BrotliOutputStream(new DiscardingStream(), Encoder.Parameters.create(1));
+        openDecoders();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        encoderChannel.close();
+        outputStream.close();
+        decoderChannel.close();
+        inputStream.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void openDecoders() throws IOException {
+        if (decoderChannel != null) {
+            decoderChannel.close();
+            inputStream.close();
+        }
+        decoderChannel = new UnsynchronizedDecoderChannel(new ArrayChannel(compressed));
+        inputStream = new BrotliInputStream(new ByteArrayInputStream(compressed));
+    }
+
+    @Benchmark
+    public int channelWrite() throws IOException {
+        ((Buffer) chunk).clear();
+        return encoderChannel.write(chunk);
+    }
+
+    @Benchmark
+    public void streamWrite() throws IOException {
+        outputStream.write(value++);
+    }
+
+    @Benchmark
+    public int channelRead() throws IOException {
+        ((Buffer) chunk).clear();
+        int read = decoderChannel.read(chunk);
+        if (read < 0) {
+            decoderChannel.close();
+            decoderChannel = new UnsynchronizedDecoderChannel(new ArrayChannel(compressed));
+        }
+        return read;
+    }
+
+    @Benchmark
+    public int streamRead() throws IOException {
+        int read = inputStream.read();
+        if (read < 0) {
+            inputStream.close();
+            inputStream = new BrotliInputStream(new ByteArrayInputStream(compressed));
+        }
+        return read;
+    }
+
+    /**
+     * Channel over a byte array that copies without allocating.
+     */
+    private static final class ArrayChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+
+        private ArrayChannel(byte[] data) {
+            this.data = ByteBuffer.wrap(data);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(dst.remaining(), data.remaining());
+            int limit = data.limit();
+            ((Buffer) data).limit(data.position() + length);
+            dst.put(data);
+            ((Buffer) data).limit(limit);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            ((Buffer) src).position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class DiscardingStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
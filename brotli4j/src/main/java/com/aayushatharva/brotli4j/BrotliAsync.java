@@ -0,0 +1,461 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import com.aayushatharva.brotli4j.decoder.DecoderPool;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.EncoderJNI;
+import com.aayushatharva.brotli4j.encoder.EncoderPool;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous compression and decompression, so that callers such as event loops never run native coding
+ * inline.
+ * <p>
+ * Tasks run on an executor with pooled native states. The number of pending (queued or running) tasks is
+ * bounded; submissions above the bound fail right away with {@link RejectedExecutionException}, so callers
+ * can shed load without blocking. Cancelling a future stops its task at the next chunk boundary and destroys
+ * the native state it used.
+ * <p>
+ * Sources are read in place: they MUST NOT be modified or released till the returned future completes.
+ * <p>
+ * Make sure to add Netty Buffer as dependency before using this class.
+ */
+@Local
+public final class BrotliAsync implements AutoCloseable {
+
+    /**
+     * Default bound of pending tasks.
+     */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    /* All pooled states share the same input buffer size, so they land in the same bucket. */
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+    /* Direct input is handed to native code in chunks of this size, checking for cancellation in between. */
+    private static final int DIRECT_CHUNK_SIZE = 1024 * 1024;
+
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private final int maxPending;
+    private final EncoderPool encoders = new EncoderPool();
+    private final DecoderPool decoders = new DecoderPool();
+    private final AtomicBoolean poolsClosed = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Creates a BrotliAsync running tasks on a pool of daemon threads, one per available processor.
+     */
+    public BrotliAsync() {
+        this(defaultExecutor(), true, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Creates a BrotliAsync running tasks on the given executor.
+     *
+     * @param executor   executor; not shut down by {@link #close()}
+     * @param maxPending maximal number of queued and running tasks
+     */
+    public BrotliAsync(Executor executor, int maxPending) {
+        this(executor, false, maxPending);
+    }
+
+    private BrotliAsync(Executor executor, boolean ownsExecutor, int maxPending) {
+        if (executor == null) {
+            throw new NullPointerException("executor can not be null");
+        }
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("maxPending should be positive");
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    /**
+     * Creates a BrotliAsync running every task on a new virtual thread where the runtime supports them
+     * (Java 21+), and on the default thread pool otherwise.
+     *
+     * @param maxPending maximal number of queued and running tasks
+     * @return new instance
+     */
+    public static BrotliAsync withVirtualThreads(int maxPending) {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            executor = defaultExecutor();
+        }
+        return new BrotliAsync(executor, true, maxPending);
+    }
+
+    private static ExecutorService defaultExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "brotli4j-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Compresses readable bytes of {@code src}; reader index is not changed.
+     *
+     * @param src       uncompressed data
+     * @param params    encoding parameters
+     * @param allocator allocator of the result
+     * @return future of the compressed data, owned by caller
+     */
+    public CompletableFuture<ByteBuf> compress(ByteBuf src, Encoder.Parameters params, ByteBufAllocator allocator) {
+        return submit(task -> {
+            ByteBuf dst = allocator.buffer();
+            try {
+                encode(src, dst, params, task);
+                return dst;
+            } catch (IOException | RuntimeException | Error e) {
+                dst.release();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Compresses remaining bytes of {@code src}; position is not changed.
+     *
+     * @param src    uncompressed data
+     * @param params encoding parameters
+     * @return future of the compressed data, in a heap buffer
+     */
+    public CompletableFuture<ByteBuffer> compress(ByteBuffer src, Encoder.Parameters params) {
+        return submit(task -> {
+            ByteBuf dst = Unpooled.buffer();
+            encode(Unpooled.wrappedBuffer(src.duplicate()), dst, params, task);
+            return dst.nioBuffer();
+        });
+    }
+
+    /**
+     * Decompresses readable bytes of {@code src}; reader index is not changed.
+     *
+     * @param src       compressed data, a single complete brotli stream
+     * @param allocator allocator of the result
+     * @return future of the decompressed data, owned by caller
+     */
+    public CompletableFuture<ByteBuf> decompress(ByteBuf src, ByteBufAllocator allocator) {
+        return decompress(src, allocator, 0);
+    }
+
+    /**
+     * Decompresses readable bytes of {@code src}, failing if decompressed output would exceed
+     * {@code maxOutputSize} bytes; reader index is not changed. Use to mitigate decompression bombs.
+     *
+     * @param src           compressed data, a single complete brotli stream
+     * @param allocator     allocator of the result
+     * @param maxOutputSize cap on total decompressed bytes; {@code 0} for no cap
+     * @return future of the decompressed data, owned by caller
+     */
+    public CompletableFuture<ByteBuf> decompress(ByteBuf src, ByteBufAllocator allocator, int maxOutputSize) {
+        checkMaxOutputSize(maxOutputSize);
+        return submit(task -> {
+            ByteBuf dst = allocator.buffer();
+            try {
+                decode(src, dst, maxOutputSize, task);
+                return dst;
+            } catch (IOException | RuntimeException | Error e) {
+                dst.release();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Decompresses remaining bytes of {@code src}; position is not changed.
+     *
+     * @param src compressed data, a single complete brotli stream
+     * @return future of the decompressed data, in a heap buffer
+     */
+    public CompletableFuture<ByteBuffer> decompress(ByteBuffer src) {
+        return decompress(src, 0);
+    }
+
+    /**
+     * Decompresses remaining bytes of {@code src}, failing if decompressed output would exceed
+     * {@code maxOutputSize} bytes; position is not changed.
+     *
+     * @param src           compressed data, a single complete brotli stream
+     * @param maxOutputSize cap on total decompressed bytes; {@code 0} for no cap
+     * @return future of the decompressed data, in a heap buffer
+     */
+    public CompletableFuture<ByteBuffer> decompress(ByteBuffer src, int maxOutputSize) {
+        checkMaxOutputSize(maxOutputSize);
+        return submit(task -> {
+            ByteBuf dst = Unpooled.buffer();
+            decode(Unpooled.wrappedBuffer(src.duplicate()), dst, maxOutputSize, task);
+            return dst.nioBuffer();
+        });
+    }
+
+    private static void checkMaxOutputSize(int maxOutputSize) {
+        if (maxOutputSize < 0) {
+            throw new IllegalArgumentException("maxOutputSize should not be negative");
+        }
+    }
+
+    /**
+     * @return number of queued and running tasks
+     */
+    public int pending() {
+        return maxPending - permits.availablePermits();
+    }
+
+    /**
+     * Stops accepting tasks. Pending tasks still complete; native states are released once the last of them
+     * finishes, and own executor is shut down after them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+        closePoolsIfIdle();
+    }
+
+    /**
+     * Closes the pools once closed and no task can use them any more. Called after every permit release,
+     * so whichever of {@link #close()} and the last pending task comes second closes them.
+     */
+    private void closePoolsIfIdle() {
+        if (closed && permits.availablePermits() == maxPending && poolsClosed.compareAndSet(false, true)) {
+            encoders.close();
+            decoders.close();
+        }
+    }
+
+    private void releasePermit() {
+        permits.release();
+        closePoolsIfIdle();
+    }
+
+    private <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException("BrotliAsync is closed"));
+            return future;
+        }
+        if (!permits.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("too many pending tasks"));
+            return future;
+        }
+        if (closed) {
+            // Closed after the first check; the pools may already be closed.
+            releasePermit();
+            future.completeExceptionally(new RejectedExecutionException("BrotliAsync is closed"));
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!future.isDone()) {
+                        T result = task.run(future);
+                        if (!future.complete(result)) {
+                            // Cancelled right after the work was done.
+                            ReferenceCountUtil.release(result);
+                        }
+                    }
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    releasePermit();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releasePermit();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void encode(ByteBuf src, ByteBuf dst, Encoder.Parameters params, CompletableFuture<?> task)
+            throws IOException {
+        boolean direct = src.isDirect() && src.nioBufferCount() == 1;
+        EncoderJNI.Wrapper encoder = encoders.acquire(params, INPUT_BUFFER_SIZE);
+        boolean completed = false;
+        try {
+            ByteBuffer inputBuffer = encoder.getInputBuffer();
+            int offset = src.readerIndex();
+            int remaining = src.readableBytes();
+            EncoderJNI.Operation op = EncoderJNI.Operation.PROCESS;
+            while (true) {
+                if (!encoder.isSuccess()) {
+                    throw new IOException("encoding failed");
+                } else if (encoder.hasMoreOutput()) {
+                    dst.writeBytes(encoder.pull());
+                } else if (encoder.hasRemainingInput()) {
+                    encoder.push(op, 0);
+                } else if (task.isDone()) {
+                    throw new CancellationException();
+                } else if (remaining > 0) {
+                    int length = Math.min(remaining, direct ? DIRECT_CHUNK_SIZE : inputBuffer.capacity());
+                    if (length == remaining) {
+                        op = EncoderJNI.Operation.FINISH;
+                    }
+                    if (direct) {
+                        encoder.pushDirect(op, src.nioBuffer(offset, length));
+                    } else {
+                        ((Buffer) inputBuffer).clear();
+                        ((Buffer) inputBuffer).limit(length);
+                        src.getBytes(offset, inputBuffer);
+                        encoder.push(op, length);
+                    }
+                    offset += length;
+                    remaining -= length;
+                } else if (!encoder.isFinished()) {
+                    op = EncoderJNI.Operation.FINISH;
+                    encoder.push(op, 0);
+                } else {
+                    completed = true;
+                    return;
+                }
+            }
+        } finally {
+            if (!completed) {
+                // Abandoned stream can not be reused.
+                encoder.destroy();
+            }
+            encoders.release(encoder);
+        }
+    }
+
+    private void decode(ByteBuf src, ByteBuf dst, int maxOutputSize, CompletableFuture<?> task)
+            throws IOException {
+        boolean direct = src.isDirect() && src.nioBufferCount() == 1;
+        DecoderJNI.Wrapper decoder = decoders.acquire(INPUT_BUFFER_SIZE);
+        boolean completed = false;
+        try {
+            ByteBuffer inputBuffer = decoder.getInputBuffer();
+            int offset = src.readerIndex();
+            int remaining = src.readableBytes();
+            int totalOutputSize = 0;
+            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+                // Small input could expand to huge output, so cancellation is checked on every chunk.
+                if (task.isDone()) {
+                    throw new CancellationException();
+                }
+                switch (decoder.getStatus()) {
+                    case OK:
+                        decoder.push(0);
+                        break;
+
+                    case NEEDS_MORE_OUTPUT:
+                        totalOutputSize += writeOutput(decoder, dst, maxOutputSize, totalOutputSize);
+                        break;
+
+                    case NEEDS_MORE_INPUT:
+                        if (decoder.hasOutput()) {
+                            totalOutputSize += writeOutput(decoder, dst, maxOutputSize, totalOutputSize);
+                            break;
+                        }
+                        if (remaining > 0) {
+                            int length = Math.min(remaining, direct ? DIRECT_CHUNK_SIZE : inputBuffer.capacity());
+                            if (direct) {
+                                decoder.pushDirect(src.nioBuffer(offset, length));
+                            } else {
+                                ((Buffer) inputBuffer).clear();
+                                ((Buffer) inputBuffer).limit(length);
+                                src.getBytes(offset, inputBuffer);
+                                decoder.push(length);
+                            }
+                            offset += length;
+                            remaining -= length;
+                            break;
+                        }
+                        if (!decoder.finishInput()) {
+                            throw new IOException("truncated input");
+                        }
+                        break;
+
+                    default:
+                        throw new IOException("corrupted input");
+                }
+            }
+            if (remaining > 0) {
+                throw new IOException("unexpected data after the end of the stream");
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                decoder.destroy();
+            }
+            decoders.release(decoder);
+        }
+    }
+
+    /**
+     * Moves decoder output to {@code dst}, failing if total output would exceed {@code maxOutputSize}.
+     *
+     * @return number of bytes written
+     */
+    private static int writeOutput(DecoderJNI.Wrapper decoder, ByteBuf dst, int maxOutputSize, int totalOutputSize)
+            throws IOException {
+        if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize) {
+            throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+        }
+        // One byte over the cap tells whether output exceeds it; long arithmetic keeps a cap near
+        // Integer.MAX_VALUE from overflowing.
+        ByteBuffer output = maxOutputSize > 0
+                ? decoder.pull((int) Math.min(Integer.MAX_VALUE, (long) maxOutputSize - totalOutputSize + 1))
+                : decoder.pull();
+        int length = output.remaining();
+        if (maxOutputSize > 0 && (long) totalOutputSize + length > maxOutputSize) {
+            throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+        }
+        dst.writeBytes(output);
+        return length;
+    }
+
+    @FunctionalInterface
+    private interface Task<T> {
+        T run(CompletableFuture<?> future) throws IOException;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.EncoderJNI;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File-to-file compression and decompression.
+ * <p>
+ * Source file is memory-mapped in windows (so files larger than 2 GiB are fine) that are handed to native
+ * encoder / decoder as is; output is gathered in a reused direct buffer and written with few large writes.
+ * No data passes through the Java heap.
+ */
+@Local
+public final class BrotliFiles {
+
+    /**
+     * Size of source windows mapped at once.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Size of the output buffer.
+     */
+    public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 1024 * 1024;
+
+    /* Input is mapped, so native input buffer is never used. */
+    private static final int INPUT_BUFFER_SIZE = 1;
+
+    // Disallow instantiation.
+    private BrotliFiles() {
+    }
+
+    /**
+     * Compresses a file with default parameters.
+     *
+     * @param source file to compress
+     * @param target compressed file; created or truncated
+     * @throws IOException If any failure during reading, encoding or writing
+     */
+    public static void compress(Path source, Path target) throws IOException {
+        compress(source, target, Encoder.Parameters.DEFAULT);
+    }
+
+    /**
+     * Compresses a file.
+     *
+     * @param source file to compress
+     * @param target compressed file; created or truncated
+     * @param params encoding parameters
+     * @throws IOException If any failure during reading, encoding or writing
+     */
+    public static void compress(Path source, Path target, Encoder.Parameters params) throws IOException {
+        compress(source, target, params, DEFAULT_WINDOW_SIZE);
+    }
+
+    static void compress(Path source, Path target, Encoder.Parameters params, int windowSize) throws IOException {
+        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(INPUT_BUFFER_SIZE, params);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(out);
+            long size = in.size();
+            for (long position = 0; position < size; position += windowSize) {
+                ByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(windowSize, size - position));
+                encoder.pushDirect(EncoderJNI.Operation.PROCESS, window);
+                drain(encoder, EncoderJNI.Operation.PROCESS, output);
+            }
+            drain(encoder, EncoderJNI.Operation.FINISH, output);
+            output.flush();
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    private static void drain(EncoderJNI.Wrapper encoder, EncoderJNI.Operation op, Output output)
+            throws IOException {
+        if (!encoder.drain(op, output::write)) {
+            throw new IOException("encoding failed");
+        }
+    }
+
+    /**
+     * Decompresses a file.
+     *
+     * @param source compressed file
+     * @param target decompressed file; created or truncated
+     * @throws IOException If any failure during reading or writing, or if the source is corrupted or truncated
+     */
+    public static void decompress(Path source, Path target) throws IOException {
+        decompress(source, target, DEFAULT_WINDOW_SIZE);
+    }
+
+    static void decompress(Path source, Path target, int windowSize) throws IOException {
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(INPUT_BUFFER_SIZE);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(out);
+            long size = in.size();
+            long position = 0;
+            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+                switch (decoder.getStatus()) {
+                    case OK:
+                        decoder.push(0);
+                        break;
+
+                    case NEEDS_MORE_OUTPUT:
+                        output.write(decoder.pull());
+                        break;
+
+                    case NEEDS_MORE_INPUT:
+                        if (decoder.hasOutput()) {
+                            output.write(decoder.pull());
+                        } else if (position < size) {
+                            long length = Math.min(windowSize, size - position);
+                            decoder.pushDirect(in.map(FileChannel.MapMode.READ_ONLY, position, length));
+                            position += length;
+                        } else if (!decoder.finishInput()) {
+                            throw new IOException("truncated input");
+                        }
+                        break;
+
+                    default:
+                        throw new IOException("corrupted input");
+                }
+            }
+            if (position < size) {
+                throw new IOException("unexpected data after the end of the stream");
+            }
+            output.flush();
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    /**
+     * Gathers output chunks into a direct buffer; chunks not smaller than the buffer are written as is.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_OUTPUT_BUFFER_SIZE);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void write(ByteBuffer chunk) throws IOException {
+            if (chunk.remaining() > buffer.remaining()) {
+                flush();
+                if (chunk.remaining() >= buffer.capacity()) {
+                    writeFully(chunk);
+                    return;
+                }
+            }
+            buffer.put(chunk);
+        }
+
+        private void flush() throws IOException {
+            ((Buffer) buffer).flip();
+            writeFully(buffer);
+            ((Buffer) buffer).clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+/**
+ * Reactive Streams interfaces, mirroring {@code java.util.concurrent.Flow} (which is not available on Java 8)
+ * method by method; adapting to {@code Flow} or {@code org.reactivestreams} is a matter of delegation.
+ * Implementations follow the Reactive Streams specification.
+ */
+@Local
+public final class BrotliFlow {
+
+    // Disallow instantiation.
+    private BrotliFlow() {
+    }
+
+    /**
+     * Producer of items received by subscribers.
+     *
+     * @param <T> item type
+     */
+    public interface Publisher<T> {
+        /**
+         * Adds a subscriber; it gets {@link Subscriber#onSubscribe(Subscription)} first.
+         *
+         * @param subscriber subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items.
+     *
+     * @param <T> item type
+     */
+    public interface Subscriber<T> {
+        /**
+         * @param subscription subscription; no items are sent till requested with it
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * @param item next item
+         */
+        void onNext(T item);
+
+        /**
+         * @param throwable failure; no further signals follow
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Signals that no further items follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+        /**
+         * @param n number of additional items the subscriber is ready to receive; positive
+         */
+        void request(long n);
+
+        /**
+         * Stops sending items, eventually.
+         */
+        void cancel();
+    }
+
+    /**
+     * Stage that is both a subscriber and a publisher.
+     *
+     * @param <T> received item type
+     * @param <R> published item type
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
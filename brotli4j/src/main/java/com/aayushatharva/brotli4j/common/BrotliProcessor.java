@@ -0,0 +1,295 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base of processors turning a stream of {@link ByteBuffer}s into another one with a native coder.
+ * <p>
+ * Signals from both sides only record their effect; native state is driven by a single thread at a time
+ * (whichever signal arrived while no other was being processed). Upstream is asked for one buffer at a time,
+ * and only while downstream has outstanding demand, so at most one upstream buffer and one native output
+ * chunk are held. Native state is released once the stream completes, fails or is cancelled.
+ */
+@Local
+public abstract class BrotliProcessor implements BrotliFlow.Processor<ByteBuffer, ByteBuffer> {
+
+    /**
+     * Outcome of a single {@link #advance()} step.
+     */
+    protected enum Step {
+        /**
+         * Progress was made; call again.
+         */
+        PROGRESS,
+        /**
+         * Upstream buffer is needed.
+         */
+        NEEDS_INPUT,
+        /**
+         * Output is ready, but downstream has not requested it.
+         */
+        BLOCKED,
+        /**
+         * Stream is complete.
+         */
+        DONE
+    }
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+    private final Queue<ByteBuffer> inbox = new ConcurrentLinkedQueue<>();
+    private volatile BrotliFlow.Subscription upstream;
+    private final AtomicReference<BrotliFlow.Subscriber<? super ByteBuffer>> downstream = new AtomicReference<>();
+    /* Set once downstream's onSubscribe returned; no other signal is sent before. */
+    private volatile boolean subscribed;
+    private volatile boolean upstreamDone;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    /* Accessed by the draining thread only. */
+    private ByteBuffer current;
+    private boolean requested;
+    private boolean terminated;
+    /* Failure not yet delivered, because downstream had not subscribed when the stream terminated. */
+    private Throwable terminalError;
+
+    /**
+     * Moves native state one step forward, using {@link #nextInput()}, {@link #inputComplete()},
+     * {@link #canEmit()} and {@link #emit(ByteBuffer)}.
+     *
+     * @return step outcome
+     * @throws IOException If data is corrupted, or native coder fails
+     */
+    protected abstract Step advance() throws IOException;
+
+    /**
+     * Releases native state; called exactly once, when the stream terminates.
+     */
+    protected abstract void release();
+
+    @Override
+    public void subscribe(BrotliFlow.Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber can not be null");
+        }
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new BrotliFlow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("processor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new BrotliFlow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("non-positive request: " + n));
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        subscribed = true;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(BrotliFlow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        inbox.offer(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * @return upstream buffer with remaining bytes, or {@code null} if there is none at the moment
+     */
+    protected ByteBuffer nextInput() {
+        while (current == null || !current.hasRemaining()) {
+            current = inbox.poll();
+            if (current == null) {
+                return null;
+            }
+            requested = false;
+        }
+        return current;
+    }
+
+    /**
+     * @return {@code true} if upstream completed and all its buffers are consumed
+     */
+    protected boolean inputComplete() {
+        return upstreamDone && nextInput() == null;
+    }
+
+    /**
+     * @return {@code true} if downstream has requested more buffers
+     */
+    protected boolean canEmit() {
+        return demand.get() > 0;
+    }
+
+    /**
+     * Sends a copy of native output downstream; MUST be called only if {@link #canEmit()}.
+     *
+     * @param chunk native output
+     */
+    protected void emit(ByteBuffer chunk) {
+        ByteBuffer copy = ByteBuffer.allocate(chunk.remaining());
+        copy.put(chunk);
+        ((Buffer) copy).flip();
+        if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+        }
+        downstream.get().onNext(copy);
+    }
+
+    private void fail(Throwable throwable) {
+        error = throwable;
+        cancelUpstream();
+        drain();
+    }
+
+    private void cancelUpstream() {
+        BrotliFlow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainLoop();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        while (!terminated) {
+            if (cancelled) {
+                terminate();
+                return;
+            }
+            Throwable failure = error;
+            if (failure != null) {
+                // Upstream may fail before downstream subscribes; the error is then delivered on subscription.
+                terminate();
+                terminalError = failure;
+                break;
+            }
+            if (upstream == null || !subscribed) {
+                return;
+            }
+
+            Step step;
+            try {
+                step = advance();
+            } catch (IOException | RuntimeException e) {
+                cancelUpstream();
+                terminate();
+                terminalError = e;
+                break;
+            }
+            switch (step) {
+                case PROGRESS:
+                    break;
+
+                case NEEDS_INPUT:
+                    if (!requested && canEmit()) {
+                        requested = true;
+                        upstream.request(1);
+                    }
+                    return;
+
+                case BLOCKED:
+                    return;
+
+                case DONE:
+                    if (!upstreamDone) {
+                        cancelUpstream();
+                    }
+                    terminate();
+                    downstream.get().onComplete();
+                    return;
+
+                default:
+                    throw new IllegalStateException("unexpected step " + step);
+            }
+        }
+        Throwable failure = terminalError;
+        if (failure != null && subscribed && !cancelled) {
+            terminalError = null;
+            downstream.get().onError(failure);
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        current = null;
+        inbox.clear();
+        release();
+    }
+}
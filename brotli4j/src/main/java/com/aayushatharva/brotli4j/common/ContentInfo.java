@@ -0,0 +1,156 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Uncompressed size, and optionally CRC32 checksum, of a brotli stream content.
+ * <p>
+ * Carried by a metadata meta-block at the very beginning of the stream, so that decoders could presize
+ * the destination before any data is decoded. Plain decoders skip the metadata and decode the stream
+ * as usual. Declared size is not trusted: decoders use it only as a bounded hint and verify it against
+ * the decoded content. Metadata payload is little-endian:
+ * <pre>
+ *   int magic ("BRCI")
+ *   byte flags (bit 0: checksum present)
+ *   long size
+ *   [int checksum]
+ * </pre>
+ */
+@Local
+public final class ContentInfo {
+
+    private static final int MAGIC = 0x49435242;
+    private static final int FLAG_CHECKSUM = 1;
+    private static final int HEADER_SIZE = 13;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final long MAX_SIZE = 1L << 48;
+
+    private final long size;
+    private final boolean hasChecksum;
+    private final int checksum;
+
+    private ContentInfo(long size, boolean hasChecksum, int checksum) {
+        this.size = size;
+        this.hasChecksum = hasChecksum;
+        this.checksum = checksum;
+    }
+
+    /**
+     * @param size uncompressed size, below 2<sup>48</sup>
+     * @return content info without checksum
+     */
+    public static ContentInfo of(long size) {
+        if (size < 0 || size >= MAX_SIZE) {
+            throw new IllegalArgumentException("invalid size: " + size);
+        }
+        return new ContentInfo(size, false, 0);
+    }
+
+    /**
+     * @param data   uncompressed content
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return content info with checksum
+     */
+    public static ContentInfo of(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return new ContentInfo(length, true, (int) crc.getValue());
+    }
+
+    /**
+     * @return uncompressed size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if checksum is present
+     */
+    public boolean hasChecksum() {
+        return hasChecksum;
+    }
+
+    /**
+     * @return CRC32 checksum of the content; {@code 0} if not present
+     */
+    public int checksum() {
+        return checksum;
+    }
+
+    /**
+     * Checks that the given content matches size and checksum, if present.
+     *
+     * @param content decoded content; position is not changed
+     * @return {@code true} if content matches
+     */
+    public boolean matches(ByteBuffer content) {
+        if (content.remaining() != size) {
+            return false;
+        }
+        if (!hasChecksum) {
+            return true;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+        return (int) crc.getValue() == checksum;
+    }
+
+    /**
+     * @return metadata payload
+     */
+    public byte[] toMetadata() {
+        ByteBuffer metadata = ByteBuffer.allocate(HEADER_SIZE + (hasChecksum ? CHECKSUM_SIZE : 0))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        metadata.putInt(MAGIC);
+        metadata.put((byte) (hasChecksum ? FLAG_CHECKSUM : 0));
+        metadata.putLong(size);
+        if (hasChecksum) {
+            metadata.putInt(checksum);
+        }
+        return metadata.array();
+    }
+
+    /**
+     * @param metadata metadata payload
+     * @return content info; {@code null} if payload is not a valid content info
+     */
+    public static ContentInfo fromMetadata(byte[] metadata) {
+        if (metadata == null || metadata.length < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = buffer.get(4);
+        long size = buffer.getLong(5);
+        boolean hasChecksum = (flags & FLAG_CHECKSUM) != 0;
+        if (buffer.getInt(0) != MAGIC || (flags & ~FLAG_CHECKSUM) != 0 || size < 0 || size >= MAX_SIZE
+                || metadata.length != HEADER_SIZE + (hasChecksum ? CHECKSUM_SIZE : 0)) {
+            return null;
+        }
+        return new ContentInfo(size, hasChecksum, hasChecksum ? buffer.getInt(HEADER_SIZE) : 0);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Framing of dictionary-compressed brotli streams ("dcb", RFC 9842 Compression Dictionary Transport).
+ * <p>
+ * A dcb stream is a 36-byte header, magic {@code FF 44 43 42} followed by SHA-256 of the raw dictionary,
+ * and a brotli stream compressed with that dictionary attached.
+ */
+@Local
+public final class DictionaryTransport {
+
+    /**
+     * {@code Content-Encoding} token of dictionary-compressed brotli.
+     */
+    public static final String CONTENT_ENCODING = "dcb";
+
+    /**
+     * Size of the header preceding the brotli stream.
+     */
+    public static final int HEADER_SIZE = 36;
+
+    private static final byte[] MAGIC = {(byte) 0xFF, 0x44, 0x43, 0x42};
+    private static final int HASH_SIZE = 32;
+
+    // Disallow instantiation.
+    private DictionaryTransport() {
+    }
+
+    /**
+     * @param dictionary raw dictionary, remaining bytes are used; position is not changed
+     * @return SHA-256 of the dictionary
+     */
+    public static byte[] sha256(ByteBuffer dictionary) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(dictionary.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Writes dcb header.
+     *
+     * @param destination stream the brotli stream follows in
+     * @param sha256      SHA-256 of the raw dictionary
+     * @throws IOException If writing fails
+     */
+    public static void writeHeader(OutputStream destination, byte[] sha256) throws IOException {
+        if (sha256.length != HASH_SIZE) {
+            throw new IllegalArgumentException("sha256 should be " + HASH_SIZE + " bytes long");
+        }
+        destination.write(MAGIC);
+        destination.write(sha256);
+    }
+
+    /**
+     * Reads dcb header.
+     *
+     * @param source stream the brotli stream follows in; exactly {@link #HEADER_SIZE} bytes are consumed
+     * @return SHA-256 of the raw dictionary
+     * @throws IOException If reading fails, or the stream is not dictionary-compressed brotli
+     */
+    public static byte[] readHeader(InputStream source) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        while (length < HEADER_SIZE) {
+            int read = source.read(header, length, HEADER_SIZE - length);
+            if (read < 0) {
+                throw new EOFException("truncated dcb header");
+            }
+            length += read;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                throw new IOException("not a dcb stream");
+            }
+        }
+        byte[] sha256 = new byte[HASH_SIZE];
+        System.arraycopy(header, MAGIC.length, sha256, 0, HASH_SIZE);
+        return sha256;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+/**
+ * Allocation hook used by native encoder and decoder states instead of the system {@code malloc}.
+ * <p>
+ * Implementations expose a native {@code Brotli4jAllocator} structure (see {@code allocator.h}): alloc / free
+ * functions handed to brotli, and retain / release functions managing its lifetime. {@link NativeArena} is the
+ * bundled implementation.
+ */
+@Local
+public interface NativeAllocator {
+
+    /**
+     * Adds a reference to the native allocator and returns its address. The reference is passed to a native
+     * state, which releases it when destroyed.
+     *
+     * @return address of {@code Brotli4jAllocator} structure
+     * @throws IllegalStateException If the allocator is already closed
+     */
+    long retain();
+}
@@ -0,0 +1,170 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+/**
+ * Thread-safe size-class arena recycling native memory across encoder and decoder states.
+ * <p>
+ * Blocks above 4 KiB (hash tables, ring buffers, histograms) are rounded up to one of four size classes per
+ * power of two and, when freed, kept on per-class free lists for the next state instead of being returned to
+ * the system; smaller blocks go straight to {@code malloc}. Retained memory is bounded, and can be released
+ * with {@link #trim()}.
+ * <p>
+ * Closing the arena drops only the reference held by this object; memory is released once the last state
+ * created with it is destroyed.
+ */
+@Local
+public final class NativeArena implements NativeAllocator, AutoCloseable {
+
+    private static native long nativeCreate(long maxRetained);
+
+    private static native void nativeRetain(long address);
+
+    private static native void nativeRelease(long address);
+
+    private static native void nativeStats(long address, long[] stats);
+
+    private static native void nativeTrim(long address);
+
+    private long address;
+
+    /**
+     * Creates an arena retaining up to 64 MiB of idle blocks.
+     */
+    public NativeArena() {
+        this(64L * 1024 * 1024);
+    }
+
+    /**
+     * Creates an arena.
+     *
+     * @param maxRetainedBytes maximum number of bytes kept in idle blocks
+     */
+    public NativeArena(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("maxRetainedBytes must not be negative");
+        }
+        this.address = nativeCreate(maxRetainedBytes);
+        if (this.address == 0) {
+            throw new OutOfMemoryError("failed to create native arena");
+        }
+    }
+
+    @Override
+    public synchronized long retain() {
+        ensureOpen();
+        nativeRetain(address);
+        return address;
+    }
+
+    /**
+     * @return snapshot of arena counters
+     */
+    public synchronized Stats stats() {
+        ensureOpen();
+        long[] stats = new long[5];
+        nativeStats(address, stats);
+        return new Stats(stats[0], stats[1], stats[2], stats[3], stats[4]);
+    }
+
+    /**
+     * Releases all idle blocks.
+     */
+    public synchronized void trim() {
+        ensureOpen();
+        nativeTrim(address);
+    }
+
+    /**
+     * Releases the reference held by this object; states created with the arena stay valid.
+     */
+    @Override
+    public synchronized void close() {
+        if (address != 0) {
+            nativeRelease(address);
+            address = 0;
+        }
+    }
+
+    private void ensureOpen() {
+        if (address == 0) {
+            throw new IllegalStateException("arena is closed");
+        }
+    }
+
+    /**
+     * Arena byte accounting and counters.
+     */
+    public static final class Stats {
+        private final long inUse;
+        private final long retained;
+        private final long peak;
+        private final long allocations;
+        private final long reuses;
+
+        Stats(long inUse, long retained, long peak, long allocations, long reuses) {
+            this.inUse = inUse;
+            this.retained = retained;
+            this.peak = peak;
+            this.allocations = allocations;
+            this.reuses = reuses;
+        }
+
+        /**
+         * @return number of bytes currently allocated by native states
+         */
+        public long inUse() {
+            return inUse;
+        }
+
+        /**
+         * @return number of bytes kept in idle blocks
+         */
+        public long retained() {
+            return retained;
+        }
+
+        /**
+         * @return highest value of {@link #inUse()} observed so far
+         */
+        public long peak() {
+            return peak;
+        }
+
+        /**
+         * @return number of allocations served so far
+         */
+        public long allocations() {
+            return allocations;
+        }
+
+        /**
+         * @return number of allocations served by an idle block
+         */
+        public long reuses() {
+            return reuses;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{inUse=" + inUse + ", retained=" + retained + ", peak=" + peak
+                    + ", allocations=" + allocations + ", reuses=" + reuses + '}';
+        }
+    }
+}
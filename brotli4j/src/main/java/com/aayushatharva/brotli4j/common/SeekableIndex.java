@@ -0,0 +1,232 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Frame index of a seekable brotli stream.
+ * <p>
+ * Seekable stream is a regular brotli stream made of independently compressed, byte-aligned frames,
+ * followed by a metadata meta-block carrying this index and an empty last meta-block. Plain decoders
+ * skip the metadata and decode the frames as usual. Metadata payload is little-endian:
+ * <pre>
+ *   frameCount x { int compressedSize, int uncompressedSize }
+ *   int frameCount
+ *   int magic ("BRSI")
+ * </pre>
+ */
+@Local
+public final class SeekableIndex {
+
+    /**
+     * Trailing empty last meta-block: ISLAST = 1, ISLASTEMPTY = 1.
+     */
+    public static final byte STREAM_END = 3;
+
+    private static final int MAGIC = 0x49535242;
+    private static final int ENTRY_SIZE = 8;
+    private static final int FOOTER_SIZE = 8;
+    private static final int MAX_METADATA_SIZE = 1 << 24;
+
+    private int frameCount;
+    private long[] compressedOffsets = new long[17];
+    private long[] uncompressedOffsets = new long[17];
+
+    /**
+     * Creates an empty index.
+     */
+    public SeekableIndex() {
+    }
+
+    /**
+     * Appends a frame.
+     *
+     * @param compressedSize   compressed frame size
+     * @param uncompressedSize uncompressed frame size
+     */
+    public void add(int compressedSize, int uncompressedSize) {
+        if (compressedSize <= 0 || uncompressedSize < 0) {
+            throw new IllegalArgumentException("invalid frame size");
+        }
+        if (frameCount + 1 == compressedOffsets.length) {
+            compressedOffsets = Arrays.copyOf(compressedOffsets, 2 * compressedOffsets.length);
+            uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, 2 * uncompressedOffsets.length);
+        }
+        compressedOffsets[frameCount + 1] = compressedOffsets[frameCount] + compressedSize;
+        uncompressedOffsets[frameCount + 1] = uncompressedOffsets[frameCount] + uncompressedSize;
+        frameCount++;
+    }
+
+    /**
+     * @return number of frames
+     */
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param frame frame number; {@link #frameCount()} addresses the end of the last frame
+     * @return offset of the frame within the compressed stream
+     */
+    public long compressedOffset(int frame) {
+        return compressedOffsets[frame];
+    }
+
+    /**
+     * @param frame frame number; {@link #frameCount()} addresses the end of the last frame
+     * @return offset of the frame within the uncompressed content
+     */
+    public long uncompressedOffset(int frame) {
+        return uncompressedOffsets[frame];
+    }
+
+    /**
+     * @return total size of uncompressed content
+     */
+    public long uncompressedSize() {
+        return uncompressedOffsets[frameCount];
+    }
+
+    /**
+     * Finds the frame containing the given uncompressed position.
+     *
+     * @param position uncompressed position, in range [0, {@link #uncompressedSize()})
+     * @return frame number
+     */
+    public int frameAt(long position) {
+        int low = 0;
+        int high = frameCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (uncompressedOffsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Serializes the index as a metadata meta-block followed by the last empty meta-block.
+     * Must be appended to a byte-aligned stream.
+     *
+     * @return stream tail
+     */
+    public byte[] toStreamTail() {
+        long payloadSize = (long) frameCount * ENTRY_SIZE + FOOTER_SIZE;
+        if (payloadSize > MAX_METADATA_SIZE) {
+            throw new IllegalStateException("too many frames: " + frameCount);
+        }
+        int headerSize = metadataHeaderSize((int) payloadSize);
+        ByteBuffer tail = ByteBuffer.allocate(headerSize + (int) payloadSize + 1).order(ByteOrder.LITTLE_ENDIAN);
+        long header = metadataHeader((int) payloadSize);
+        for (int i = 0; i < headerSize; i++) {
+            tail.put((byte) (header >>> (8 * i)));
+        }
+        for (int i = 0; i < frameCount; i++) {
+            tail.putInt((int) (compressedOffsets[i + 1] - compressedOffsets[i]));
+            tail.putInt((int) (uncompressedOffsets[i + 1] - uncompressedOffsets[i]));
+        }
+        tail.putInt(frameCount);
+        tail.putInt(MAGIC);
+        tail.put(STREAM_END);
+        return tail.array();
+    }
+
+    /**
+     * Reads the index from the tail of a seekable stream.
+     *
+     * @param source seekable stream; position is not preserved
+     * @return index
+     * @throws IOException If the stream is not seekable brotli stream, or reading fails
+     */
+    public static SeekableIndex read(SeekableByteChannel source) throws IOException {
+        long size = source.size();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE + 1).order(ByteOrder.LITTLE_ENDIAN);
+        if (size < footer.capacity()) {
+            throw new IOException("not a seekable brotli stream");
+        }
+        readFully(source, size - footer.capacity(), footer);
+        int frameCount = footer.getInt(0);
+        if (footer.getInt(4) != MAGIC || footer.get(8) != STREAM_END || frameCount <= 0
+                || frameCount > (MAX_METADATA_SIZE - FOOTER_SIZE) / ENTRY_SIZE) {
+            throw new IOException("not a seekable brotli stream");
+        }
+
+        int payloadSize = frameCount * ENTRY_SIZE + FOOTER_SIZE;
+        int headerSize = metadataHeaderSize(payloadSize);
+        long start = size - 1 - payloadSize - headerSize;
+        if (start <= 0) {
+            throw new IOException("corrupted seekable brotli index");
+        }
+        ByteBuffer metadata = ByteBuffer.allocate(headerSize + payloadSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(source, start, metadata);
+        long header = metadataHeader(payloadSize);
+        for (int i = 0; i < headerSize; i++) {
+            if (metadata.get() != (byte) (header >>> (8 * i))) {
+                throw new IOException("corrupted seekable brotli index");
+            }
+        }
+
+        SeekableIndex index = new SeekableIndex();
+        for (int i = 0; i < frameCount; i++) {
+            int compressedSize = metadata.getInt();
+            int uncompressedSize = metadata.getInt();
+            if (compressedSize <= 0 || uncompressedSize < 0) {
+                throw new IOException("corrupted seekable brotli index");
+            }
+            index.add(compressedSize, uncompressedSize);
+        }
+        if (index.compressedOffset(frameCount) != start) {
+            throw new IOException("corrupted seekable brotli index");
+        }
+        return index;
+    }
+
+    /*
+     * Metadata meta-block header: ISLAST = 0, MNIBBLES = 0 (coded as 3), reserved bit,
+     * MSKIPBYTES, MSKIPLEN - 1 and padding to the byte boundary.
+     */
+    private static long metadataHeader(int payloadSize) {
+        long skipBytes = metadataHeaderSize(payloadSize) - 1;
+        return 6L | (skipBytes << 4) | ((long) (payloadSize - 1) << 6);
+    }
+
+    private static int metadataHeaderSize(int payloadSize) {
+        int skipLength = payloadSize - 1;
+        return skipLength < (1 << 8) ? 2 : skipLength < (1 << 16) ? 3 : 4;
+    }
+
+    private static void readFully(SeekableByteChannel source, long position, ByteBuffer buffer) throws IOException {
+        source.position(position);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+}
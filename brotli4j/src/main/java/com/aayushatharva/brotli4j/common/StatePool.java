@@ -0,0 +1,297 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.common;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe pool of reusable native states, bucketed by key.
+ * <p>
+ * Every key owns a lock-free deque of idle states; the most recently released
+ * state is handed out first, while states idle for longer than the idle timeout
+ * are destroyed from the other end. The total number of idle states is bounded;
+ * states released above the bound are destroyed right away.
+ *
+ * @param <K> key type; must implement {@code equals} and {@code hashCode}
+ * @param <S> native state type
+ */
+@Local
+public abstract class StatePool<K, S> implements AutoCloseable {
+
+    private final ConcurrentHashMap<K, ConcurrentLinkedDeque<Entry<S>>> buckets = new ConcurrentHashMap<>();
+    private final int maxIdle;
+    private final long idleTimeoutNanos;
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger idle = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxIdle     maximum number of idle states kept across all keys
+     * @param idleTimeout time after which an idle state is destroyed
+     * @param unit        unit of {@code idleTimeout}
+     */
+    protected StatePool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must not be negative");
+        }
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * Creates a new state for the given key.
+     *
+     * @param key bucket key
+     * @return new state
+     * @throws IOException If native state can not be created
+     */
+    protected abstract S create(K key) throws IOException;
+
+    /**
+     * Returns state to the freshly created condition.
+     *
+     * @param state state to reset
+     * @return {@code false} if the state can not be reused
+     */
+    protected abstract boolean reset(S state);
+
+    /**
+     * Releases native resources held by the state.
+     *
+     * @param state state to destroy
+     */
+    protected abstract void destroy(S state);
+
+    /**
+     * Takes an idle state for the given key, or creates a new one.
+     *
+     * @param key bucket key
+     * @return state, exclusively owned by the caller till {@link #release(Object, Object)}
+     * @throws IOException If native state can not be created
+     */
+    protected S acquire(K key) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("pool is closed");
+        }
+        evictIfDue();
+        ConcurrentLinkedDeque<Entry<S>> bucket = buckets.get(key);
+        Entry<S> entry = bucket != null ? bucket.pollFirst() : null;
+        S state;
+        if (entry != null) {
+            idle.decrementAndGet();
+            hits.incrementAndGet();
+            state = entry.state;
+        } else {
+            misses.incrementAndGet();
+            state = create(key);
+            created.incrementAndGet();
+        }
+        inUse.incrementAndGet();
+        return state;
+    }
+
+    /**
+     * Returns state taken with {@link #acquire(Object)} to the pool.
+     * The state is reset, or destroyed if the pool is full.
+     *
+     * @param key   key the state was acquired with
+     * @param state state to return
+     */
+    protected void release(K key, S state) {
+        inUse.decrementAndGet();
+        if (closed || !reset(state)) {
+            discard(state);
+            return;
+        }
+        if (idle.incrementAndGet() > maxIdle) {
+            idle.decrementAndGet();
+            discard(state);
+            return;
+        }
+        buckets.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>())
+                .offerFirst(new Entry<>(state, System.nanoTime()));
+        if (closed) {
+            clear();
+        }
+        evictIfDue();
+    }
+
+    /**
+     * Destroys states that stayed idle for longer than the idle timeout.
+     *
+     * @return number of destroyed states
+     */
+    public int evictIdle() {
+        long deadline = System.nanoTime() - idleTimeoutNanos;
+        lastEviction.set(System.nanoTime());
+        int evicted = 0;
+        for (ConcurrentLinkedDeque<Entry<S>> bucket : buckets.values()) {
+            Entry<S> entry;
+            while ((entry = bucket.peekLast()) != null && entry.releasedAt - deadline < 0) {
+                if (bucket.removeLastOccurrence(entry)) {
+                    idle.decrementAndGet();
+                    discard(entry.state);
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Destroys all idle states.
+     */
+    public void clear() {
+        for (ConcurrentLinkedDeque<Entry<S>> bucket : buckets.values()) {
+            Iterator<Entry<S>> iterator = bucket.iterator();
+            while (iterator.hasNext()) {
+                Entry<S> entry = iterator.next();
+                if (bucket.removeFirstOccurrence(entry)) {
+                    idle.decrementAndGet();
+                    discard(entry.state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Destroys all idle states; states in use are destroyed when released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    /**
+     * @return snapshot of pool occupancy and counters
+     */
+    public Stats stats() {
+        return new Stats(idle.get(), inUse.get(), created.get(), destroyed.get(), hits.get(), misses.get());
+    }
+
+    private void discard(S state) {
+        destroy(state);
+        destroyed.incrementAndGet();
+    }
+
+    private void evictIfDue() {
+        long last = lastEviction.get();
+        long now = System.nanoTime();
+        if (now - last >= idleTimeoutNanos && lastEviction.compareAndSet(last, now)) {
+            evictIdle();
+        }
+    }
+
+    private static final class Entry<S> {
+        private final S state;
+        private final long releasedAt;
+
+        private Entry(S state, long releasedAt) {
+            this.state = state;
+            this.releasedAt = releasedAt;
+        }
+    }
+
+    /**
+     * Pool occupancy and counters.
+     */
+    public static final class Stats {
+        private final int idle;
+        private final int inUse;
+        private final long created;
+        private final long destroyed;
+        private final long hits;
+        private final long misses;
+
+        Stats(int idle, int inUse, long created, long destroyed, long hits, long misses) {
+            this.idle = idle;
+            this.inUse = inUse;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        /**
+         * @return number of states waiting in the pool
+         */
+        public int idle() {
+            return idle;
+        }
+
+        /**
+         * @return number of states currently acquired
+         */
+        public int inUse() {
+            return inUse;
+        }
+
+        /**
+         * @return number of states created so far
+         */
+        public long created() {
+            return created;
+        }
+
+        /**
+         * @return number of states destroyed so far
+         */
+        public long destroyed() {
+            return destroyed;
+        }
+
+        /**
+         * @return number of acquisitions served by an idle state
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * @return number of acquisitions that created a new state
+         */
+        public long misses() {
+            return misses;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{idle=" + idle + ", inUse=" + inUse + ", created=" + created + ", destroyed=" + destroyed
+                    + ", hits=" + hits + ", misses=" + misses + '}';
+        }
+    }
+}
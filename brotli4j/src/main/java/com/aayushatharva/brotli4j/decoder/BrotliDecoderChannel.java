@@ -12,12 +12,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 
 /**
  * ReadableByteChannel that wraps native brotli decoder.
+ * <p>
+ * Scattering reads fill all buffers from native output under a single lock acquisition.
  */
 @Upstream
-public class BrotliDecoderChannel extends Decoder implements ReadableByteChannel {
+public class BrotliDecoderChannel extends Decoder implements ScatteringByteChannel {
     /**
      * The default internal buffer size used by the decoder.
      */
@@ -59,6 +62,33 @@ public class BrotliDecoderChannel extends Decoder implements ReadableByteChannel
         super(source, bufferSize, maxOutputChunkSize);
     }
 
+    /**
+     * Creates a BrotliDecoderChannel with decoding parameters.
+     *
+     * @param source underlying source
+     * @param params decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    @Local
+    public BrotliDecoderChannel(ReadableByteChannel source, Parameters params) throws IOException {
+        this(source, DEFAULT_BUFFER_SIZE, 0, params);
+    }
+
+    /**
+     * Creates a BrotliDecoderChannel with decoding parameters.
+     *
+     * @param source             underlying source
+     * @param bufferSize         intermediate buffer size
+     * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+     * @param params             decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    @Local
+    public BrotliDecoderChannel(ReadableByteChannel source, int bufferSize, int maxOutputChunkSize, Parameters params)
+            throws IOException {
+        super(source, bufferSize, maxOutputChunkSize, params);
+    }
+
     @Override
     public void attachDictionary(ByteBuffer dictionary) throws IOException {
         super.attachDictionary(dictionary);
@@ -78,21 +108,31 @@ public class BrotliDecoderChannel extends Decoder implements ReadableByteChannel
         }
     }
 
+    @Local
     @Override
     public int read(ByteBuffer dst) throws IOException {
         synchronized (mutex) {
             if (closed) {
                 throw new ClosedChannelException();
             }
-            int result = 0;
-            while (dst.hasRemaining()) {
-                int outputSize = decode();
-                if (outputSize <= 0) {
-                    return result == 0 ? outputSize : result;
-                }
-                result += consume(dst);
+            return readBuffer(dst);
+        }
+    }
+
+    @Local
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Local
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
             }
-            return result;
+            return readBuffers(dsts, offset, length);
         }
     }
 }
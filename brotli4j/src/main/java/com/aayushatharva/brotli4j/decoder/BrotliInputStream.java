@@ -48,7 +48,34 @@ public class BrotliInputStream extends InputStream {
     @Local
     public BrotliInputStream(InputStream source, int bufferSize, int maxOutputChunkSize)
             throws IOException {
-        this.decoder = new Decoder(Channels.newChannel(source), bufferSize, maxOutputChunkSize);
+        this(source, bufferSize, maxOutputChunkSize, Decoder.Parameters.DEFAULT);
+    }
+
+    /**
+     * Creates a BrotliInputStream with decoding parameters.
+     *
+     * @param source             underlying source
+     * @param bufferSize         intermediate buffer size
+     * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+     * @param params             decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    @Local
+    public BrotliInputStream(InputStream source, int bufferSize, int maxOutputChunkSize, Decoder.Parameters params)
+            throws IOException {
+        this.decoder = new Decoder(Channels.newChannel(source), bufferSize, maxOutputChunkSize, params);
+    }
+
+    /**
+     * Creates a BrotliInputStream with decoding parameters.
+     *
+     * @param source underlying source
+     * @param params decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    @Local
+    public BrotliInputStream(InputStream source, Decoder.Parameters params) throws IOException {
+        this(source, DEFAULT_BUFFER_SIZE, 0, params);
     }
 
     /**
@@ -75,6 +102,15 @@ public class BrotliInputStream extends InputStream {
         decoder.enableEagerOutput();
     }
 
+    /**
+     * Enables decoding of large window streams, that are not RFC 7932 compliant; MUST be invoked before
+     * reading.
+     */
+    @Local
+    public void enableLargeWindow() {
+        decoder.enableLargeWindow();
+    }
+
     @Override
     public void close() throws IOException {
         decoder.close();
@@ -85,11 +121,17 @@ public class BrotliInputStream extends InputStream {
         return (decoder.buffer != null) ? decoder.buffer.remaining() : 0;
     }
 
+    @Local
     @Override
     public int read() throws IOException {
         if (decoder.closed) {
             throw new IOException("read after close");
         }
+        // Fast path: decoded bytes are already buffered.
+        ByteBuffer buffer = decoder.buffer;
+        if (buffer != null && buffer.hasRemaining()) {
+            return buffer.get() & 0xFF;
+        }
         int decoded;
         // Iterate until at least one byte is decoded, or EOF reached.
         while (true) {
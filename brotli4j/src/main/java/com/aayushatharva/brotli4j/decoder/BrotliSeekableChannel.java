@@ -0,0 +1,256 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.SeekableIndex;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only SeekableByteChannel over uncompressed content of a seekable brotli stream
+ * (see {@code com.aayushatharva.brotli4j.encoder.BrotliSeekableOutputStream}).
+ * <p>
+ * Only frames covering the requested range are read and decoded. Frame encoded at a non-zero offset
+ * is decoded after a synthetic prefix that brings decoder to the same position within the window as
+ * the encoder was; prefix is a run of zeros no longer than the window, so cost of a random read is
+ * bounded by frame and window size rather than by the offset.
+ */
+@Local
+public class BrotliSeekableChannel implements SeekableByteChannel {
+
+    private final Object mutex = new Object();
+    private final SeekableByteChannel source;
+    private final SeekableIndex index;
+    private final int lgwin;
+    private final Map<Integer, byte[]> prefixes = new HashMap<>();
+    private long position;
+    private int cachedFrame = -1;
+    private byte[] cachedData;
+    private boolean closed;
+
+    /**
+     * Creates a BrotliSeekableChannel.
+     *
+     * @param source seekable brotli stream; closed together with this channel
+     * @throws IOException If the source is not seekable brotli stream, or reading fails
+     */
+    public BrotliSeekableChannel(SeekableByteChannel source) throws IOException {
+        this.source = source;
+        this.index = SeekableIndex.read(source);
+        ByteBuffer header = ByteBuffer.allocate(1);
+        source.position(0);
+        if (source.read(header) != 1) {
+            throw new EOFException();
+        }
+        this.lgwin = windowBits(header.get(0));
+    }
+
+    /**
+     * @return frame index of the stream
+     */
+    public SeekableIndex index() {
+        return index;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (position >= index.uncompressedSize()) {
+                return -1;
+            }
+            int result = 0;
+            while (dst.hasRemaining() && position < index.uncompressedSize()) {
+                int frame = index.frameAt(position);
+                if (frame != cachedFrame) {
+                    cachedData = decodeFrame(frame);
+                    cachedFrame = frame;
+                }
+                int start = (int) (position - index.uncompressedOffset(frame));
+                int limit = Math.min(dst.remaining(), cachedData.length - start);
+                dst.put(cachedData, start, limit);
+                position += limit;
+                result += limit;
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            return position;
+        }
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("position must not be negative");
+        }
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            position = newPosition;
+            return this;
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            return index.uncompressedSize();
+        }
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        synchronized (mutex) {
+            return !closed;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cachedData = null;
+            prefixes.clear();
+            source.close();
+        }
+    }
+
+    private byte[] decodeFrame(int frame) throws IOException {
+        long frameOffset = index.uncompressedOffset(frame);
+        int skip = (int) Math.min(frameOffset, (1 << lgwin) - 16);
+        byte[] prefix = frame == 0 ? new byte[0] : prefix(skip);
+        int compressedSize = (int) (index.compressedOffset(frame + 1) - index.compressedOffset(frame));
+        int uncompressedSize = (int) (index.uncompressedOffset(frame + 1) - frameOffset);
+
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(prefix.length + compressedSize + 1);
+        try {
+            ByteBuffer input = decoder.getInputBuffer();
+            input.put(prefix);
+            source.position(index.compressedOffset(frame));
+            ((Buffer) input).limit(prefix.length + compressedSize);
+            while (input.hasRemaining()) {
+                if (source.read(input) < 0) {
+                    throw new EOFException();
+                }
+            }
+            ((Buffer) input).limit(input.capacity());
+            input.put(SeekableIndex.STREAM_END);
+            decoder.push(input.position());
+
+            byte[] output = new byte[uncompressedSize];
+            long produced = 0;
+            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+                switch (decoder.getStatus()) {
+                    case OK:
+                        decoder.push(0);
+                        break;
+
+                    case NEEDS_MORE_OUTPUT:
+                        ByteBuffer chunk = decoder.pull();
+                        int dropped = (int) Math.max(0, Math.min(chunk.remaining(), skip - produced));
+                        produced += chunk.remaining();
+                        int kept = chunk.remaining() - dropped;
+                        long start = produced - kept - skip;
+                        if (start + kept > uncompressedSize) {
+                            throw new IOException("corrupted input");
+                        }
+                        ((Buffer) chunk).position(chunk.position() + dropped);
+                        chunk.get(output, (int) start, kept);
+                        break;
+
+                    default:
+                        throw new IOException("corrupted input");
+                }
+            }
+            if (produced != skip + uncompressedSize) {
+                throw new IOException("corrupted input");
+            }
+            return output;
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    /*
+     * Header followed by a flushed run of zeros; decoded as is, leaves decoder
+     * at offset "length" with the window set up like the encoder of the frame assumed.
+     */
+    private byte[] prefix(int length) throws IOException {
+        byte[] prefix = prefixes.get(length);
+        if (prefix == null) {
+            Encoder.Parameters params = new Encoder.Parameters().setQuality(2).setWindow(lgwin);
+            prefix = Encoder.compressFlushed(new byte[length], 0, length, params);
+            prefixes.put(length, prefix);
+        }
+        return prefix;
+    }
+
+    /*
+     * Decodes WBITS from the first byte of the stream header, see RFC 7932, section 9.1.
+     */
+    private static int windowBits(byte header) throws IOException {
+        if ((header & 1) == 0) {
+            return 16;
+        }
+        int n = (header >> 1) & 7;
+        if (n != 0) {
+            return 17 + n;
+        }
+        int m = (header >> 4) & 7;
+        if (m == 1) {
+            throw new IOException("large window brotli streams are not supported");
+        }
+        return m != 0 ? 8 + m : 17;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Stateful decoder turning successive {@link ByteBuf} chunks of a brotli stream into uncompressed output.
+ * <p>
+ * Direct input (including direct components of a {@link CompositeByteBuf}) is handed to native decoder
+ * without copying; other input is copied through the native input buffer. Apart from output buffers taken
+ * from the given allocator, nothing is allocated per chunk. Not thread-safe.
+ * <p>
+ * Make sure to add Netty Buffer as dependency before using this class.
+ */
+@Local
+public final class ByteBufDecoder implements AutoCloseable {
+
+    /**
+     * Default size of the native input buffer used for heap input.
+     */
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 16384;
+
+    private final DecoderJNI.Wrapper decoder;
+    private final ByteBuffer inputBuffer;
+    private final ByteBufAllocator allocator;
+    private ByteBuf output;
+
+    /**
+     * Creates a ByteBufDecoder.
+     *
+     * @param allocator allocator of output buffers
+     * @throws IOException If native decoder can not be created
+     */
+    public ByteBufDecoder(ByteBufAllocator allocator) throws IOException {
+        this(allocator, DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a ByteBufDecoder.
+     *
+     * @param allocator       allocator of output buffers
+     * @param inputBufferSize size of the native input buffer used for heap input
+     * @throws IOException If native decoder can not be created
+     */
+    public ByteBufDecoder(ByteBufAllocator allocator, int inputBufferSize) throws IOException {
+        if (allocator == null) {
+            throw new NullPointerException("allocator can not be null");
+        }
+        this.decoder = new DecoderJNI.Wrapper(inputBufferSize);
+        this.inputBuffer = decoder.getInputBuffer();
+        this.allocator = allocator;
+    }
+
+    /**
+     * Decodes readable bytes of {@code src}; its reader index is moved to the writer index.
+     *
+     * @param src next chunk of brotli stream
+     * @return uncompressed output produced so far, possibly empty; owned by caller
+     * @throws IOException If the input is corrupted, or continues past the end of the stream
+     */
+    public ByteBuf decode(ByteBuf src) throws IOException {
+        if (!decoder.isAlive()) {
+            throw new IllegalStateException("decoder is closed");
+        }
+        int length = src.readableBytes();
+        feed(src, src.readerIndex(), length);
+        src.skipBytes(length);
+        return takeOutput();
+    }
+
+    /**
+     * @return {@code true} if the end of the stream was decoded
+     */
+    public boolean isFinished() {
+        return decoder.isAlive() && decoder.getStatus() == DecoderJNI.Status.DONE;
+    }
+
+    /**
+     * Releases native decoder.
+     */
+    @Override
+    public void close() {
+        if (decoder.isAlive()) {
+            decoder.destroy();
+        }
+        if (output != null) {
+            output.release();
+            output = null;
+        }
+    }
+
+    private void feed(ByteBuf src, int index, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (decoder.getStatus() == DecoderJNI.Status.DONE) {
+            throw new IOException("unexpected data after the end of the stream");
+        }
+        if (src instanceof CompositeByteBuf) {
+            CompositeByteBuf composite = (CompositeByteBuf) src;
+            int end = index + length;
+            for (int i = composite.toComponentIndex(index); index < end; i++) {
+                ByteBuf component = composite.internalComponent(i);
+                int componentStart = composite.toByteIndex(i);
+                int limit = Math.min(end - index, component.capacity() - (index - componentStart));
+                feed(component, index - componentStart, limit);
+                index += limit;
+            }
+        } else if (src.isDirect() && src.nioBufferCount() == 1) {
+            decoder.pushDirect(src.internalNioBuffer(index, length));
+            drain();
+        } else {
+            while (length > 0) {
+                int chunk = Math.min(length, inputBuffer.capacity());
+                ((Buffer) inputBuffer).clear();
+                ((Buffer) inputBuffer).limit(chunk);
+                src.getBytes(index, inputBuffer);
+                decoder.push(chunk);
+                drain();
+                index += chunk;
+                length -= chunk;
+                if (length > 0 && decoder.getStatus() == DecoderJNI.Status.DONE) {
+                    throw new IOException("unexpected data after the end of the stream");
+                }
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        while (true) {
+            switch (decoder.getStatus()) {
+                case OK:
+                    decoder.push(0);
+                    break;
+
+                case NEEDS_MORE_OUTPUT:
+                    append(decoder.pull());
+                    break;
+
+                case NEEDS_MORE_INPUT:
+                    // Output decoded from the consumed input is handed out eagerly.
+                    if (decoder.hasOutput()) {
+                        append(decoder.pull());
+                        break;
+                    }
+                    return;
+
+                case DONE:
+                    return;
+
+                default:
+                    throw new IOException("corrupted input");
+            }
+        }
+    }
+
+    private void append(ByteBuffer chunk) {
+        if (output == null) {
+            output = allocator.buffer(chunk.remaining());
+        }
+        output.writeBytes(chunk);
+    }
+
+    private ByteBuf takeOutput() {
+        ByteBuf result = output;
+        output = null;
+        return result != null ? result : Unpooled.EMPTY_BUFFER;
+    }
+}
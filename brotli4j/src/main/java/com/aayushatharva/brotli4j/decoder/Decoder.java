@@ -5,6 +5,7 @@
 */
 package com.aayushatharva.brotli4j.decoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
 import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
@@ -13,6 +14,7 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Base class for InputStream / Channel implementations.
@@ -21,6 +23,14 @@ import java.util.ArrayList;
 @Local
 public class Decoder implements AutoCloseable {
     private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+    @Local
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    @Local
+    private static final int MIN_CONTENT_INFO_PRESIZE = 1 << 16;
+    @Local
+    private static final int MAX_CONTENT_INFO_PRESIZE = 1 << 26;
+    @Local
+    private static final int CONTENT_INFO_PRESIZE_RATIO = 64;
     private final ReadableByteChannel source;
     private final DecoderJNI.Wrapper decoder;
     ByteBuffer buffer;
@@ -50,6 +60,21 @@ public class Decoder implements AutoCloseable {
     @Local
     public Decoder(ReadableByteChannel source, int inputBufferSize, int maxOutputChunkSize)
             throws IOException {
+        this(source, inputBufferSize, maxOutputChunkSize, Parameters.DEFAULT);
+    }
+
+    /**
+     * Creates a Decoder wrapper with decoding parameters.
+     *
+     * @param source             underlying source
+     * @param inputBufferSize    read buffer size
+     * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+     * @param params             decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    @Local
+    public Decoder(ReadableByteChannel source, int inputBufferSize, int maxOutputChunkSize, Parameters params)
+            throws IOException {
         if (inputBufferSize <= 0) {
             throw new IllegalArgumentException("buffer size must be positive");
         }
@@ -57,7 +82,7 @@ public class Decoder implements AutoCloseable {
             throw new NullPointerException("source can not be null");
         }
         this.source = source;
-        this.decoder = new DecoderJNI.Wrapper(inputBufferSize, maxOutputChunkSize);
+        this.decoder = new DecoderJNI.Wrapper(inputBufferSize, maxOutputChunkSize, null, params);
     }
 
     /**
@@ -83,58 +108,163 @@ public class Decoder implements AutoCloseable {
      */
     @Local
     public static DirectDecompress decompress(byte[] data, int maxOutputSize) throws IOException {
-        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(data.length);
-        ArrayList<byte[]> output = new ArrayList<>();
-        int totalOutputSize = 0;
+        return decompress(data, maxOutputSize, Parameters.DEFAULT);
+    }
+
+    /**
+     * Decodes the given data buffer with decoding parameters. If {@link Parameters#sizeHint()} is set,
+     * output is collected straight into an array of that size.
+     *
+     * @param data   byte array of data to be decoded
+     * @param params decoding parameters
+     * @return {@link DirectDecompress} instance
+     * @throws IOException If an error occurs during decoding
+     */
+    @Local
+    public static DirectDecompress decompress(byte[] data, Parameters params) throws IOException {
+        return decompress(data, 0, params);
+    }
+
+    /**
+     * Decodes the given data buffer with decoding parameters, failing if decompressed output would
+     * exceed {@code maxOutputSize} bytes.
+     *
+     * @param data          byte array of data to be decoded
+     * @param maxOutputSize cap on total decompressed bytes; {@code 0} for no cap
+     * @param params        decoding parameters
+     * @return {@link DirectDecompress} instance
+     * @throws IOException If an error occurs during decoding, or output exceeds {@code maxOutputSize}
+     */
+    @Local
+    public static DirectDecompress decompress(byte[] data, int maxOutputSize, Parameters params)
+            throws IOException {
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(data.length, params);
+        byte[] result;
         try {
             decoder.getInputBuffer().put(data);
-            decoder.push(data.length);
-            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
-                switch (decoder.getStatus()) {
-                    case OK:
-                        decoder.push(0);
-                        break;
+            result = decodeFully(decoder, data.length, maxOutputSize, params.sizeHint());
+        } finally {
+            decoder.destroy();
+        }
+        return new DirectDecompress(decoder.getStatus(), result, null);
+    }
+
+    /**
+     * Decodes the whole input placed into the decoder input buffer. Output is collected straight into
+     * an array presized according to the size hint, or to the {@link ContentInfo} carried by the stream;
+     * otherwise output chunks are concatenated. Content info, if present, is verified.
+     *
+     * @param decoder       fresh decoder
+     * @param length        number of input bytes
+     * @param maxOutputSize cap on total decompressed bytes; {@code 0} for no cap
+     * @param sizeHint      expected decompressed size; {@code 0} if unknown
+     * @return decompressed bytes; {@code null} if input is corrupted or truncated
+     * @throws IOException If output exceeds {@code maxOutputSize}, or does not match content info
+     */
+    @Local
+    private static byte[] decodeFully(DecoderJNI.Wrapper decoder, int length, int maxOutputSize, long sizeHint)
+            throws IOException {
+        decoder.push(length);
+        // Leading metadata meta-block is decoded by the first push, before any output is produced.
+        ContentInfo info = decoder.getContentInfo();
+        if (info != null) {
+            if (maxOutputSize > 0 && info.size() > maxOutputSize) {
+                throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+            }
+            if (sizeHint <= 0) {
+                sizeHint = Math.min(info.size(), contentInfoPresize(length));
+            }
+        }
+        if (maxOutputSize > 0) {
+            sizeHint = Math.min(sizeHint, maxOutputSize);
+        }
+        ArrayList<byte[]> output = new ArrayList<>();
+        int totalOutputSize = 0;
+        byte[] presized = sizeHint > 0 ? new byte[(int) Math.min(sizeHint, MAX_ARRAY_SIZE)] : null;
+        while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+            switch (decoder.getStatus()) {
+                case OK:
+                    decoder.push(0);
+                    break;
 
-                    case NEEDS_MORE_OUTPUT:
-                        ByteBuffer buffer = maxOutputSize > 0
-                                ? decoder.pull(Math.max(1, maxOutputSize - totalOutputSize))
-                                : decoder.pull();
+                case NEEDS_MORE_OUTPUT:
+                    ByteBuffer buffer = maxOutputSize > 0
+                            ? decoder.pull(Math.max(1, maxOutputSize - totalOutputSize))
+                            : decoder.pull();
+                    if (presized != null) {
+                        // Grow only if the hint was too small.
+                        if (buffer.remaining() > presized.length - totalOutputSize) {
+                            presized = Arrays.copyOf(presized, grownSize(presized.length,
+                                    totalOutputSize + buffer.remaining()));
+                        }
+                        int chunkLength = buffer.remaining();
+                        buffer.get(presized, totalOutputSize, chunkLength);
+                        totalOutputSize += chunkLength;
+                    } else {
                         byte[] chunk = new byte[buffer.remaining()];
                         buffer.get(chunk);
                         output.add(chunk);
                         totalOutputSize += chunk.length;
-                        if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize
-                                && decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_OUTPUT) {
-                            throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
-                        }
-                        break;
+                    }
+                    if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize
+                            && decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_OUTPUT) {
+                        throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+                    }
+                    break;
 
-                    case NEEDS_MORE_INPUT:
-                        // Give decoder a chance to process the remaining of the buffered byte.
-                        decoder.push(0);
-                        // If decoder still needs input, this means that stream is truncated.
-                        if (decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_INPUT) {
-                            return new DirectDecompress(decoder.getStatus(), null, null);
-                        }
-                        break;
+                case NEEDS_MORE_INPUT:
+                    if (!decoder.finishInput()) {
+                        return null;
+                    }
+                    break;
 
-                    default:
-                        return new DirectDecompress(decoder.getStatus(), null, null);
-                }
+                default:
+                    return null;
             }
-        } finally {
-            decoder.destroy();
         }
-        if (output.size() == 1) {
-            return new DirectDecompress(decoder.getStatus(), output.get(0), null);
+        byte[] result;
+        if (presized != null) {
+            result = totalOutputSize == presized.length ? presized : Arrays.copyOf(presized, totalOutputSize);
+        } else if (output.size() == 1) {
+            result = output.get(0);
+        } else {
+            result = new byte[totalOutputSize];
+            int offset = 0;
+            for (byte[] chunk : output) {
+                System.arraycopy(chunk, 0, result, offset, chunk.length);
+                offset += chunk.length;
+            }
         }
-        byte[] result = new byte[totalOutputSize];
-        int offset = 0;
-        for (byte[] chunk : output) {
-            System.arraycopy(chunk, 0, result, offset, chunk.length);
-            offset += chunk.length;
+        if (info != null && !info.matches(ByteBuffer.wrap(result))) {
+            throw new IOException("decompressed content does not match content info");
         }
-        return new DirectDecompress(decoder.getStatus(), result, null);
+        return result;
+    }
+
+    /**
+     * Content info comes from the stream itself, so the declared size is trusted for presizing only up to
+     * a multiple of the compressed length, bounded by a fixed ceiling; larger output grows the destination
+     * as it arrives.
+     *
+     * @param compressedLength compressed stream length
+     * @return upper bound of destination presize based on content info
+     */
+    @Local
+    static int contentInfoPresize(int compressedLength) {
+        long limit = Math.max((long) compressedLength * CONTENT_INFO_PRESIZE_RATIO, MIN_CONTENT_INFO_PRESIZE);
+        return (int) Math.min(limit, MAX_CONTENT_INFO_PRESIZE);
+    }
+
+    /**
+     * @return array size at least {@code required}, growing by half of the current size
+     */
+    @Local
+    private static int grownSize(int current, int required) throws IOException {
+        if (required < 0 || required > MAX_ARRAY_SIZE) {
+            throw new IOException("decompressed size exceeds maximum array size");
+        }
+        int grown = current + Math.max(current >> 1, 1);
+        return grown < 0 || grown > MAX_ARRAY_SIZE ? MAX_ARRAY_SIZE : Math.max(grown, required);
     }
 
     @Upstream
@@ -159,11 +289,54 @@ public class Decoder implements AutoCloseable {
         this.eager = true;
     }
 
+    /**
+     * Enables decoding of large window streams, that are not RFC 7932 compliant; MUST be invoked before
+     * decoding starts.
+     */
+    @Local
+    public void enableLargeWindow() {
+        decoder.enableLargeWindow();
+    }
+
+    /**
+     * Checks whether data starts with a large window stream header. Such streams are produced with
+     * {@link com.aayushatharva.brotli4j.encoder.Encoder.Parameters#setLargeWindow(boolean) large window}
+     * and are rejected as corrupted by decoders without large window support.
+     *
+     * @param data stream data
+     * @return {@code true} if stream uses large window
+     */
+    @Local
+    public static boolean isLargeWindowStream(byte[] data) {
+        return data.length > 0 && isLargeWindowHeader(data[0]);
+    }
+
+    /**
+     * Checks whether remaining bytes start with a large window stream header; buffer position is not changed.
+     *
+     * @param data stream data
+     * @return {@code true} if stream uses large window
+     * @see #isLargeWindowStream(byte[])
+     */
+    @Local
+    public static boolean isLargeWindowStream(ByteBuffer data) {
+        return data.hasRemaining() && isLargeWindowHeader(data.get(data.position()));
+    }
+
+    /*
+     * Large window WBITS marker, see "Large Window Brotli" draft: bits 1, 000, 100, 0 (LSB first).
+     */
+    @Local
+    private static boolean isLargeWindowHeader(byte header) {
+        return (header & 0xFF) == 0x11;
+    }
+
     /**
      * Continue decoding.
      *
      * @return -1 if stream is finished, or number of bytes available in read buffer (> 0)
      */
+    @Local
     @Upstream
     int decode() throws IOException {
         while (true) {
@@ -193,7 +366,16 @@ public class Decoder implements AutoCloseable {
                     ((Buffer) inputBuffer).clear();
                     int bytesRead = source.read(inputBuffer);
                     if (bytesRead == -1) {
-                        fail("unexpected end of input");
+                        // Decoder stopped on a full output buffer might still proceed with consumed input.
+                        decoder.push(0);
+                        if (decoder.getStatus() != DecoderJNI.Status.NEEDS_MORE_INPUT) {
+                            break;
+                        }
+                        if (!decoder.hasOutput()) {
+                            fail("unexpected end of input");
+                        }
+                        buffer = decoder.pull();
+                        break;
                     }
                     if (bytesRead == 0) {
                         // No input data is currently available.
@@ -221,16 +403,132 @@ public class Decoder implements AutoCloseable {
         }
     }
 
+    @Local
     @Upstream
     int consume(ByteBuffer dst) {
-        ByteBuffer slice = buffer.slice();
-        int limit = Math.min(slice.remaining(), dst.remaining());
-        ((Buffer) slice).limit(limit);
-        dst.put(slice);
-        discard(limit);
+        int limit = Math.min(buffer.remaining(), dst.remaining());
+        // Narrow the output buffer in place rather than allocating a slice.
+        int bufferLimit = buffer.limit();
+        ((Buffer) buffer).limit(buffer.position() + limit);
+        dst.put(buffer);
+        ((Buffer) buffer).limit(bufferLimit);
+        if (!buffer.hasRemaining()) {
+            buffer = null;
+        }
         return limit;
     }
 
+    /**
+     * Continue decoding straight into {@code dst}, without exposing decoder-owned output.
+     *
+     * @param dst destination buffer with remaining space
+     * @return -1 if stream is finished, 0 if source is not ready, or number of bytes written (> 0)
+     */
+    @Local
+    int decodeInto(ByteBuffer dst) throws IOException {
+        while (true) {
+            // Output pulled by decode() is served first.
+            if (buffer != null) {
+                if (buffer.hasRemaining()) {
+                    return consume(dst);
+                }
+                buffer = null;
+            }
+
+            int written;
+            switch (decoder.getStatus()) {
+                case DONE:
+                    return -1;
+
+                case OK:
+                case NEEDS_MORE_OUTPUT:
+                    written = decoder.pullInto(dst);
+                    if (written > 0) {
+                        return written;
+                    }
+                    break;
+
+                case NEEDS_MORE_INPUT:
+                    if (decoder.hasOutput()) {
+                        written = decoder.pullInto(dst);
+                        if (written > 0) {
+                            return written;
+                        }
+                        break;
+                    }
+                    ByteBuffer inputBuffer = decoder.getInputBuffer();
+                    ((Buffer) inputBuffer).clear();
+                    int bytesRead = source.read(inputBuffer);
+                    if (bytesRead == -1) {
+                        // Decoder might still proceed with consumed input.
+                        written = decoder.pullInto(dst);
+                        if (written > 0) {
+                            return written;
+                        }
+                        if (decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_INPUT) {
+                            fail("unexpected end of input");
+                        }
+                        break;
+                    }
+                    if (bytesRead == 0) {
+                        // No input data is currently available.
+                        return 0;
+                    }
+                    decoder.push(bytesRead);
+                    break;
+
+                default:
+                    fail("corrupted input");
+            }
+        }
+    }
+
+    /**
+     * Fills a buffer with decoded data.
+     *
+     * @param dst destination buffer
+     * @return number of bytes read, possibly zero if source is not ready, or -1 if stream is finished
+     */
+    @Local
+    int readBuffer(ByteBuffer dst) throws IOException {
+        int result = 0;
+        while (dst.hasRemaining()) {
+            int outputSize = decodeInto(dst);
+            if (outputSize <= 0) {
+                return result == 0 ? outputSize : result;
+            }
+            result += outputSize;
+        }
+        return result;
+    }
+
+    /**
+     * Scattering variant of {@link #readBuffer(ByteBuffer)}.
+     *
+     * @param dsts   destination buffers
+     * @param offset index of the first buffer
+     * @param length number of buffers
+     * @return number of bytes read, possibly zero if source is not ready, or -1 if stream is finished
+     */
+    @Local
+    long readBuffers(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > dsts.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int read = readBuffer(dsts[i]);
+            if (read < 0) {
+                return result == 0 ? read : result;
+            }
+            result += read;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return result;
+    }
+
     @Override
     @Upstream
     public void close() throws IOException {
@@ -243,54 +541,10 @@ public class Decoder implements AutoCloseable {
     }
 
     /** Decodes the given data buffer starting at offset till length. */
+    @Local
     @Upstream
     public static byte[] decompress(byte[] data, int offset, int length) throws IOException {
-        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(length);
-        ArrayList<byte[]> output = new ArrayList<>();
-        int totalOutputSize = 0;
-        try {
-            decoder.getInputBuffer().put(data, offset, length);
-            decoder.push(length);
-            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
-                switch (decoder.getStatus()) {
-                    case OK:
-                        decoder.push(0);
-                        break;
-
-                    case NEEDS_MORE_OUTPUT:
-                        ByteBuffer buffer = decoder.pull();
-                        byte[] chunk = new byte[buffer.remaining()];
-                        buffer.get(chunk);
-                        output.add(chunk);
-                        totalOutputSize += chunk.length;
-                        break;
-
-                    case NEEDS_MORE_INPUT:
-                        // Give decoder a chance to process the remaining of the buffered byte.
-                        decoder.push(0);
-                        // If decoder still needs input, this means that stream is truncated.
-                        if (decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_INPUT) {
-                            throw new IOException("corrupted input");
-                        }
-                        break;
-
-                    default:
-                        throw new IOException("corrupted input");
-                }
-            }
-        } finally {
-            decoder.destroy();
-        }
-        if (output.size() == 1) {
-            return output.get(0);
-        }
-        byte[] result = new byte[totalOutputSize];
-        int resultOffset = 0;
-        for (byte[] chunk : output) {
-            System.arraycopy(chunk, 0, result, resultOffset, chunk.length);
-            resultOffset += chunk.length;
-        }
-        return result;
+        return decompress(data, offset, length, 0);
     }
 
     /**
@@ -308,54 +562,237 @@ public class Decoder implements AutoCloseable {
     @Local
     public static byte[] decompress(byte[] data, int offset, int length, int maxOutputSize) throws IOException {
         DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(length);
-        ArrayList<byte[]> output = new ArrayList<>();
-        int totalOutputSize = 0;
+        byte[] result;
         try {
             decoder.getInputBuffer().put(data, offset, length);
-            decoder.push(length);
-            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
-                switch (decoder.getStatus()) {
-                    case OK:
-                        decoder.push(0);
-                        break;
+            result = decodeFully(decoder, length, maxOutputSize, 0);
+        } finally {
+            decoder.destroy();
+        }
+        if (result == null) {
+            throw new IOException("corrupted input");
+        }
+        return result;
+    }
 
-                    case NEEDS_MORE_OUTPUT:
-                        ByteBuffer buffer = maxOutputSize > 0
-                                ? decoder.pull(Math.max(1, maxOutputSize - totalOutputSize))
-                                : decoder.pull();
-                        byte[] chunk = new byte[buffer.remaining()];
-                        buffer.get(chunk);
-                        output.add(chunk);
-                        totalOutputSize += chunk.length;
-                        if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize
-                                && decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_OUTPUT) {
-                            throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
-                        }
-                        break;
+    /**
+     * Decodes {@code srcLength} bytes of {@code src} into {@code dst} with a single native call, when
+     * decompressed size is known upfront. Nothing is allocated on the Java heap.
+     *
+     * @param src       source byte array
+     * @param srcOffset offset within {@code src}
+     * @param srcLength compressed length
+     * @param dst       destination byte array
+     * @param dstOffset offset within {@code dst}
+     * @param dstLength room available in {@code dst}
+     * @return decompressed length
+     * @throws IOException If input is corrupted, or {@code dstLength} is too small
+     */
+    @Local
+    public static int decompress(byte[] src, int srcOffset, int srcLength,
+                                 byte[] dst, int dstOffset, int dstLength) throws IOException {
+        return decompress(src, srcOffset, srcLength, dst, dstOffset, dstLength, Parameters.DEFAULT);
+    }
 
-                    case NEEDS_MORE_INPUT:
-                        decoder.push(0);
-                        if (decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_INPUT) {
-                            throw new IOException("corrupted input");
-                        }
-                        break;
+    /**
+     * Decodes {@code srcLength} bytes of {@code src} into {@code dst} with a single native call.
+     *
+     * @param src       source byte array
+     * @param srcOffset offset within {@code src}
+     * @param srcLength compressed length
+     * @param dst       destination byte array
+     * @param dstOffset offset within {@code dst}
+     * @param dstLength room available in {@code dst}
+     * @param params    decoding parameters; size hint is not used
+     * @return decompressed length
+     * @throws IOException If input is corrupted, or {@code dstLength} is too small
+     * @see #decompress(byte[], int, int, byte[], int, int)
+     */
+    @Local
+    public static int decompress(byte[] src, int srcOffset, int srcLength,
+                                 byte[] dst, int dstOffset, int dstLength, Parameters params) throws IOException {
+        checkRegion(src.length, srcOffset, srcLength);
+        checkRegion(dst.length, dstOffset, dstLength);
+        return checkDecompressed(DecoderJNI.decompress(params, src, srcOffset, srcLength, dst, dstOffset, dstLength),
+                dstLength);
+    }
 
-                    default:
-                        throw new IOException("corrupted input");
-                }
+    /**
+     * Decodes the remaining bytes of {@code src} into the remaining space of {@code dst} with a single
+     * native call. Buffers must be either direct, or backed by an accessible array. On success
+     * {@code src} position is advanced to its limit and {@code dst} position past the decompressed data.
+     *
+     * @param src {@link ByteBuffer} source
+     * @param dst {@link ByteBuffer} destination
+     * @return decompressed length
+     * @throws IOException If input is corrupted, or {@code dst} has not enough space remaining
+     */
+    @Local
+    public static int decompress(ByteBuffer src, ByteBuffer dst) throws IOException {
+        return decompress(src, dst, Parameters.DEFAULT);
+    }
+
+    /**
+     * Decodes the remaining bytes of {@code src} into the remaining space of {@code dst} with a single
+     * native call.
+     *
+     * @param src    {@link ByteBuffer} source
+     * @param dst    {@link ByteBuffer} destination
+     * @param params decoding parameters; size hint is not used
+     * @return decompressed length
+     * @throws IOException If input is corrupted, or {@code dst} has not enough space remaining
+     * @see #decompress(ByteBuffer, ByteBuffer)
+     */
+    @Local
+    public static int decompress(ByteBuffer src, ByteBuffer dst, Parameters params) throws IOException {
+        return checkDecompressed(decompressBuffers(src, dst, params), dst.remaining());
+    }
+
+    /**
+     * @return decompressed length, or negative result of {@link DecoderJNI#decompress}; positions are
+     * advanced only on success
+     */
+    @Local
+    static int decompressBuffers(ByteBuffer src, ByteBuffer dst, Parameters params) {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("read-only destination buffer");
+        }
+        Object input = src.isDirect() ? src : arrayOf(src);
+        Object output = dst.isDirect() ? dst : arrayOf(dst);
+        int inputOffset = src.isDirect() ? src.position() : src.arrayOffset() + src.position();
+        int outputOffset = dst.isDirect() ? dst.position() : dst.arrayOffset() + dst.position();
+        int outputSize = DecoderJNI.decompress(params, input, inputOffset, src.remaining(),
+                output, outputOffset, dst.remaining());
+        if (outputSize >= 0) {
+            ((Buffer) src).position(src.limit());
+            ((Buffer) dst).position(dst.position() + outputSize);
+        }
+        return outputSize;
+    }
+
+    /**
+     * @return {@code outputSize}, if it is not a failure result of {@link DecoderJNI#decompress}
+     */
+    @Local
+    static int checkDecompressed(int outputSize, int dstLength) throws IOException {
+        if (outputSize == -2) {
+            throw new IOException("decompressed data exceeds destination of " + dstLength + " bytes");
+        } else if (outputSize < 0) {
+            throw new IOException("corrupted input");
+        }
+        return outputSize;
+    }
+
+    @Local
+    private static byte[] arrayOf(ByteBuffer buffer) {
+        if (!buffer.hasArray()) {
+            throw new IllegalArgumentException("only direct or array-backed buffers allowed");
+        }
+        return buffer.array();
+    }
+
+    @Local
+    private static void checkRegion(int arrayLength, int offset, int length) {
+        if ((offset | length) < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + ", array length " + arrayLength);
+        }
+    }
+
+    /**
+     * Decoding parameters.
+     */
+    @Local
+    public static final class Parameters {
+        /**
+         * Shared default settings; immutable, setters throw {@link UnsupportedOperationException}.
+         */
+        public static final Parameters DEFAULT = new Parameters(true);
+
+        private final boolean immutable;
+        private boolean disableRingBufferReallocation;
+        private boolean largeWindow;
+        private long sizeHint;
+
+        public Parameters() {
+            this(false);
+        }
+
+        private Parameters(boolean immutable) {
+            this.immutable = immutable;
+        }
+
+        /**
+         * @return new instance with default values
+         */
+        public static Parameters create() {
+            return new Parameters();
+        }
+
+        /**
+         * By default decoder starts with a ring buffer fitting the first meta-block and grows it, copying the
+         * content, as the stream proceeds. Disabling reallocation allocates the whole window at once, which
+         * avoids these copies at the cost of memory for short streams.
+         *
+         * @param disable {@code true} to allocate ring buffer according to window size
+         * @return this instance
+         */
+        public Parameters setDisableRingBufferReallocation(boolean disable) {
+            ensureMutable();
+            this.disableRingBufferReallocation = disable;
+            return this;
+        }
+
+        /**
+         * @param largeWindow {@code true} to accept large window streams, see {@link Decoder#isLargeWindowStream(byte[])}
+         * @return this instance
+         */
+        public Parameters setLargeWindow(boolean largeWindow) {
+            ensureMutable();
+            this.largeWindow = largeWindow;
+            return this;
+        }
+
+        /**
+         * Native decoder sizes its ring buffer by the window declared in the stream and takes no hint, so the
+         * hint presizes output collected by one-shot decompression instead.
+         *
+         * @param sizeHint estimated decompressed size, or 0 if unknown
+         * @return this instance
+         */
+        public Parameters setSizeHint(long sizeHint) {
+            ensureMutable();
+            if (sizeHint < 0) {
+                throw new IllegalArgumentException("sizeHint should not be negative");
             }
-        } finally {
-            decoder.destroy();
+            this.sizeHint = sizeHint;
+            return this;
         }
-        if (output.size() == 1) {
-            return output.get(0);
+
+        private void ensureMutable() {
+            if (immutable) {
+                throw new UnsupportedOperationException("DEFAULT parameters are immutable, use create() instead");
+            }
         }
-        byte[] result = new byte[totalOutputSize];
-        int resultOffset = 0;
-        for (byte[] chunk : output) {
-            System.arraycopy(chunk, 0, result, resultOffset, chunk.length);
-            resultOffset += chunk.length;
+
+        Parameters copy() {
+            Parameters copy = new Parameters();
+            copy.disableRingBufferReallocation = disableRingBufferReallocation;
+            copy.largeWindow = largeWindow;
+            copy.sizeHint = sizeHint;
+            return copy;
+        }
+
+        public boolean disableRingBufferReallocation() {
+            return disableRingBufferReallocation;
+        }
+
+        public boolean largeWindow() {
+            return largeWindow;
+        }
+
+        public long sizeHint() {
+            return sizeHint;
         }
-        return result;
     }
 }
@@ -5,29 +5,65 @@
 */
 package com.aayushatharva.brotli4j.decoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
+import com.aayushatharva.brotli4j.common.NativeAllocator;
 import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 
 /**
  * JNI wrapper for brotli decoder.
  */
 @Upstream
 public class DecoderJNI {
-    private static native ByteBuffer nativeCreate(long[] context);
+    private static native ByteBuffer nativeCreate(long[] context, long allocator);
 
     private static native void nativePush(long[] context, int length);
 
+    private static native void nativePushDirect(long[] context, ByteBuffer input, int offset, int length);
+
     private static native ByteBuffer nativePull(long[] context);
 
     private static native ByteBuffer nativePullBounded(long[] context, int maxBytes);
 
+    private static native int nativePullInto(long[] context, Object output, int offset, int length);
+
+    private static native int nativeDecompress(boolean largeWindow, boolean disableRingBufferReallocation,
+                                               Object input, int inputOffset, int inputLength,
+                                               Object output, int outputOffset, int outputLength);
+
+    private static native byte[] nativeGetMetadata(long[] context);
+
     private static native void nativeDestroy(long[] context);
 
+    private static native boolean nativeReset(long[] context);
+
     private static native boolean nativeAttachDictionary(long[] context, ByteBuffer dictionary);
 
+    private static native boolean nativeSetParameter(long[] context, int parameter, int value);
+
+    /* See BrotliDecoderParameter. */
+    private static final int PARAM_DISABLE_RING_BUFFER_REALLOCATION = 0;
+    private static final int PARAM_LARGE_WINDOW = 1;
+
+    /**
+     * Decompresses a whole stream from the input region to the output region in a single native call.
+     * Both regions are either direct {@link ByteBuffer}s or {@code byte[]}s.
+     *
+     * @return decompressed length; {@code -1} if input is corrupted or followed by extra bytes;
+     * {@code -2} if output region is too small; {@code -3} if input is truncated
+     */
+    @Local
+    static int decompress(Decoder.Parameters params, Object input, int inputOffset, int inputLength,
+                          Object output, int outputOffset, int outputLength) {
+        return nativeDecompress(params.largeWindow(), params.disableRingBufferReallocation(),
+                input, inputOffset, inputLength, output, outputOffset, outputLength);
+    }
+
     public enum Status {
         ERROR,
         DONE,
@@ -40,8 +76,11 @@ public class DecoderJNI {
         private final long[] context = new long[3];
         private final ByteBuffer inputBuffer;
         private final int maxOutputChunkSize;
+        private final Decoder.Parameters params;
         private Status lastStatus = Status.NEEDS_MORE_INPUT;
         private boolean fresh = true;
+        /* Caller-owned input being consumed; referenced to keep its memory alive. */
+        private ByteBuffer directInput;
 
         public Wrapper(int inputBufferSize) throws IOException {
             this(inputBufferSize, 0);
@@ -63,12 +102,70 @@ public class DecoderJNI {
          */
         @Local
         public Wrapper(int inputBufferSize, int maxOutputChunkSize) throws IOException {
+            this(inputBufferSize, maxOutputChunkSize, null);
+        }
+
+        /**
+         * @param inputBufferSize    size of the decoder's input buffer
+         * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+         * @param allocator          allocator of native decoder memory; {@code null} for system allocator
+         * @throws IOException if native decoder initialization fails
+         */
+        @Local
+        public Wrapper(int inputBufferSize, int maxOutputChunkSize, NativeAllocator allocator) throws IOException {
+            this(inputBufferSize, maxOutputChunkSize, allocator, Decoder.Parameters.DEFAULT);
+        }
+
+        /**
+         * @param inputBufferSize size of the decoder's input buffer
+         * @param params          decoding parameters
+         * @throws IOException if native decoder initialization fails
+         */
+        @Local
+        public Wrapper(int inputBufferSize, Decoder.Parameters params) throws IOException {
+            this(inputBufferSize, 0, null, params);
+        }
+
+        /**
+         * Parameters are applied on construction and again on every {@link #reset()}.
+         *
+         * @param inputBufferSize    size of the decoder's input buffer
+         * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+         * @param allocator          allocator of native decoder memory; {@code null} for system allocator
+         * @param params             decoding parameters
+         * @throws IOException if native decoder initialization fails
+         */
+        @Local
+        public Wrapper(int inputBufferSize, int maxOutputChunkSize, NativeAllocator allocator,
+                       Decoder.Parameters params) throws IOException {
             this.maxOutputChunkSize = Math.max(maxOutputChunkSize, 0);
+            this.params = params.copy();
             this.context[1] = inputBufferSize;
-            this.inputBuffer = nativeCreate(this.context);
+            this.inputBuffer = nativeCreate(this.context, allocator != null ? allocator.retain() : 0);
             if (this.context[0] == 0) {
                 throw new IOException("failed to initialize native brotli decoder");
             }
+            if (!applyParameters()) {
+                destroy();
+                throw new IOException("failed to set native brotli decoder parameters");
+            }
+        }
+
+        @Local
+        private boolean applyParameters() {
+            if (params.disableRingBufferReallocation()
+                    && !nativeSetParameter(context, PARAM_DISABLE_RING_BUFFER_REALLOCATION, 1)) {
+                return false;
+            }
+            return !params.largeWindow() || nativeSetParameter(context, PARAM_LARGE_WINDOW, 1);
+        }
+
+        /**
+         * @return decoding parameters this decoder was created with
+         */
+        @Local
+        public Decoder.Parameters getParameters() {
+            return params.copy();
         }
 
         public boolean attachDictionary(ByteBuffer dictionary) {
@@ -84,6 +181,24 @@ public class DecoderJNI {
             return nativeAttachDictionary(context, dictionary);
         }
 
+        /**
+         * Enables decoding of large window streams (window up to 1 GiB), that are not RFC 7932 compliant.
+         * MUST be invoked before decoding starts; {@link #reset()} disables it again, unless it is enabled
+         * in {@link Decoder.Parameters}.
+         */
+        @Local
+        public void enableLargeWindow() {
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli decoder is already destroyed");
+            }
+            if (!fresh) {
+                throw new IllegalStateException("decoding is already started");
+            }
+            if (!nativeSetParameter(context, PARAM_LARGE_WINDOW, 1)) {
+                throw new IllegalStateException("failed to enable large window");
+            }
+        }
+
         public void push(int length) {
             if (length < 0) {
                 throw new IllegalArgumentException("negative block length");
@@ -98,10 +213,37 @@ public class DecoderJNI {
                 throw new IllegalStateException("pushing input to decoder in OK state");
             }
             fresh = false;
+            if (length != 0) {
+                directInput = null;
+            }
             nativePush(context, length);
             parseStatus();
         }
 
+        /**
+         * Pushes remaining bytes of a direct buffer to decoder without copying them to the input buffer.
+         * Continue with {@code push(0)} while status is {@link Status#OK}; buffer contents MUST NOT
+         * be modified till then. Buffer position is not changed.
+         *
+         * @param input direct buffer
+         */
+        @Local
+        public void pushDirect(ByteBuffer input) {
+            if (!input.isDirect()) {
+                throw new IllegalArgumentException("input is not a direct buffer");
+            }
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli decoder is already destroyed");
+            }
+            if (lastStatus != Status.NEEDS_MORE_INPUT) {
+                throw new IllegalStateException("pushing input to decoder in " + lastStatus + " state");
+            }
+            fresh = false;
+            directInput = input;
+            nativePushDirect(context, input, input.position(), input.remaining());
+            parseStatus();
+        }
+
         private void parseStatus() {
             long status = context[1];
             if (status == 1) {
@@ -129,6 +271,18 @@ public class DecoderJNI {
             return context[2] != 0;
         }
 
+        /**
+         * Gives decoder a chance to process the remaining of the buffered byte, once all input is pushed
+         * and decoder asks for more.
+         *
+         * @return {@code false} if decoder still needs input, i.e. stream is truncated
+         */
+        @Local
+        public boolean finishInput() {
+            push(0);
+            return lastStatus != Status.NEEDS_MORE_INPUT;
+        }
+
         public ByteBuffer pull() {
             if (context[0] == 0) {
                 throw new IllegalStateException("brotli decoder is already destroyed");
@@ -169,6 +323,91 @@ public class DecoderJNI {
             return result;
         }
 
+        /**
+         * Continues decoding, writing output straight into remaining space of {@code dst} instead of
+         * decoder-owned memory; position of {@code dst} is advanced. Output held by decoder is written first.
+         * Unlike {@link #push(int)}, this MAY be invoked in any state except {@link Status#ERROR};
+         * it makes progress while there is pending input or output.
+         *
+         * @param dst direct or array-backed buffer
+         * @return number of bytes written
+         */
+        @Local
+        public int pullInto(ByteBuffer dst) {
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli decoder is already destroyed");
+            }
+            if (lastStatus == Status.ERROR) {
+                throw new IllegalStateException("pulling output from decoder in " + lastStatus + " state");
+            }
+            if (dst.isReadOnly()) {
+                throw new ReadOnlyBufferException();
+            }
+            if (!dst.hasRemaining() || lastStatus == Status.DONE) {
+                return 0;
+            }
+            int written;
+            if (dst.isDirect()) {
+                written = nativePullInto(context, dst, dst.position(), dst.remaining());
+            } else if (dst.hasArray()) {
+                written = nativePullInto(context, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            } else {
+                throw new IllegalArgumentException("output is neither direct nor array-backed buffer");
+            }
+            if (written < 0) {
+                throw new IllegalStateException("output is not accessible");
+            }
+            fresh = false;
+            ((Buffer) dst).position(dst.position() + written);
+            parseStatus();
+            return written;
+        }
+
+        /**
+         * Returns content info carried by the leading metadata meta-block of the stream,
+         * see {@link ContentInfo}. Becomes available once that meta-block is decoded, i.e. normally
+         * after the first push of the stream beginning.
+         *
+         * @return content info; {@code null} if stream does not carry it, or it is not decoded yet
+         */
+        @Local
+        public ContentInfo getContentInfo() {
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli decoder is already destroyed");
+            }
+            return ContentInfo.fromMetadata(nativeGetMetadata(context));
+        }
+
+        /**
+         * Returns decoder to the state right after construction, so that another stream
+         * could be decoded. Input buffer and parameters are retained; attached dictionaries are dropped.
+         * If native decoder can not be recreated, resources are released.
+         *
+         * @throws IOException If native decoder can not be recreated
+         */
+        @Local
+        public void reset() throws IOException {
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli decoder is already destroyed");
+            }
+            if (!nativeReset(context) || !applyParameters()) {
+                destroy();
+                throw new IOException("failed to reset native brotli decoder");
+            }
+            ((Buffer) inputBuffer).clear();
+            directInput = null;
+            lastStatus = Status.NEEDS_MORE_INPUT;
+            fresh = true;
+        }
+
+        /**
+         * @return {@code true} if native resources are not released yet
+         */
+        @Local
+        public boolean isAlive() {
+            return context[0] != 0;
+        }
+
         /**
          * Releases native resources.
          */
@@ -178,6 +417,7 @@ public class DecoderJNI {
             }
             nativeDestroy(context);
             context[0] = 0;
+            directInput = null;
         }
 
     }
@@ -0,0 +1,132 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.NativeAllocator;
+import com.aayushatharva.brotli4j.common.NativeArena;
+import com.aayushatharva.brotli4j.common.StatePool;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of reusable {@link DecoderJNI.Wrapper} instances, bucketed by input buffer size.
+ * <p>
+ * Wrappers are reset when released, so an acquired wrapper is always ready to decode a new stream. Brotli can
+ * not reset a native state in place, so reset recreates it; by default the pool owns a {@link NativeArena}, so
+ * that memory of the old state is recycled for the new one.
+ */
+@Local
+public final class DecoderPool extends StatePool<Integer, DecoderJNI.Wrapper> {
+
+    private final NativeAllocator allocator;
+    /* Arena created by the pool itself, closed with it. */
+    private final NativeArena arena;
+
+    /**
+     * Creates a pool keeping up to twice the number of available processors idle decoders for a minute, allocating
+     * native memory from its own arena.
+     */
+    public DecoderPool() {
+        this(2 * Runtime.getRuntime().availableProcessors(), 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a pool allocating native memory from its own arena.
+     *
+     * @param maxIdle     maximum number of idle decoders kept across all buckets
+     * @param idleTimeout time after which an idle decoder is destroyed
+     * @param unit        unit of {@code idleTimeout}
+     */
+    public DecoderPool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        super(maxIdle, idleTimeout, unit);
+        this.arena = new NativeArena();
+        this.allocator = arena;
+    }
+
+    /**
+     * Creates a pool whose decoders allocate native memory with the given allocator.
+     *
+     * @param maxIdle     maximum number of idle decoders kept across all buckets
+     * @param idleTimeout time after which an idle decoder is destroyed
+     * @param unit        unit of {@code idleTimeout}
+     * @param allocator   allocator of native decoder memory; {@code null} for system allocator
+     */
+    public DecoderPool(int maxIdle, long idleTimeout, TimeUnit unit, NativeAllocator allocator) {
+        super(maxIdle, idleTimeout, unit);
+        this.allocator = allocator;
+        this.arena = null;
+    }
+
+    /**
+     * Takes an idle decoder with the given input buffer size, or creates a new one.
+     *
+     * @param inputBufferSize input buffer size
+     * @return decoder; MUST be returned with {@link #release(DecoderJNI.Wrapper)} and never destroyed by caller
+     * @throws IOException If native decoder can not be created
+     */
+    public DecoderJNI.Wrapper acquire(int inputBufferSize) throws IOException {
+        return acquire(Integer.valueOf(inputBufferSize));
+    }
+
+    /**
+     * Returns decoder taken with {@link #acquire(int)} to the pool.
+     *
+     * @param decoder decoder to return
+     */
+    public void release(DecoderJNI.Wrapper decoder) {
+        release(decoder.getInputBuffer().capacity(), decoder);
+    }
+
+    /**
+     * Destroys all idle decoders and drops the reference to the pool's own arena; decoders in use keep it alive till
+     * they are destroyed.
+     */
+    @Override
+    public void close() {
+        super.close();
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    @Override
+    protected DecoderJNI.Wrapper create(Integer inputBufferSize) throws IOException {
+        return new DecoderJNI.Wrapper(inputBufferSize, 0, allocator);
+    }
+
+    @Override
+    protected boolean reset(DecoderJNI.Wrapper decoder) {
+        if (!decoder.isAlive()) {
+            return false;
+        }
+        try {
+            decoder.reset();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void destroy(DecoderJNI.Wrapper decoder) {
+        if (decoder.isAlive()) {
+            decoder.destroy();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.BrotliProcessor;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Reactive processor decompressing a brotli stream split into buffers.
+ * <p>
+ * Upstream buffers are copied straight into the native input buffer. Published buffers are owned by the
+ * subscriber; their size is bounded by the maximal output chunk size, if set.
+ */
+@Local
+public final class DecoderProcessor extends BrotliProcessor {
+
+    /**
+     * Default size of the native input buffer.
+     */
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 16384;
+
+    private final DecoderJNI.Wrapper decoder;
+    private final ByteBuffer inputBuffer;
+
+    /**
+     * Creates a DecoderProcessor.
+     *
+     * @throws IOException If native decoder can not be created
+     */
+    public DecoderProcessor() throws IOException {
+        this(DEFAULT_INPUT_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * Creates a DecoderProcessor.
+     *
+     * @param inputBufferSize    size of the native input buffer
+     * @param maxOutputChunkSize maximal size of published buffers; {@code 0} for no cap
+     * @throws IOException If native decoder can not be created
+     */
+    public DecoderProcessor(int inputBufferSize, int maxOutputChunkSize) throws IOException {
+        this.decoder = new DecoderJNI.Wrapper(inputBufferSize, maxOutputChunkSize);
+        this.inputBuffer = decoder.getInputBuffer();
+    }
+
+    @Override
+    protected Step advance() throws IOException {
+        switch (decoder.getStatus()) {
+            case OK:
+                decoder.push(0);
+                return Step.PROGRESS;
+
+            case NEEDS_MORE_OUTPUT:
+                return pull();
+
+            case NEEDS_MORE_INPUT:
+                if (decoder.hasOutput()) {
+                    return pull();
+                }
+                ByteBuffer input = nextInput();
+                if (input != null) {
+                    int length = Math.min(input.remaining(), inputBuffer.capacity());
+                    ByteBuffer slice = input.duplicate();
+                    ((Buffer) slice).limit(slice.position() + length);
+                    ((Buffer) inputBuffer).clear();
+                    inputBuffer.put(slice);
+                    ((Buffer) input).position(input.position() + length);
+                    decoder.push(length);
+                    return Step.PROGRESS;
+                }
+                if (!inputComplete()) {
+                    return Step.NEEDS_INPUT;
+                }
+                if (!decoder.finishInput()) {
+                    throw new IOException("truncated input");
+                }
+                return Step.PROGRESS;
+
+            case DONE:
+                if (decoder.hasOutput()) {
+                    return pull();
+                }
+                if (nextInput() != null) {
+                    throw new IOException("unexpected data after the end of the stream");
+                }
+                return Step.DONE;
+
+            default:
+                throw new IOException("corrupted input");
+        }
+    }
+
+    private Step pull() {
+        if (!canEmit()) {
+            return Step.BLOCKED;
+        }
+        emit(decoder.pull());
+        return Step.PROGRESS;
+    }
+
+    @Override
+    protected void release() {
+        if (decoder.isAlive()) {
+            decoder.destroy();
+        }
+    }
+}
@@ -16,11 +16,15 @@
  */
 package com.aayushatharva.brotli4j.decoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
 import com.aayushatharva.brotli4j.common.annotations.Local;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -32,6 +36,10 @@ import java.nio.ByteBuffer;
 @Local
 public final class Decoders {
 
+    private static final int MIN_POOLED_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+    private static final int OUTPUT_CHUNK_SIZE = 65536;
+
     /**
      * Decodes the given data buffer.
      *
@@ -42,11 +50,28 @@ public final class Decoders {
      */
     @Local
     public static DirectDecompress decompress(ByteBuffer compressed, ByteBuffer decompressed) throws IOException {
-        ByteBuf src = PooledByteBufAllocator.DEFAULT.directBuffer();
+        // Accessible buffers are decoded in place with a single native call.
+        if (isAccessible(compressed) && isAccessible(decompressed) && !decompressed.isReadOnly()) {
+            int outputSize = Decoder.decompressBuffers(compressed, decompressed, Decoder.Parameters.DEFAULT);
+            ((Buffer) compressed).position(compressed.limit());
+            if (outputSize == -2) {
+                // Destination is filled with the leading part of the output, as streaming decoder does.
+                ((Buffer) decompressed).position(decompressed.limit());
+            }
+            return new DirectDecompress(outputSize >= 0 || outputSize == -2 ? DecoderJNI.Status.DONE
+                    : outputSize == -3 ? DecoderJNI.Status.NEEDS_MORE_INPUT : DecoderJNI.Status.ERROR, null, null);
+        }
+        // Direct source is decoded in place.
+        ByteBuf src = compressed.isDirect() ? Unpooled.wrappedBuffer(compressed)
+                : PooledByteBufAllocator.DEFAULT.directBuffer();
         ByteBuf dst = PooledByteBufAllocator.DEFAULT.buffer();
 
         try {
-            src.writeBytes(compressed);
+            if (compressed.isDirect()) {
+                ((Buffer) compressed).position(compressed.limit());
+            } else {
+                src.writeBytes(compressed);
+            }
             final DirectDecompress result = decompress(src, dst);
             dst.readBytes(decompressed);
             return result;
@@ -82,12 +107,52 @@ public final class Decoders {
     @Local
     public static DirectDecompress decompress(ByteBuf compressed, ByteBuf decompressed, int maxOutputSize)
             throws IOException {
+        return decompress(compressed, decompressed, maxOutputSize, Decoder.Parameters.DEFAULT);
+    }
+
+    /**
+     * Decodes the given data buffer with decoding parameters. If {@link Decoder.Parameters#sizeHint()} is set,
+     * or the stream carries {@link ContentInfo}, destination is grown to fit that many bytes upfront.
+     * Content info, if present, is verified.
+     *
+     * @param compressed    {@link ByteBuf} source
+     * @param decompressed  {@link ByteBuf} destination
+     * @param maxOutputSize cap on total decompressed bytes; {@code 0} for no cap
+     * @param params        decoding parameters
+     * @return {@link DirectDecompress} instance
+     * @throws IOException If output exceeds {@code maxOutputSize}, or does not match content info
+     */
+    @Local
+    public static DirectDecompress decompress(ByteBuf compressed, ByteBuf decompressed, int maxOutputSize,
+                                              Decoder.Parameters params) throws IOException {
         int compressedBytes = compressed.readableBytes();
-        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(compressedBytes);
+        boolean direct = isDirect(compressed);
+        long sizeHint = maxOutputSize > 0 ? Math.min(params.sizeHint(), maxOutputSize) : params.sizeHint();
+        if (sizeHint > 0) {
+            decompressed.ensureWritable((int) Math.min(sizeHint, Integer.MAX_VALUE));
+        }
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(direct ? 1 : compressedBytes, params);
+        int start = decompressed.writerIndex();
         int totalOutputSize = 0;
+        ContentInfo info;
         try {
-            decoder.getInputBuffer().put(compressed.nioBuffer());
-            decoder.push(compressedBytes);
+            if (direct) {
+                decoder.pushDirect(compressed.nioBuffer());
+            } else {
+                decoder.getInputBuffer().put(compressed.nioBuffer());
+                decoder.push(compressedBytes);
+            }
+            // Leading metadata meta-block is decoded by the first push, before any output is produced.
+            info = decoder.getContentInfo();
+            if (info != null) {
+                if (maxOutputSize > 0 && info.size() > maxOutputSize) {
+                    throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+                }
+                if (sizeHint <= 0) {
+                    decompressed.ensureWritable((int) Math.min(info.size(),
+                            Decoder.contentInfoPresize(compressedBytes)));
+                }
+            }
             while (decoder.getStatus() != DecoderJNI.Status.DONE) {
                 switch (decoder.getStatus()) {
                     case OK:
@@ -95,22 +160,20 @@ public final class Decoders {
                         break;
 
                     case NEEDS_MORE_OUTPUT:
-                        ByteBuffer buffer = maxOutputSize > 0
-                                ? decoder.pull(Math.max(1, maxOutputSize - totalOutputSize))
-                                : decoder.pull();
-                        totalOutputSize += buffer.remaining();
-                        decompressed.writeBytes(buffer);
-                        if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize
-                                && decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_OUTPUT) {
+                        if (maxOutputSize > 0 && totalOutputSize >= maxOutputSize) {
+                            throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
+                        }
+                        // One byte over the cap tells whether output exceeds it.
+                        totalOutputSize += writeOutput(decoder, decompressed, maxOutputSize > 0
+                                ? (int) Math.min(Integer.MAX_VALUE, (long) maxOutputSize - totalOutputSize + 1)
+                                : Integer.MAX_VALUE);
+                        if (maxOutputSize > 0 && totalOutputSize > maxOutputSize) {
                             throw new IOException("decompressed size exceeds maximum size " + maxOutputSize);
                         }
                         break;
 
                     case NEEDS_MORE_INPUT:
-                        // Give decoder a chance to process the remaining of the buffered byte.
-                        decoder.push(0);
-                        // If decoder still needs input, this means that stream is truncated.
-                        if (decoder.getStatus() == DecoderJNI.Status.NEEDS_MORE_INPUT) {
+                        if (!decoder.finishInput()) {
                             return new DirectDecompress(decoder.getStatus(), null, null);
                         }
                         break;
@@ -122,6 +185,189 @@ public final class Decoders {
         } finally {
             decoder.destroy();
         }
+        if (info != null && !info.matches(decompressed.nioBuffer(start, totalOutputSize))) {
+            throw new IOException("decompressed content does not match content info");
+        }
         return new DirectDecompress(decoder.getStatus(), null, decompressed);
     }
+
+    /**
+     * Moves decoder output to {@code dst}, at most {@code maxBytes}. If writable space of {@code dst} is a single
+     * region, decoder writes there directly; otherwise output is copied.
+     *
+     * @return number of bytes written
+     */
+    @Local
+    private static int writeOutput(DecoderJNI.Wrapper decoder, ByteBuf dst, int maxBytes) {
+        if (!dst.isWritable()) {
+            dst.ensureWritable(Math.min(OUTPUT_CHUNK_SIZE, maxBytes));
+        }
+        int length = Math.min(dst.writableBytes(), maxBytes);
+        int writerIndex = dst.writerIndex();
+        if (dst.nioBufferCount() == 1) {
+            int written = decoder.pullInto(dst.nioBuffer(writerIndex, length));
+            dst.writerIndex(writerIndex + written);
+            return written;
+        }
+        ByteBuffer buffer = decoder.pull(length);
+        int written = buffer.remaining();
+        dst.writeBytes(buffer);
+        return written;
+    }
+
+    /**
+     * Decodes readable bytes of {@code src} into {@code dst} with a single native call, when decompressed
+     * size is known upfront. {@code dst} is grown to fit {@code decompressedSize} bytes once; unless one of
+     * buffers is composite, nothing is allocated on the Java heap.
+     *
+     * @param src              {@link ByteBuf} source; on success its readable bytes are skipped
+     * @param dst              {@link ByteBuf} destination
+     * @param decompressedSize exact decompressed size
+     * @throws IOException If input is corrupted, or decompressed size differs from {@code decompressedSize}
+     */
+    @Local
+    public static void decompressKnownSize(ByteBuf src, ByteBuf dst, int decompressedSize) throws IOException {
+        decompressKnownSize(src, dst, decompressedSize, Decoder.Parameters.DEFAULT);
+    }
+
+    /**
+     * Decodes readable bytes of {@code src} into {@code dst} with a single native call.
+     *
+     * @param src              {@link ByteBuf} source; on success its readable bytes are skipped
+     * @param dst              {@link ByteBuf} destination
+     * @param decompressedSize exact decompressed size
+     * @param params           decoding parameters; size hint is not used
+     * @throws IOException If input is corrupted, or decompressed size differs from {@code decompressedSize}
+     * @see #decompressKnownSize(ByteBuf, ByteBuf, int)
+     */
+    @Local
+    public static void decompressKnownSize(ByteBuf src, ByteBuf dst, int decompressedSize,
+                                           Decoder.Parameters params) throws IOException {
+        if (decompressedSize < 0) {
+            throw new IllegalArgumentException("decompressedSize should not be negative");
+        }
+        dst.ensureWritable(decompressedSize);
+
+        int srcLength = src.readableBytes();
+        Object input;
+        int inputOffset;
+        if (src.hasArray()) {
+            input = src.array();
+            inputOffset = src.arrayOffset() + src.readerIndex();
+        } else if (src.nioBufferCount() == 1) {
+            ByteBuffer buffer = src.internalNioBuffer(src.readerIndex(), srcLength);
+            input = buffer;
+            inputOffset = buffer.position();
+        } else {
+            input = ByteBufUtil.getBytes(src);
+            inputOffset = 0;
+        }
+
+        int writerIndex = dst.writerIndex();
+        int outputSize;
+        if (dst.hasArray()) {
+            outputSize = DecoderJNI.decompress(params, input, inputOffset, srcLength,
+                    dst.array(), dst.arrayOffset() + writerIndex, decompressedSize);
+        } else if (dst.nioBufferCount() == 1) {
+            ByteBuffer buffer = dst.internalNioBuffer(writerIndex, decompressedSize);
+            outputSize = DecoderJNI.decompress(params, input, inputOffset, srcLength,
+                    buffer, buffer.position(), decompressedSize);
+        } else {
+            byte[] output = new byte[decompressedSize];
+            outputSize = DecoderJNI.decompress(params, input, inputOffset, srcLength, output, 0, decompressedSize);
+            dst.setBytes(writerIndex, output, 0, Math.max(outputSize, 0));
+        }
+        Decoder.checkDecompressed(outputSize, decompressedSize);
+        if (outputSize != decompressedSize) {
+            throw new IOException("decompressed size " + outputSize + " differs from expected " + decompressedSize);
+        }
+        dst.writerIndex(writerIndex + outputSize);
+        src.skipBytes(srcLength);
+    }
+
+    /**
+     * Decodes the given data buffer with a decoder taken from {@code pool}.
+     *
+     * @param compressed   {@link ByteBuf} source
+     * @param decompressed {@link ByteBuf} destination
+     * @param pool         {@link DecoderPool} to take decoder from
+     * @return {@link DirectDecompress} instance
+     * @throws IOException Thrown in case of error during decoding
+     */
+    @Local
+    public static DirectDecompress decompress(ByteBuf compressed, ByteBuf decompressed, DecoderPool pool)
+            throws IOException {
+        int compressedBytes = compressed.readableBytes();
+        boolean direct = isDirect(compressed);
+        DecoderJNI.Wrapper decoder = pool.acquire(pooledBufferSize(compressedBytes));
+        try {
+            ByteBuffer inputBuffer = decoder.getInputBuffer();
+            int offset = compressed.readerIndex();
+            int remaining = compressedBytes;
+            while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+                switch (decoder.getStatus()) {
+                    case OK:
+                        decoder.push(0);
+                        break;
+
+                    case NEEDS_MORE_OUTPUT:
+                        writeOutput(decoder, decompressed, Integer.MAX_VALUE);
+                        break;
+
+                    case NEEDS_MORE_INPUT:
+                        if (remaining > 0 && direct) {
+                            decoder.pushDirect(compressed.nioBuffer(offset, remaining));
+                            remaining = 0;
+                            break;
+                        } else if (remaining > 0) {
+                            int length = Math.min(remaining, inputBuffer.capacity());
+                            ((Buffer) inputBuffer).clear();
+                            ((Buffer) inputBuffer).limit(length);
+                            compressed.getBytes(offset, inputBuffer);
+                            offset += length;
+                            remaining -= length;
+                            decoder.push(length);
+                            break;
+                        }
+                        if (!decoder.finishInput()) {
+                            return new DirectDecompress(decoder.getStatus(), null, null);
+                        }
+                        break;
+
+                    default:
+                        return new DirectDecompress(decoder.getStatus(), null, null);
+                }
+            }
+            if (remaining > 0) {
+                // Bytes after stream end are not allowed.
+                return new DirectDecompress(DecoderJNI.Status.ERROR, null, null);
+            }
+            return new DirectDecompress(decoder.getStatus(), null, decompressed);
+        } finally {
+            pool.release(decoder);
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code buffer} could be handed to native decoder without copying
+     */
+    private static boolean isAccessible(ByteBuffer buffer) {
+        return buffer.isDirect() || buffer.hasArray();
+    }
+
+    /**
+     * @return {@code true} if readable bytes of {@code buf} could be handed to native decoder without copying
+     */
+    private static boolean isDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+
+    /**
+     * Rounds input size up to a power of two in range [4 KiB, 1 MiB], so that pooled
+     * decoders are shared between inputs of similar size.
+     */
+    static int pooledBufferSize(int size) {
+        int clamped = Math.max(MIN_POOLED_BUFFER_SIZE, Math.min(size, MAX_POOLED_BUFFER_SIZE));
+        return Integer.highestOneBit(clamped - 1) << 1;
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.DictionaryTransport;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream decoding dictionary-compressed brotli ("dcb", RFC 9842): the header is read on construction
+ * and the dictionary it names is attached before decoding starts.
+ */
+@Local
+public class DictionaryCompressedInputStream extends BrotliInputStream {
+
+    /**
+     * Looks up raw dictionaries by their SHA-256.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        /**
+         * @param sha256 SHA-256 of raw dictionary data
+         * @return direct buffer with raw dictionary data, or {@code null} if the dictionary is unknown;
+         * MUST stay valid till the stream is closed
+         * @throws IOException If lookup fails
+         */
+        ByteBuffer resolve(byte[] sha256) throws IOException;
+    }
+
+    private final byte[] sha256;
+
+    /**
+     * Creates a DictionaryCompressedInputStream.
+     *
+     * @param source   underlying source
+     * @param resolver dictionary lookup
+     * @throws IOException If the header is malformed, the dictionary is unknown, or any failure during
+     *                     initialization
+     */
+    public DictionaryCompressedInputStream(InputStream source, Resolver resolver) throws IOException {
+        this(source, DictionaryTransport.readHeader(source), resolver);
+    }
+
+    private DictionaryCompressedInputStream(InputStream source, byte[] sha256, Resolver resolver)
+            throws IOException {
+        super(source);
+        this.sha256 = sha256;
+        try {
+            ByteBuffer dictionary = resolver.resolve(sha256.clone());
+            if (dictionary == null) {
+                throw new IOException("unknown dictionary");
+            }
+            attachDictionary(dictionary);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return SHA-256 of the dictionary named by the header
+     */
+    public byte[] dictionarySha256() {
+        return sha256.clone();
+    }
+}
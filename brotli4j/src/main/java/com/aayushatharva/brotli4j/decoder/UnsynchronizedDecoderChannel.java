@@ -0,0 +1,107 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.decoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * Single-owner variant of {@link BrotliDecoderChannel}.
+ * <p>
+ * Does not synchronize, so it MUST be used by one thread at a time; in exchange reads take no monitor
+ * (which pins virtual threads on older JDKs) and allocate nothing besides native output views.
+ */
+@Local
+public class UnsynchronizedDecoderChannel extends Decoder implements ScatteringByteChannel {
+    /**
+     * The default internal buffer size used by the decoder.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    /**
+     * Creates an UnsynchronizedDecoderChannel.
+     *
+     * @param source underlying source
+     * @throws IOException If any failure during initialization
+     */
+    public UnsynchronizedDecoderChannel(ReadableByteChannel source) throws IOException {
+        this(source, DEFAULT_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * Creates an UnsynchronizedDecoderChannel.
+     *
+     * @param source             underlying source
+     * @param bufferSize         intermediate buffer size
+     * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+     * @throws IOException If any failure during initialization
+     */
+    public UnsynchronizedDecoderChannel(ReadableByteChannel source, int bufferSize, int maxOutputChunkSize)
+            throws IOException {
+        super(source, bufferSize, maxOutputChunkSize);
+    }
+
+    /**
+     * Creates an UnsynchronizedDecoderChannel with decoding parameters.
+     *
+     * @param source             underlying source
+     * @param bufferSize         intermediate buffer size
+     * @param maxOutputChunkSize per-pull output cap in bytes; {@code 0} for no cap
+     * @param params             decoding parameters
+     * @throws IOException If any failure during initialization
+     */
+    public UnsynchronizedDecoderChannel(ReadableByteChannel source, int bufferSize, int maxOutputChunkSize,
+                                        Parameters params) throws IOException {
+        super(source, bufferSize, maxOutputChunkSize, params);
+    }
+
+    @Override
+    public void attachDictionary(ByteBuffer dictionary) throws IOException {
+        super.attachDictionary(dictionary);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        return readBuffer(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        return readBuffers(dsts, offset, length);
+    }
+}
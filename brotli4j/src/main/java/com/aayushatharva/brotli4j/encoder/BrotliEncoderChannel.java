@@ -5,19 +5,23 @@
 */
 package com.aayushatharva.brotli4j.encoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
+import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.io.IOException;
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 /**
  * WritableByteChannel that wraps native brotli encoder.
+ * <p>
+ * Gathering writes coalesce all buffers into the native input buffer under a single lock acquisition.
  */
 @Upstream
-public class BrotliEncoderChannel extends Encoder implements WritableByteChannel {
+public class BrotliEncoderChannel extends Encoder implements GatheringByteChannel {
     /**
      * The default internal buffer size used by the decoder.
      */
@@ -65,6 +69,23 @@ public class BrotliEncoderChannel extends Encoder implements WritableByteChannel
         super.attachDictionary(dictionary);
     }
 
+    /**
+     * Writes uncompressed size, and optionally checksum, of the content at the beginning of the stream;
+     * MUST be invoked before writing data.
+     *
+     * @param info content info
+     * @throws IOException If any failure during encoding
+     */
+    @Local
+    public void writeContentInfo(ContentInfo info) throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            super.writeContentInfo(info);
+        }
+    }
+
     @Override
     public boolean isOpen() {
         synchronized (mutex) {
@@ -79,22 +100,31 @@ public class BrotliEncoderChannel extends Encoder implements WritableByteChannel
         }
     }
 
+    @Local
     @Override
     public int write(ByteBuffer src) throws IOException {
         synchronized (mutex) {
             if (closed) {
                 throw new ClosedChannelException();
             }
-            int result = 0;
-            while (src.hasRemaining() && encode(EncoderJNI.Operation.PROCESS)) {
-                int limit = Math.min(src.remaining(), inputBuffer.remaining());
-                ByteBuffer slice = src.slice();
-                ((Buffer) slice).limit(limit);
-                inputBuffer.put(slice);
-                result += limit;
-                ((Buffer) src).position(src.position() + limit);
+            return writeBuffer(src);
+        }
+    }
+
+    @Local
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Local
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        synchronized (mutex) {
+            if (closed) {
+                throw new ClosedChannelException();
             }
-            return result;
+            return writeBuffers(srcs, offset, length);
         }
     }
 }
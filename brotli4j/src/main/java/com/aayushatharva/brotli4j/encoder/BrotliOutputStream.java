@@ -5,6 +5,8 @@
 */
 package com.aayushatharva.brotli4j.encoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
+import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.io.IOException;
@@ -62,6 +64,21 @@ public class BrotliOutputStream extends OutputStream {
         encoder.attachDictionary(dictionary);
     }
 
+    /**
+     * Writes uncompressed size, and optionally checksum, of the content at the beginning of the stream;
+     * MUST be invoked before writing data.
+     *
+     * @param info content info
+     * @throws IOException If any failure during encoding
+     */
+    @Local
+    public void writeContentInfo(ContentInfo info) throws IOException {
+        if (encoder.closed) {
+            throw new IOException("write after close");
+        }
+        encoder.writeContentInfo(info);
+    }
+
     @Override
     public void close() throws IOException {
         encoder.close();
@@ -75,11 +92,17 @@ public class BrotliOutputStream extends OutputStream {
         encoder.flush();
     }
 
+    @Local
     @Override
     public void write(int b) throws IOException {
         if (encoder.closed) {
             throw new IOException("write after close");
         }
+        // Fast path: input buffer has room, so there is nothing to encode yet.
+        if (encoder.inputBuffer.hasRemaining()) {
+            encoder.inputBuffer.put((byte) b);
+            return;
+        }
         while (!encoder.encode(EncoderJNI.Operation.PROCESS)) {
             Thread.yield();
         }
@@ -0,0 +1,165 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.SeekableIndex;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream producing seekable brotli stream.
+ * <p>
+ * Content is split into frames of fixed uncompressed size, compressed independently and followed by
+ * a frame index (see {@link SeekableIndex}). The result is a standard brotli stream; use
+ * {@code com.aayushatharva.brotli4j.decoder.BrotliSeekableChannel} to decode arbitrary ranges of it.
+ * <p>
+ * Frames never reference each other, so a window larger than the frame does not improve ratio; unless
+ * window is set explicitly, the smallest window covering the frame is used, which also keeps random
+ * access cheap.
+ */
+@Local
+public class BrotliSeekableOutputStream extends OutputStream {
+
+    /**
+     * Default uncompressed frame size.
+     */
+    public static final int DEFAULT_FRAME_SIZE = 1024 * 1024;
+
+    private final OutputStream destination;
+    private final Encoder.Parameters params;
+    private final SeekableIndex index = new SeekableIndex();
+    private final byte[] frame;
+    private int frameLength;
+    private long offset;
+    private boolean closed;
+
+    /**
+     * Creates a BrotliSeekableOutputStream.
+     *
+     * @param destination underlying destination
+     * @param params      encoding settings
+     * @param frameSize   uncompressed frame size
+     */
+    public BrotliSeekableOutputStream(OutputStream destination, Encoder.Parameters params, int frameSize) {
+        if (destination == null) {
+            throw new NullPointerException("destination can not be null");
+        }
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("frame size must be positive");
+        }
+        if (params.largeWindow()) {
+            throw new IllegalArgumentException("large window is not supported by seekable streams");
+        }
+        this.destination = destination;
+        this.params = params.copy();
+        if (params.lgwin() == -1) {
+            int lgwin = 10;
+            while (lgwin < 24 && (1 << lgwin) - 16 < frameSize) {
+                lgwin++;
+            }
+            this.params.setWindow(lgwin);
+        }
+        this.frame = new byte[frameSize];
+    }
+
+    /**
+     * Creates a BrotliSeekableOutputStream.
+     *
+     * @param destination underlying destination
+     * @param params      encoding settings
+     */
+    public BrotliSeekableOutputStream(OutputStream destination, Encoder.Parameters params) {
+        this(destination, params, DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * Creates a BrotliSeekableOutputStream.
+     *
+     * @param destination underlying destination
+     */
+    public BrotliSeekableOutputStream(OutputStream destination) {
+        this(destination, new Encoder.Parameters());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("write after close");
+        }
+        frame[frameLength++] = (byte) b;
+        if (frameLength == frame.length) {
+            writeFrame();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("write after close");
+        }
+        while (len > 0) {
+            int limit = Math.min(len, frame.length - frameLength);
+            System.arraycopy(b, off, frame, frameLength, limit);
+            frameLength += limit;
+            off += limit;
+            len -= limit;
+            if (frameLength == frame.length) {
+                writeFrame();
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying destination; buffered content of the current frame is kept till the frame is full.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            throw new IOException("write after close");
+        }
+        destination.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (frameLength > 0 || index.frameCount() == 0) {
+                writeFrame();
+            }
+            destination.write(index.toStreamTail());
+        } finally {
+            destination.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        Encoder.Parameters frameParams = params.copy()
+                .setSizeHint(frameLength)
+                .setStreamOffset(Math.min(offset, 1 << 30));
+        byte[] compressed = Encoder.compressFlushed(frame, 0, frameLength, frameParams);
+        destination.write(compressed);
+        index.add(compressed.length, frameLength);
+        offset += frameLength;
+        frameLength = 0;
+    }
+}
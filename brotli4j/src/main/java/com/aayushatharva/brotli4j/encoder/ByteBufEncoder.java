@@ -0,0 +1,199 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Stateful encoder turning successive {@link ByteBuf} chunks into a single brotli stream.
+ * <p>
+ * Direct input (including direct components of a {@link CompositeByteBuf}) is handed to native encoder
+ * without copying; other input is copied through the native input buffer. Apart from output buffers taken
+ * from the given allocator, nothing is allocated per chunk. Not thread-safe.
+ * <p>
+ * Make sure to add Netty Buffer as dependency before using this class.
+ */
+@Local
+public final class ByteBufEncoder implements AutoCloseable {
+
+    /**
+     * Default size of the native input buffer used for heap input.
+     */
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 16384;
+
+    private final EncoderJNI.Wrapper encoder;
+    private final ByteBuffer inputBuffer;
+    private final ByteBufAllocator allocator;
+    private ByteBuf output;
+
+    /**
+     * Creates a ByteBufEncoder.
+     *
+     * @param params    encoding parameters
+     * @param allocator allocator of output buffers
+     * @throws IOException If native encoder can not be created
+     */
+    public ByteBufEncoder(Encoder.Parameters params, ByteBufAllocator allocator) throws IOException {
+        this(params, allocator, DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a ByteBufEncoder.
+     *
+     * @param params          encoding parameters
+     * @param allocator       allocator of output buffers
+     * @param inputBufferSize size of the native input buffer used for heap input
+     * @throws IOException If native encoder can not be created
+     */
+    public ByteBufEncoder(Encoder.Parameters params, ByteBufAllocator allocator, int inputBufferSize)
+            throws IOException {
+        if (allocator == null) {
+            throw new NullPointerException("allocator can not be null");
+        }
+        this.encoder = new EncoderJNI.Wrapper(inputBufferSize, params);
+        this.inputBuffer = encoder.getInputBuffer();
+        this.allocator = allocator;
+    }
+
+    /**
+     * Encodes readable bytes of {@code src}; its reader index is moved to the writer index.
+     * Encoder may keep some of the input buffered till {@link #flush()} or {@link #finish()}.
+     *
+     * @param src uncompressed input
+     * @return compressed output produced so far, possibly empty; owned by caller
+     * @throws IOException If any failure during encoding
+     */
+    public ByteBuf encode(ByteBuf src) throws IOException {
+        ensureOpen();
+        int length = src.readableBytes();
+        feed(src, src.readerIndex(), length);
+        src.skipBytes(length);
+        return takeOutput();
+    }
+
+    /**
+     * Flushes buffered input, so that output produced so far can be decoded without any further data.
+     *
+     * @return compressed output, owned by caller
+     * @throws IOException If any failure during encoding
+     */
+    public ByteBuf flush() throws IOException {
+        ensureOpen();
+        drain(EncoderJNI.Operation.FLUSH);
+        return takeOutput();
+    }
+
+    /**
+     * Finishes the stream; no further input is accepted.
+     *
+     * @return the rest of compressed output, owned by caller
+     * @throws IOException If any failure during encoding
+     */
+    public ByteBuf finish() throws IOException {
+        ensureOpen();
+        drain(EncoderJNI.Operation.FINISH);
+        return takeOutput();
+    }
+
+    /**
+     * @return {@code true} if the stream is finished
+     */
+    public boolean isFinished() {
+        return encoder.isAlive() && encoder.isFinished();
+    }
+
+    /**
+     * Releases native encoder; unfinished stream is abandoned.
+     */
+    @Override
+    public void close() {
+        if (encoder.isAlive()) {
+            encoder.destroy();
+        }
+        if (output != null) {
+            output.release();
+            output = null;
+        }
+    }
+
+    private void feed(ByteBuf src, int index, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (src instanceof CompositeByteBuf) {
+            CompositeByteBuf composite = (CompositeByteBuf) src;
+            int end = index + length;
+            for (int i = composite.toComponentIndex(index); index < end; i++) {
+                ByteBuf component = composite.internalComponent(i);
+                int componentStart = composite.toByteIndex(i);
+                int limit = Math.min(end - index, component.capacity() - (index - componentStart));
+                feed(component, index - componentStart, limit);
+                index += limit;
+            }
+        } else if (src.isDirect() && src.nioBufferCount() == 1) {
+            encoder.pushDirect(EncoderJNI.Operation.PROCESS, src.internalNioBuffer(index, length));
+            drain(EncoderJNI.Operation.PROCESS);
+        } else {
+            while (length > 0) {
+                int chunk = Math.min(length, inputBuffer.capacity());
+                ((Buffer) inputBuffer).clear();
+                ((Buffer) inputBuffer).limit(chunk);
+                src.getBytes(index, inputBuffer);
+                encoder.push(EncoderJNI.Operation.PROCESS, chunk);
+                drain(EncoderJNI.Operation.PROCESS);
+                index += chunk;
+                length -= chunk;
+            }
+        }
+    }
+
+    private void drain(EncoderJNI.Operation op) throws IOException {
+        if (!encoder.drain(op, this::append)) {
+            throw new IOException("encoding failed");
+        }
+    }
+
+    private void append(ByteBuffer chunk) {
+        if (output == null) {
+            output = allocator.buffer(chunk.remaining());
+        }
+        output.writeBytes(chunk);
+    }
+
+    private ByteBuf takeOutput() {
+        ByteBuf result = output;
+        output = null;
+        return result != null ? result : Unpooled.EMPTY_BUFFER;
+    }
+
+    private void ensureOpen() {
+        if (!encoder.isAlive()) {
+            throw new IllegalStateException("encoder is closed");
+        }
+        if (encoder.isFinished()) {
+            throw new IllegalStateException("stream is finished");
+        }
+    }
+}
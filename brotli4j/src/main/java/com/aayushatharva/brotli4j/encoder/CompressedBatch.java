@@ -0,0 +1,101 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Independently compressed messages laid out one after another in a single array.
+ * <p>
+ * Message {@code i} occupies {@code [offset(i), offset(i) + length(i))} of {@link #data()}; each one is a
+ * complete brotli stream.
+ */
+@Local
+public final class CompressedBatch {
+
+    private final byte[] data;
+    private final int[] bounds;
+
+    CompressedBatch(byte[] data, int[] bounds) {
+        this.data = data;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return number of messages
+     */
+    public int size() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * @return backing array; might be longer than {@link #totalLength()}
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return total length of compressed messages
+     */
+    public int totalLength() {
+        return bounds[bounds.length - 1];
+    }
+
+    /**
+     * @param index message index
+     * @return offset of compressed message within {@link #data()}
+     */
+    public int offset(int index) {
+        checkIndex(index);
+        return bounds[index];
+    }
+
+    /**
+     * @param index message index
+     * @return length of compressed message
+     */
+    public int length(int index) {
+        checkIndex(index);
+        return bounds[index + 1] - bounds[index];
+    }
+
+    /**
+     * @param index message index
+     * @return read-only view of compressed message
+     */
+    public ByteBuffer get(int index) {
+        return ByteBuffer.wrap(data, offset(index), length(index)).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @param index message index
+     * @return copy of compressed message
+     */
+    public byte[] toByteArray(int index) {
+        return Arrays.copyOfRange(data, offset(index), offset(index) + length(index));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        }
+    }
+}
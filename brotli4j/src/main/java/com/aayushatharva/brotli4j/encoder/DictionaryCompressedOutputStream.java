@@ -0,0 +1,69 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.DictionaryTransport;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream producing dictionary-compressed brotli ("dcb", RFC 9842): the header identifying the
+ * dictionary is written upfront, followed by a brotli stream compressed with the dictionary attached.
+ */
+@Local
+public class DictionaryCompressedOutputStream extends BrotliOutputStream {
+
+    /**
+     * Creates a DictionaryCompressedOutputStream.
+     *
+     * @param destination underlying destination
+     * @param dictionary  dictionary lease; MUST stay open till the stream is closed
+     * @param params      encoding settings
+     * @throws IOException If any failure during initialization
+     */
+    public DictionaryCompressedOutputStream(OutputStream destination, DictionaryRegistry.Lease dictionary,
+                                            Encoder.Parameters params) throws IOException {
+        this(destination, dictionary, dictionary.sha256(), params);
+    }
+
+    /**
+     * Creates a DictionaryCompressedOutputStream.
+     *
+     * @param destination underlying destination
+     * @param dictionary  dictionary prepared from raw dictionary data; MUST outlive the stream
+     * @param sha256      SHA-256 of raw dictionary data, see {@link DictionaryTransport#sha256}
+     * @param params      encoding settings
+     * @throws IOException If any failure during initialization
+     */
+    public DictionaryCompressedOutputStream(OutputStream destination, PreparedDictionary dictionary, byte[] sha256,
+                                            Encoder.Parameters params) throws IOException {
+        super(writeHeader(destination, sha256), params);
+        try {
+            attachDictionary(dictionary);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static OutputStream writeHeader(OutputStream destination, byte[] sha256) throws IOException {
+        DictionaryTransport.writeHeader(destination, sha256);
+        return destination;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.DictionaryTransport;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread-safe registry of prepared dictionaries, addressed by SHA-256 of their content.
+ * <p>
+ * Every distinct dictionary is copied off-heap and prepared natively once; callers get reference-counted
+ * {@link Lease leases} that can be attached to any number of encoders (as {@link PreparedDictionary}) and
+ * decoders (as raw {@link Lease#dictionary() dictionary}) at once. Once the off-heap footprint exceeds the
+ * budget, least recently used dictionaries without open leases are released.
+ */
+@Local
+public final class DictionaryRegistry {
+
+    /**
+     * Default off-heap budget of the {@link #shared() shared} registry.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final DictionaryRegistry SHARED = new DictionaryRegistry(DEFAULT_MAX_BYTES);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /* Access-ordered: iteration starts from the least recently used entry. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a registry.
+     *
+     * @param maxBytes off-heap budget; dictionaries with open leases are never released, so it may be exceeded
+     */
+    public DictionaryRegistry(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return process-wide registry
+     */
+    public static DictionaryRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Leases a dictionary, preparing it if it is not registered yet.
+     *
+     * @param dictionary raw dictionary data
+     * @return lease; MUST be closed once no encoder or decoder uses it
+     */
+    public Lease acquire(byte[] dictionary) {
+        return acquire(ByteBuffer.wrap(dictionary));
+    }
+
+    /**
+     * Leases a dictionary, preparing it if it is not registered yet.
+     *
+     * @param dictionary raw dictionary data, remaining bytes are used; position is not changed
+     * @return lease; MUST be closed once no encoder or decoder uses it
+     */
+    public Lease acquire(ByteBuffer dictionary) {
+        if (!dictionary.hasRemaining()) {
+            throw new IllegalArgumentException("dictionary is empty");
+        }
+        byte[] digest = DictionaryTransport.sha256(dictionary);
+        String key = toHex(digest);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(digest);
+                entries.put(key, entry);
+                misses++;
+            } else {
+                hits++;
+            }
+            entry.references++;
+        }
+
+        long prepared;
+        try {
+            prepared = entry.prepare(dictionary);
+        } catch (RuntimeException | Error e) {
+            release(key, entry);
+            throw e;
+        }
+        synchronized (this) {
+            bytes += prepared;
+            evict();
+        }
+        return new Lease(key, entry);
+    }
+
+    /**
+     * Leases a registered dictionary.
+     *
+     * @param sha256 SHA-256 digest of dictionary content
+     * @return lease, or {@code null} if no such dictionary is registered
+     */
+    public Lease find(byte[] sha256) {
+        String key = toHex(sha256);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.prepared == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            entry.references++;
+        }
+        return new Lease(key, entry);
+    }
+
+    /**
+     * Releases all dictionaries without open leases.
+     *
+     * @return number of released dictionaries
+     */
+    public synchronized int trim() {
+        int released = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.references == 0) {
+                iterator.remove();
+                bytes -= entry.destroy();
+                released++;
+            }
+        }
+        evictions += released;
+        return released;
+    }
+
+    /**
+     * @return snapshot of registry occupancy and counters
+     */
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), bytes, hits, misses, evictions);
+    }
+
+    private synchronized void release(String key, Entry entry) {
+        if (--entry.references > 0) {
+            return;
+        }
+        if (entry.prepared == null) {
+            entries.remove(key);
+        } else {
+            evict();
+        }
+    }
+
+    /* Caller MUST hold the registry lock. */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.references == 0 && entry.prepared != null) {
+                iterator.remove();
+                bytes -= entry.destroy();
+                evictions++;
+            }
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        char[] result = new char[2 * data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[2 * i] = HEX[(data[i] >> 4) & 0xF];
+            result[2 * i + 1] = HEX[data[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    private static final class Entry {
+        private final byte[] digest;
+        /* Guarded by the registry lock. */
+        private int references;
+        /* Written under the entry lock, read under either lock. */
+        private volatile PreparedDictionary prepared;
+        private volatile ByteBuffer dictionary;
+        private long size;
+
+        private Entry(byte[] digest) {
+            this.digest = digest;
+        }
+
+        /**
+         * @return number of bytes allocated by this call; 0 if the dictionary was already prepared
+         */
+        private synchronized long prepare(ByteBuffer source) {
+            if (prepared != null) {
+                return 0;
+            }
+            ByteBuffer copy = ByteBuffer.allocateDirect(source.remaining());
+            copy.put(source.duplicate()).flip();
+            PreparedDictionary result = EncoderJNI.prepareDictionary(copy, 0);
+            dictionary = copy.asReadOnlyBuffer();
+            size = copy.capacity() + EncoderJNI.preparedDictionarySize(result);
+            prepared = result;
+            return size;
+        }
+
+        /**
+         * @return number of released bytes
+         */
+        private synchronized long destroy() {
+            EncoderJNI.destroyDictionary(prepared);
+            prepared = null;
+            dictionary = null;
+            return size;
+        }
+    }
+
+    /**
+     * Reference to a registered dictionary. Registry keeps the dictionary till all leases are closed.
+     */
+    public final class Lease implements PreparedDictionary, AutoCloseable {
+        private final String key;
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        /**
+         * @return prepared dictionary, for {@link Encoder#attachDictionary(PreparedDictionary)}
+         */
+        @Override
+        public ByteBuffer getData() {
+            ensureOpen();
+            return entry.prepared.getData();
+        }
+
+        /**
+         * @return read-only view of raw dictionary data, for decoder {@code attachDictionary}
+         */
+        public ByteBuffer dictionary() {
+            ensureOpen();
+            return entry.dictionary.duplicate();
+        }
+
+        /**
+         * @return SHA-256 digest of dictionary content
+         */
+        public byte[] sha256() {
+            return Arrays.copyOf(entry.digest, entry.digest.length);
+        }
+
+        /**
+         * Releases the reference; encoders and decoders the dictionary is attached to MUST be finished by then.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(key, entry);
+            }
+        }
+
+        private void ensureOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("lease is closed");
+            }
+        }
+    }
+
+    /**
+     * Registry occupancy and counters.
+     */
+    public static final class Stats {
+        private final int entries;
+        private final long bytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(int entries, long bytes, long hits, long misses, long evictions) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /**
+         * @return number of registered dictionaries
+         */
+        public int entries() {
+            return entries;
+        }
+
+        /**
+         * @return off-heap bytes held by raw and prepared dictionaries
+         */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return number of leases served by a registered dictionary
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * @return number of lookups that did not find a registered dictionary
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * @return number of released dictionaries
+         */
+        public long evictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{entries=" + entries + ", bytes=" + bytes + ", hits=" + hits + ", misses=" + misses
+                    + ", evictions=" + evictions + '}';
+        }
+    }
+}
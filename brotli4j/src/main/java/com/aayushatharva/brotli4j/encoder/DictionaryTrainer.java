@@ -0,0 +1,489 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.BrotliCommon;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Builds raw dictionaries from sample payloads.
+ * <p>
+ * Samples are split into training and held-out sets. Training samples are cut into epochs; from every epoch
+ * the segment covering most content shared by many samples is taken, and content already covered is not
+ * counted again. Segments are laid out so that the most valuable ones end up closest to the data, i.e. at the
+ * end of the dictionary. Counting and evaluation run in parallel on the common pool.
+ * <p>
+ * The result is usable with {@link Encoder#prepareDictionary(ByteBuffer, int)} (or
+ * {@link PreparedDictionaryGenerator}) on the encoder side and with decoder {@code attachDictionary}.
+ */
+@Local
+public final class DictionaryTrainer {
+
+    /**
+     * Default maximal dictionary size.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    /**
+     * Default size of dictionary segments.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64;
+
+    /**
+     * Default fraction of samples held out for evaluation.
+     */
+    public static final double DEFAULT_HOLD_OUT = 0.1;
+
+    /* Substrings are compared by their 8-byte prefixes, read as longs. */
+    private static final int DMER_SIZE = 8;
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private double holdOut = DEFAULT_HOLD_OUT;
+    private Encoder.Parameters params = Encoder.Parameters.DEFAULT;
+
+    /**
+     * @param maxSize maximal dictionary size
+     * @return this instance
+     */
+    public DictionaryTrainer setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize should be positive");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * @param segmentSize size of segments the dictionary is built of, at least 8
+     * @return this instance
+     */
+    public DictionaryTrainer setSegmentSize(int segmentSize) {
+        if (segmentSize < DMER_SIZE) {
+            throw new IllegalArgumentException("segmentSize should be at least " + DMER_SIZE);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * @param holdOut fraction of samples used for evaluation only, in range [0, 1)
+     * @return this instance
+     */
+    public DictionaryTrainer setHoldOut(double holdOut) {
+        if (!(holdOut >= 0 && holdOut < 1)) {
+            throw new IllegalArgumentException("holdOut should be in range [0, 1)");
+        }
+        this.holdOut = holdOut;
+        return this;
+    }
+
+    /**
+     * @param params encoder parameters used for evaluation
+     * @return this instance
+     */
+    public DictionaryTrainer setParameters(Encoder.Parameters params) {
+        if (params == null) {
+            throw new NullPointerException("params can not be null");
+        }
+        this.params = params;
+        return this;
+    }
+
+    /**
+     * Trains a dictionary and evaluates it on held-out samples.
+     *
+     * @param samples sample payloads; evenly spaced samples are held out
+     * @return dictionary and its evaluation
+     * @throws IOException If evaluation fails
+     */
+    public Result train(List<byte[]> samples) throws IOException {
+        if (maxSize < segmentSize) {
+            throw new IllegalArgumentException("maxSize is smaller than segmentSize");
+        }
+        List<byte[]> training = new ArrayList<>();
+        List<byte[]> heldOut = new ArrayList<>();
+        int count = samples.size();
+        long holdOutCount = (long) (count * holdOut);
+        long trainingBytes = 0;
+        for (int i = 0; i < count; i++) {
+            // Bresenham-style selection spreads held-out samples evenly
+            if ((i + 1) * holdOutCount / count > i * holdOutCount / count) {
+                heldOut.add(samples.get(i));
+            } else {
+                training.add(samples.get(i));
+                trainingBytes += samples.get(i).length;
+            }
+        }
+        if (trainingBytes > Integer.MAX_VALUE - DMER_SIZE) {
+            throw new IllegalArgumentException("too many training samples");
+        }
+
+        byte[] dictionary = select(training, (int) trainingBytes, countFrequencies(training));
+        if (dictionary.length == 0) {
+            throw new IllegalArgumentException("samples have no content in common");
+        }
+        return evaluate(dictionary, training.size(), heldOut);
+    }
+
+    /**
+     * @return number of training samples each 8-byte substring occurs in
+     */
+    private static LongIntMap countFrequencies(List<byte[]> training) {
+        int tasks = Math.max(1, Math.min(training.size(), 4 * ForkJoinPool.getCommonPoolParallelism()));
+        LongIntMap[] partial = new LongIntMap[tasks];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            LongIntMap counts = new LongIntMap(1024);
+            for (int i = t; i < training.size(); i += tasks) {
+                byte[] sample = training.get(i);
+                if (sample.length < DMER_SIZE) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(sample).order(ByteOrder.LITTLE_ENDIAN);
+                long[] dmers = new long[sample.length - DMER_SIZE + 1];
+                for (int j = 0; j < dmers.length; j++) {
+                    dmers[j] = buffer.getLong(j);
+                }
+                Arrays.sort(dmers);
+                for (int j = 0; j < dmers.length; j++) {
+                    if (j == 0 || dmers[j] != dmers[j - 1]) {
+                        counts.add(dmers[j], 1);
+                    }
+                }
+            }
+            partial[t] = counts;
+        });
+        LongIntMap frequencies = partial[0];
+        for (int t = 1; t < tasks; t++) {
+            frequencies.addAll(partial[t]);
+        }
+        return frequencies;
+    }
+
+    private byte[] select(List<byte[]> training, int corpusSize, LongIntMap frequencies) {
+        byte[] corpus = new byte[corpusSize];
+        int[] sampleEnds = new int[training.size()];
+        int offset = 0;
+        for (int i = 0; i < training.size(); i++) {
+            byte[] sample = training.get(i);
+            System.arraycopy(sample, 0, corpus, offset, sample.length);
+            offset += sample.length;
+            sampleEnds[i] = offset;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(corpus).order(ByteOrder.LITTLE_ENDIAN);
+
+        int epochs = Math.max(1, maxSize / segmentSize);
+        int epochSize = Math.max(segmentSize, (corpusSize + epochs - 1) / epochs);
+        List<Segment> segments = new ArrayList<>();
+        int sample = 0;
+        for (int begin = 0; begin < corpusSize; begin += epochSize) {
+            int end = Math.min(corpusSize, begin + epochSize);
+            Segment best = new Segment();
+            // Segments never span sample boundaries
+            for (int from = begin; from < end; ) {
+                while (sampleEnds[sample] <= from) {
+                    sample++;
+                }
+                int to = Math.min(end, sampleEnds[sample]);
+                scan(buffer, from, to, frequencies, best);
+                from = to;
+            }
+            if (best.score > 0) {
+                segments.add(best);
+                for (int i = best.start; i + DMER_SIZE <= best.start + segmentSize; i++) {
+                    frequencies.clear(buffer.getLong(i));
+                }
+            }
+        }
+
+        segments.sort(Comparator.comparingLong(s -> s.score));
+        byte[] dictionary = new byte[segments.size() * segmentSize];
+        for (int i = 0; i < segments.size(); i++) {
+            System.arraycopy(corpus, segments.get(i).start, dictionary, i * segmentSize, segmentSize);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Finds the best segment within [from, to), which is a part of a single sample.
+     * Every distinct 8-byte substring of a segment scores the number of samples it occurs in.
+     */
+    private void scan(ByteBuffer corpus, int from, int to, LongIntMap frequencies, Segment best) {
+        if (to - from < segmentSize) {
+            return;
+        }
+        int dmers = to - from - DMER_SIZE + 1;
+        int window = segmentSize - DMER_SIZE + 1;
+        long[] keys = new long[dmers];
+        int[] previous = new int[dmers];
+        int[] next = new int[dmers];
+        LongIntMap last = new LongIntMap(dmers);
+        for (int i = 0; i < dmers; i++) {
+            keys[i] = corpus.getLong(from + i);
+            previous[i] = last.get(keys[i], -1);
+            next[i] = dmers;
+            if (previous[i] >= 0) {
+                next[previous[i]] = i;
+            }
+            last.put(keys[i], i);
+        }
+
+        // Only the first occurrence of a substring within the window is scored
+        long score = 0;
+        for (int i = 0; i < window; i++) {
+            if (previous[i] < 0) {
+                score += value(frequencies, keys[i]);
+            }
+        }
+        for (int start = 0; ; start++) {
+            if (score > best.score) {
+                best.score = score;
+                best.start = from + start;
+            }
+            int added = start + window;
+            if (added >= dmers) {
+                break;
+            }
+            if (next[start] >= added) {
+                score -= value(frequencies, keys[start]);
+            }
+            if (previous[added] <= start) {
+                score += value(frequencies, keys[added]);
+            }
+        }
+    }
+
+    private static long value(LongIntMap frequencies, long key) {
+        int frequency = frequencies.get(key, 0);
+        // Substrings of a single sample are useless for other samples
+        return frequency > 1 ? frequency : 0;
+    }
+
+    private Result evaluate(byte[] dictionary, int trainingSamples, List<byte[]> heldOut) throws IOException {
+        PreparedDictionary prepared = Encoder.prepareDictionary(BrotliCommon.makeNative(dictionary), 0);
+        try {
+            long[] totals = heldOut.parallelStream()
+                    .map(sample -> {
+                        try {
+                            return new long[]{sample.length, Encoder.compress(sample, params).length,
+                                    compress(sample, prepared)};
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .reduce(new long[3], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1], a[2] + b[2]});
+            return new Result(dictionary, trainingSamples, heldOut.size(), totals[0], totals[1], totals[2]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            EncoderJNI.destroyDictionary(prepared);
+        }
+    }
+
+    private int compress(byte[] sample, PreparedDictionary dictionary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out, params)) {
+            encoder.attachDictionary(dictionary);
+            encoder.write(sample);
+        }
+        return out.size();
+    }
+
+    private static final class Segment {
+        private long score;
+        private int start;
+    }
+
+    /**
+     * Open-addressing long to int map; entries are never removed.
+     */
+    private static final class LongIntMap {
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private long[] keys;
+        private int[] values;
+        private int shift;
+        private int size;
+
+        private LongIntMap(int expectedSize) {
+            int bits = Math.max(4, 33 - Integer.numberOfLeadingZeros(Math.max(1, expectedSize)));
+            allocate(bits);
+        }
+
+        private void allocate(int bits) {
+            keys = new long[1 << bits];
+            values = new int[1 << bits];
+            Arrays.fill(values, EMPTY);
+            shift = 64 - bits;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+            while (values[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int get(long key, int defaultValue) {
+            int slot = slot(key);
+            return values[slot] == EMPTY ? defaultValue : values[slot];
+        }
+
+        private void put(long key, int value) {
+            int slot = slot(key);
+            if (values[slot] == EMPTY) {
+                keys[slot] = key;
+                if (++size > keys.length / 2) {
+                    values[slot] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] = value;
+        }
+
+        private void add(long key, int delta) {
+            int slot = slot(key);
+            if (values[slot] == EMPTY) {
+                put(key, delta);
+            } else {
+                values[slot] += delta;
+            }
+        }
+
+        /* Resets the value of a present key to 0. */
+        private void clear(long key) {
+            int slot = slot(key);
+            if (values[slot] != EMPTY) {
+                values[slot] = 0;
+            }
+        }
+
+        private void addAll(LongIntMap other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.values[i] != EMPTY) {
+                    add(other.keys[i], other.values[i]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(65 - shift);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Trained dictionary and its evaluation on held-out samples.
+     */
+    public static final class Result {
+        private final byte[] dictionary;
+        private final int trainingSamples;
+        private final int heldOutSamples;
+        private final long heldOutBytes;
+        private final long compressedBytes;
+        private final long compressedBytesWithDictionary;
+
+        Result(byte[] dictionary, int trainingSamples, int heldOutSamples, long heldOutBytes, long compressedBytes,
+               long compressedBytesWithDictionary) {
+            this.dictionary = dictionary;
+            this.trainingSamples = trainingSamples;
+            this.heldOutSamples = heldOutSamples;
+            this.heldOutBytes = heldOutBytes;
+            this.compressedBytes = compressedBytes;
+            this.compressedBytesWithDictionary = compressedBytesWithDictionary;
+        }
+
+        /**
+         * @return raw dictionary
+         */
+        public byte[] dictionary() {
+            return dictionary.clone();
+        }
+
+        /**
+         * @return number of samples the dictionary was built from
+         */
+        public int trainingSamples() {
+            return trainingSamples;
+        }
+
+        /**
+         * @return number of samples used for evaluation
+         */
+        public int heldOutSamples() {
+            return heldOutSamples;
+        }
+
+        /**
+         * @return total size of held-out samples
+         */
+        public long heldOutBytes() {
+            return heldOutBytes;
+        }
+
+        /**
+         * @return total compressed size of held-out samples without dictionary
+         */
+        public long compressedBytes() {
+            return compressedBytes;
+        }
+
+        /**
+         * @return total compressed size of held-out samples with dictionary
+         */
+        public long compressedBytesWithDictionary() {
+            return compressedBytesWithDictionary;
+        }
+
+        /**
+         * @return fraction of compressed size saved by the dictionary on held-out samples; 0 if none were held out
+         */
+        public double savings() {
+            return compressedBytes == 0 ? 0 : 1 - (double) compressedBytesWithDictionary / compressedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{dictionary=" + dictionary.length + ", trainingSamples=" + trainingSamples
+                    + ", heldOutSamples=" + heldOutSamples + ", heldOutBytes=" + heldOutBytes
+                    + ", compressedBytes=" + compressedBytes
+                    + ", compressedBytesWithDictionary=" + compressedBytesWithDictionary + '}';
+        }
+    }
+}
@@ -5,14 +5,17 @@
 */
 package com.aayushatharva.brotli4j.encoder;
 
+import com.aayushatharva.brotli4j.common.ContentInfo;
 import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.io.IOException;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -21,11 +24,16 @@ import java.util.List;
 @Upstream
 @Local
 public class Encoder implements AutoCloseable {
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     private final WritableByteChannel destination;
     private final List<PreparedDictionary> dictionaries;
     private final EncoderJNI.Wrapper encoder;
     private ByteBuffer buffer;
     final ByteBuffer inputBuffer;
+    /* Input buffer is pushed, but encode returned early because destination did not accept all output. */
+    @Local
+    private boolean inputPushed;
     boolean closed;
 
     /**
@@ -45,7 +53,7 @@ public class Encoder implements AutoCloseable {
         }
         this.dictionaries = new ArrayList<>();
         this.destination = destination;
-        this.encoder = new EncoderJNI.Wrapper(inputBufferSize, params.quality, params.lgwin, params.mode);
+        this.encoder = new EncoderJNI.Wrapper(inputBufferSize, params);
         this.inputBuffer = this.encoder.getInputBuffer();
     }
 
@@ -59,32 +67,80 @@ public class Encoder implements AutoCloseable {
      */
     @Upstream
     public static byte[] compress(byte[] data, int offset, int length, Parameters params) throws IOException {
-        if (length == 0) {
+        if (length == 0 && params.streamOffset() == 0) {
             byte[] empty = new byte[1];
             empty[0] = 6;
             return empty;
         }
         /* data.length > 0 */
-        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(length, params.quality, params.lgwin, params.mode);
+        long maxSize = EncoderJNI.maxCompressedSize(length);
+        // Stream offset makes encoder emit an extra uncompressed meta-block the bound does not account for.
+        if (maxSize == 0 || maxSize > Integer.MAX_VALUE || params.streamOffset() != 0) {
+            return compressStream(data, offset, length, params);
+        }
+        byte[] output = new byte[(int) maxSize];
+        int outputSize = compress(data, offset, length, output, 0, output.length, params);
+        return outputSize == output.length ? output : Arrays.copyOf(output, outputSize);
+    }
+
+    /**
+     * Encodes the given data into a byte-aligned piece of brotli stream that is not terminated.
+     * <p>
+     * Output of an encoder with {@link Parameters#setStreamOffset(long) stream offset} set to the
+     * number of bytes encoded so far could be appended to the result, e.g. to stitch independently
+     * compressed blocks into a single stream.
+     *
+     * @param data   byte array to be compressed
+     * @param offset offset of the first byte to compress
+     * @param length number of bytes to compress
+     * @param params {@link Parameters} instance
+     * @return compressed bytes
+     * @throws IOException If any failure during encoding
+     */
+    @Local
+    public static byte[] compressFlushed(byte[] data, int offset, int length, Parameters params)
+            throws IOException {
+        return compressStream(data, offset, length, params, EncoderJNI.Operation.FLUSH);
+    }
+
+    @Upstream
+    private static byte[] compressStream(byte[] data, int offset, int length, Parameters params) throws IOException {
+        return compressStream(data, offset, length, params, EncoderJNI.Operation.FINISH);
+    }
+
+    @Local
+    private static byte[] compressStream(byte[] data, int offset, int length, Parameters params,
+                                         EncoderJNI.Operation op) throws IOException {
+        return compressStream(null, data, offset, length, params, op);
+    }
+
+    /**
+     * @param metadata payload of a metadata meta-block to emit before the data; {@code null} for none
+     */
+    @Local
+    private static byte[] compressStream(byte[] metadata, byte[] data, int offset, int length, Parameters params,
+                                         EncoderJNI.Operation op) throws IOException {
+        int metadataLength = metadata != null ? metadata.length : 0;
+        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(Math.max(Math.max(length, metadataLength), 1), params);
         ArrayList<byte[]> output = new ArrayList<>();
-        int totalOutputSize = 0;
+        EncoderJNI.OutputSink sink = buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            output.add(chunk);
+        };
         try {
-            encoder.getInputBuffer().put(data, offset, length);
-            encoder.push(EncoderJNI.Operation.FINISH, length);
-            while (true) {
-                if (!encoder.isSuccess()) {
+            if (metadata != null) {
+                encoder.getInputBuffer().put(metadata);
+                encoder.push(EncoderJNI.Operation.EMIT_METADATA, metadataLength);
+                if (!encoder.drain(EncoderJNI.Operation.EMIT_METADATA, sink)) {
                     throw new IOException("encoding failed");
-                } else if (encoder.hasMoreOutput()) {
-                    ByteBuffer buffer = encoder.pull();
-                    byte[] chunk = new byte[buffer.remaining()];
-                    buffer.get(chunk);
-                    output.add(chunk);
-                    totalOutputSize += chunk.length;
-                } else if (!encoder.isFinished()) {
-                    encoder.push(EncoderJNI.Operation.FINISH, 0);
-                } else {
-                    break;
                 }
+                ((Buffer) encoder.getInputBuffer()).clear();
+            }
+            encoder.getInputBuffer().put(data, offset, length);
+            encoder.push(op, length);
+            if (!encoder.drain(op, sink)) {
+                throw new IOException("encoding failed");
             }
         } finally {
             encoder.destroy();
@@ -92,6 +148,10 @@ public class Encoder implements AutoCloseable {
         if (output.size() == 1) {
             return output.get(0);
         }
+        int totalOutputSize = 0;
+        for (byte[] chunk : output) {
+            totalOutputSize += chunk.length;
+        }
         byte[] result = new byte[totalOutputSize];
         int resultOffset = 0;
         for (byte[] chunk : output) {
@@ -101,6 +161,271 @@ public class Encoder implements AutoCloseable {
         return result;
     }
 
+    /**
+     * Encodes the given data into a brotli stream that starts with a {@link ContentInfo} metadata meta-block,
+     * so that decoders could presize the output. The result is a standard brotli stream.
+     *
+     * @param data     byte array to be compressed
+     * @param offset   offset of the first byte to compress
+     * @param length   number of bytes to compress
+     * @param params   {@link Parameters} instance
+     * @param checksum include CRC32 checksum of the data
+     * @return compressed byte array
+     * @throws IOException If any failure during encoding
+     */
+    @Local
+    public static byte[] compressWithContentInfo(byte[] data, int offset, int length, Parameters params,
+                                                 boolean checksum) throws IOException {
+        ContentInfo info = checksum ? ContentInfo.of(data, offset, length) : ContentInfo.of(length);
+        return compressStream(info.toMetadata(), data, offset, length, params, EncoderJNI.Operation.FINISH);
+    }
+
+    /**
+     * @see #compressWithContentInfo(byte[], int, int, Parameters, boolean)
+     */
+    @Local
+    public static byte[] compressWithContentInfo(byte[] data, Parameters params, boolean checksum)
+            throws IOException {
+        return compressWithContentInfo(data, 0, data.length, params, checksum);
+    }
+
+    /**
+     * Encodes {@code srcLength} bytes of {@code src} into {@code dst} with a single native call.
+     * Size {@code dst} with {@link #maxCompressedSize(int)} to guarantee that compression succeeds.
+     *
+     * @param src       source byte array
+     * @param srcOffset offset within {@code src}
+     * @param srcLength number of bytes to compress
+     * @param dst       destination byte array
+     * @param dstOffset offset within {@code dst}
+     * @param dstLength room available in {@code dst}
+     * @param params    {@link Parameters} instance
+     * @return compressed length
+     * @throws IOException If encoding fails, or {@code dstLength} is too small
+     */
+    @Local
+    public static int compress(byte[] src, int srcOffset, int srcLength,
+                               byte[] dst, int dstOffset, int dstLength, Parameters params) throws IOException {
+        checkRegion(src.length, srcOffset, srcLength);
+        checkRegion(dst.length, dstOffset, dstLength);
+        return compressRegion(src, srcOffset, srcLength, dst, dstOffset, dstLength, params);
+    }
+
+    /**
+     * Encodes the remaining bytes of {@code src} into the remaining space of {@code dst} with a single
+     * native call. Buffers must be either direct, or backed by an accessible array. On success
+     * {@code src} position is advanced to its limit and {@code dst} position past the compressed data.
+     * Size {@code dst} with {@link #maxCompressedSize(int)} to guarantee that compression succeeds.
+     *
+     * @param src    {@link ByteBuffer} source
+     * @param dst    {@link ByteBuffer} destination
+     * @param params {@link Parameters} instance
+     * @return compressed length
+     * @throws IOException If encoding fails, or {@code dst} has not enough space remaining
+     */
+    @Local
+    public static int compress(ByteBuffer src, ByteBuffer dst, Parameters params) throws IOException {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("read-only destination buffer");
+        }
+        Object input = src.isDirect() ? src : arrayOf(src);
+        Object output = dst.isDirect() ? dst : arrayOf(dst);
+        int inputOffset = src.isDirect() ? src.position() : src.arrayOffset() + src.position();
+        int outputOffset = dst.isDirect() ? dst.position() : dst.arrayOffset() + dst.position();
+        int outputSize = compressRegion(input, inputOffset, src.remaining(),
+                output, outputOffset, dst.remaining(), params);
+        ((Buffer) src).position(src.limit());
+        ((Buffer) dst).position(dst.position() + outputSize);
+        return outputSize;
+    }
+
+    /**
+     * Compresses each message independently with a single native call, laying results out one after another.
+     *
+     * @param src    byte array holding messages
+     * @param bounds {@code n + 1} ascending offsets within {@code src}; message {@code i} spans
+     *               {@code [bounds[i], bounds[i + 1])}
+     * @param params {@link Parameters} instance; stream offset is not supported
+     * @return compressed messages
+     * @throws IOException If encoding fails
+     */
+    @Local
+    public static CompressedBatch compressBatch(byte[] src, int[] bounds, Parameters params) throws IOException {
+        checkBounds(bounds, src.length);
+        int[] parameters = batchParameters(params);
+        int count = bounds.length - 1;
+        int[] dstBounds = new int[count + 1];
+        long total = bounds[count] - bounds[0];
+        // Covers brotli framing overhead of each message; growing is a safety net.
+        byte[] dst = new byte[(int) Math.min(total + 8L * count + (total >> 12) + 8, MAX_ARRAY_SIZE)];
+        int next = 0;
+        while (true) {
+            next = EncoderJNI.compressBatch(parameters, src, bounds, next, count, dst, dst.length, dstBounds);
+            if (next < 0) {
+                throw new IOException("encoding failed");
+            }
+            if (next == count) {
+                return new CompressedBatch(dst, dstBounds);
+            }
+            long required = dstBounds[next] + EncoderJNI.maxCompressedSize(bounds[next + 1] - bounds[next]);
+            if (required > MAX_ARRAY_SIZE) {
+                throw new IOException("compressed batch exceeds maximum array size");
+            }
+            dst = Arrays.copyOf(dst, (int) Math.min(Math.max(2L * dst.length, required), MAX_ARRAY_SIZE));
+        }
+    }
+
+    /**
+     * Compresses each message independently with a single native call, laying results out one after another.
+     *
+     * @param messages messages to compress
+     * @param params   {@link Parameters} instance; stream offset is not supported
+     * @return compressed messages
+     * @throws IOException If encoding fails
+     */
+    @Local
+    public static CompressedBatch compressBatch(List<byte[]> messages, Parameters params) throws IOException {
+        int[] bounds = new int[messages.size() + 1];
+        long total = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            total += messages.get(i).length;
+            if (total > MAX_ARRAY_SIZE) {
+                throw new IllegalArgumentException("batch exceeds maximum array size");
+            }
+            bounds[i + 1] = (int) total;
+        }
+        byte[] src = new byte[(int) total];
+        for (int i = 0; i < messages.size(); i++) {
+            System.arraycopy(messages.get(i), 0, src, bounds[i], bounds[i + 1] - bounds[i]);
+        }
+        return compressBatch(src, bounds, params);
+    }
+
+    /**
+     * Compresses each message independently into the remaining space of {@code dst} with a single native
+     * call, laying results out one after another. Buffers must be either direct, or backed by an accessible
+     * array. Compression stops before the first message that might not fit; {@code dst} position is advanced
+     * past the compressed messages.
+     *
+     * @param src       {@link ByteBuffer} holding messages
+     * @param srcBounds {@code n + 1} ascending indices within {@code src}; message {@code i} spans
+     *                  {@code [srcBounds[i], srcBounds[i + 1])}
+     * @param dst       {@link ByteBuffer} destination
+     * @param dstBounds {@code n + 1} entries; set to indices within {@code dst}, where compressed message
+     *                  {@code i} spans {@code [dstBounds[i], dstBounds[i + 1])}
+     * @param params    {@link Parameters} instance; stream offset is not supported
+     * @return number of compressed messages
+     * @throws IOException If encoding fails
+     */
+    @Local
+    public static int compressBatch(ByteBuffer src, int[] srcBounds, ByteBuffer dst, int[] dstBounds,
+                                    Parameters params) throws IOException {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("read-only destination buffer");
+        }
+        checkBounds(srcBounds, src.limit());
+        if (dstBounds.length != srcBounds.length) {
+            throw new IllegalArgumentException("destination bounds length " + dstBounds.length
+                    + " does not match source bounds length " + srcBounds.length);
+        }
+        int[] parameters = batchParameters(params);
+        Object input = src.isDirect() ? src : arrayOf(src);
+        Object output = dst.isDirect() ? dst : arrayOf(dst);
+        int inputShift = src.isDirect() ? 0 : src.arrayOffset();
+        int outputShift = dst.isDirect() ? 0 : dst.arrayOffset();
+        int[] inputBounds = shift(srcBounds, inputShift);
+        dstBounds[0] = dst.position() + outputShift;
+        int count = srcBounds.length - 1;
+        int next = EncoderJNI.compressBatch(parameters, input, inputBounds, 0, count,
+                output, dst.limit() + outputShift, dstBounds);
+        if (next < 0) {
+            throw new IOException("encoding failed");
+        }
+        for (int i = 0; i <= next && outputShift != 0; i++) {
+            dstBounds[i] -= outputShift;
+        }
+        ((Buffer) dst).position(dstBounds[next]);
+        return next;
+    }
+
+    /**
+     * Returns the upper bound of the size produced by one-shot compression of {@code inputSize} bytes.
+     *
+     * @param inputSize input size
+     * @return maximum compressed size, or {@code 0} if it does not fit {@code int}
+     */
+    @Local
+    public static int maxCompressedSize(int inputSize) {
+        if (inputSize < 0) {
+            throw new IllegalArgumentException("input size cannot be negative");
+        }
+        long maxSize = EncoderJNI.maxCompressedSize(inputSize);
+        return maxSize > Integer.MAX_VALUE ? 0 : (int) maxSize;
+    }
+
+    @Local
+    private static int compressRegion(Object src, int srcOffset, int srcLength,
+                                      Object dst, int dstOffset, int dstLength, Parameters params) throws IOException {
+        int outputSize = EncoderJNI.compress(params, src, srcOffset, srcLength, dst, dstOffset, dstLength);
+        if (outputSize < 0) {
+            long maxSize = EncoderJNI.maxCompressedSize(srcLength);
+            if (maxSize == 0 || dstLength < maxSize) {
+                throw new IOException("encoding failed; destination has " + dstLength
+                        + " bytes, up to " + maxSize + " bytes may be required");
+            }
+            throw new IOException("encoding failed");
+        }
+        return outputSize;
+    }
+
+    @Local
+    private static byte[] arrayOf(ByteBuffer buffer) {
+        if (!buffer.hasArray()) {
+            throw new IllegalArgumentException("only direct or array-backed buffers allowed");
+        }
+        return buffer.array();
+    }
+
+    @Local
+    private static void checkBounds(int[] bounds, int limit) {
+        if (bounds.length == 0 || bounds[0] < 0 || bounds[bounds.length - 1] > limit) {
+            throw new IndexOutOfBoundsException("bounds must be within [0, " + limit + "]");
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] < bounds[i - 1]) {
+                throw new IllegalArgumentException("bounds must be ascending");
+            }
+        }
+    }
+
+    @Local
+    private static int[] batchParameters(Parameters params) {
+        if (params.streamOffset() != 0) {
+            throw new IllegalArgumentException("stream offset is not supported by batch compression");
+        }
+        return EncoderJNI.nativeParameters(params);
+    }
+
+    @Local
+    private static int[] shift(int[] bounds, int shift) {
+        if (shift == 0) {
+            return bounds;
+        }
+        int[] result = new int[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            result[i] = bounds[i] + shift;
+        }
+        return result;
+    }
+
+    @Local
+    private static void checkRegion(int arrayLength, int offset, int length) {
+        if ((offset | length) < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                    + ", array length " + arrayLength);
+        }
+    }
+
     @Local
     public static byte[] compress(byte[] data) throws IOException {
         return compress(data, Parameters.DEFAULT);
@@ -190,15 +515,131 @@ public class Encoder implements AutoCloseable {
             } else if (encoder.hasRemainingInput()) {
                 encoder.push(op, 0);
             } else if (hasInput) {
-                encoder.push(op, inputBuffer.limit());
+                // Input pushed before an early return is already consumed; only the operation is repeated.
+                encoder.push(op, inputPushed ? 0 : inputBuffer.limit());
+                inputPushed = true;
                 hasInput = false;
             } else {
                 ((Buffer) inputBuffer).clear();
+                inputPushed = false;
                 return true;
             }
         }
     }
 
+    /**
+     * Encodes remaining bytes of a direct buffer straight from caller memory; previously buffered input
+     * is encoded first. Blocks till all produced output is written to destination, so MUST be used only with
+     * a {@link #blockingDestination() blocking destination}.
+     *
+     * @param src direct buffer; position is moved to limit
+     * @return number of consumed bytes
+     */
+    @Local
+    int encodeDirect(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        drain(EncoderJNI.Operation.PROCESS);
+        if (inputBuffer.position() > 0) {
+            ((Buffer) inputBuffer).limit(inputBuffer.position());
+            encoder.push(EncoderJNI.Operation.PROCESS, inputBuffer.limit());
+            drain(EncoderJNI.Operation.PROCESS);
+            ((Buffer) inputBuffer).clear();
+        }
+        encoder.pushDirect(EncoderJNI.Operation.PROCESS, src);
+        drain(EncoderJNI.Operation.PROCESS);
+        ((Buffer) src).position(src.limit());
+        return length;
+    }
+
+    /**
+     * Stages remaining bytes of a buffer into the input buffer, encoding it whenever it gets full; large
+     * direct buffers are encoded in place. Stops early if destination does not accept more output.
+     *
+     * @param src source buffer
+     * @return number of consumed bytes
+     */
+    @Local
+    int writeBuffer(ByteBuffer src) throws IOException {
+        if (src.isDirect() && src.remaining() >= inputBuffer.capacity() && blockingDestination()) {
+            return encodeDirect(src);
+        }
+        int result = 0;
+        while (src.hasRemaining() && encode(EncoderJNI.Operation.PROCESS)) {
+            int limit = Math.min(src.remaining(), inputBuffer.remaining());
+            int srcLimit = src.limit();
+            ((Buffer) src).limit(src.position() + limit);
+            inputBuffer.put(src);
+            ((Buffer) src).limit(srcLimit);
+            result += limit;
+        }
+        return result;
+    }
+
+    /**
+     * Native encoder may still reference direct input while its output is pending, so direct input can only be
+     * handed over if output is never left behind. As {@link WritableByteChannel} specifies, only selectable
+     * channels in non-blocking mode are expected to write partially.
+     *
+     * @return {@code true} if destination writes all bytes it is given
+     */
+    @Local
+    private boolean blockingDestination() {
+        return !(destination instanceof SelectableChannel) || ((SelectableChannel) destination).isBlocking();
+    }
+
+    /**
+     * Gathering variant of {@link #writeBuffer(ByteBuffer)}.
+     *
+     * @param srcs   source buffers
+     * @param offset index of the first buffer
+     * @param length number of buffers
+     * @return number of consumed bytes
+     */
+    @Local
+    long writeBuffers(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer src = srcs[i];
+            result += writeBuffer(src);
+            if (src.hasRemaining()) {
+                // Destination does not accept more output at the moment.
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Emits {@link ContentInfo} metadata meta-block; MUST be invoked before any data is written.
+     *
+     * @param info content info
+     */
+    @Local
+    void writeContentInfo(ContentInfo info) throws IOException {
+        if (!encoder.isFresh() || inputBuffer.position() != 0) {
+            throw new IllegalStateException("content info must precede data");
+        }
+        inputBuffer.put(info.toMetadata());
+        encode(EncoderJNI.Operation.EMIT_METADATA);
+        // Encoder leaves metadata state only on a push that has nothing to consume.
+        drain(EncoderJNI.Operation.EMIT_METADATA);
+    }
+
+    @Local
+    private void drain(EncoderJNI.Operation op) throws IOException {
+        pushOutput(true);
+        boolean success = encoder.drain(op, chunk -> {
+            buffer = chunk;
+            pushOutput(true);
+        });
+        if (!success) {
+            fail("encoding failed");
+        }
+    }
+
     @Local
     @Upstream
     public void flush() throws IOException {
@@ -262,6 +703,20 @@ public class Encoder implements AutoCloseable {
         private int quality = -1;
         private int lgwin = -1;
         private Mode mode;
+        @Local
+        private int lgblock = -1;
+        @Local
+        private boolean disableLiteralContextModeling;
+        @Local
+        private long sizeHint;
+        @Local
+        private int npostfix = -1;
+        @Local
+        private int ndirect = -1;
+        @Local
+        private long streamOffset;
+        @Local
+        private boolean largeWindow;
 
         public Parameters() {
         }
@@ -309,12 +764,15 @@ public class Encoder implements AutoCloseable {
         }
 
         /**
+         * Values above 24 require {@link #setLargeWindow(boolean) large window}.
+         *
          * @param lgwin log2(LZ window size), or -1 for default
          * @return this instance
          */
+        @Local
         public Parameters setWindow(int lgwin) {
-            if ((lgwin != -1) && ((lgwin < 10) || (lgwin > 24))) {
-                throw new IllegalArgumentException("lgwin should be in range [10, 24], or -1");
+            if ((lgwin != -1) && ((lgwin < 10) || (lgwin > 30))) {
+                throw new IllegalArgumentException("lgwin should be in range [10, 30], or -1");
             }
             this.lgwin = lgwin;
             return this;
@@ -329,6 +787,137 @@ public class Encoder implements AutoCloseable {
             return this;
         }
 
+        /**
+         * @param lgblock log2(input block size), or -1 for default
+         * @return this instance
+         */
+        @Local
+        public Parameters setBlock(int lgblock) {
+            if ((lgblock != -1) && ((lgblock < 16) || (lgblock > 24))) {
+                throw new IllegalArgumentException("lgblock should be in range [16, 24], or -1");
+            }
+            this.lgblock = lgblock;
+            return this;
+        }
+
+        /**
+         * Literal context modeling is a decoding speed vs compression ratio trade-off;
+         * disabling it speeds up both encoding and decoding of non-text payloads.
+         *
+         * @param disable {@code true} to disable literal context modeling
+         * @return this instance
+         */
+        @Local
+        public Parameters setDisableLiteralContextModeling(boolean disable) {
+            this.disableLiteralContextModeling = disable;
+            return this;
+        }
+
+        /**
+         * @param sizeHint estimated total input size, or 0 if unknown
+         * @return this instance
+         */
+        @Local
+        public Parameters setSizeHint(long sizeHint) {
+            if (sizeHint < 0) {
+                throw new IllegalArgumentException("sizeHint should not be negative");
+            }
+            this.sizeHint = sizeHint;
+            return this;
+        }
+
+        /**
+         * Already set number of direct distance codes must fit the new number of postfix bits, see
+         * {@link #setDirectDistanceCodes(int)}.
+         *
+         * @param npostfix number of postfix bits, or -1 for default
+         * @return this instance
+         */
+        @Local
+        public Parameters setPostfixBits(int npostfix) {
+            if ((npostfix != -1) && ((npostfix < 0) || (npostfix > 3))) {
+                throw new IllegalArgumentException("npostfix should be in range [0, 3], or -1");
+            }
+            checkDirectDistanceCodes(npostfix, ndirect);
+            this.npostfix = npostfix;
+            return this;
+        }
+
+        /**
+         * Number of direct distance codes should be a multiple of {@code 1 << npostfix}
+         * not exceeding {@code 15 << npostfix}, for the number of postfix bits set before.
+         *
+         * @param ndirect number of direct distance codes, or -1 for default
+         * @return this instance
+         */
+        @Local
+        public Parameters setDirectDistanceCodes(int ndirect) {
+            checkDirectDistanceCodes(npostfix, ndirect);
+            this.ndirect = ndirect;
+            return this;
+        }
+
+        @Local
+        private static void checkDirectDistanceCodes(int npostfix, int ndirect) {
+            if (ndirect == -1) {
+                return;
+            }
+            // Encoder default for npostfix is 0.
+            int postfix = Math.max(npostfix, 0);
+            if (ndirect < 0 || ndirect > (15 << postfix) || (ndirect & ((1 << postfix) - 1)) != 0) {
+                throw new IllegalArgumentException("ndirect should be a multiple of " + (1 << postfix)
+                        + " in range [0, " + (15 << postfix) + "] for npostfix " + npostfix + ", or -1; got "
+                        + ndirect);
+            }
+        }
+
+        /**
+         * Number of input bytes already processed by a different encoder instance. If not 0,
+         * stream header is omitted, so that output could be appended to a flushed predecessor stream
+         * produced with the same parameters.
+         *
+         * @param streamOffset offset of the input within the whole stream
+         * @return this instance
+         */
+        @Local
+        public Parameters setStreamOffset(long streamOffset) {
+            if ((streamOffset < 0) || (streamOffset > (1 << 30))) {
+                throw new IllegalArgumentException("streamOffset should be in range [0, 2^30]");
+            }
+            this.streamOffset = streamOffset;
+            return this;
+        }
+
+        /**
+         * Large window allows lgwin up to 30 (1 GiB). Produced streams are not RFC 7932 compliant: they
+         * could be decoded only with large window enabled on decoder side, see
+         * {@link com.aayushatharva.brotli4j.decoder.Decoder#isLargeWindowStream(byte[])}.
+         *
+         * @param largeWindow {@code true} to enable large window
+         * @return this instance
+         */
+        @Local
+        public Parameters setLargeWindow(boolean largeWindow) {
+            this.largeWindow = largeWindow;
+            return this;
+        }
+
+        @Local
+        Parameters copy() {
+            Parameters copy = new Parameters();
+            copy.quality = quality;
+            copy.lgwin = lgwin;
+            copy.mode = mode;
+            copy.lgblock = lgblock;
+            copy.disableLiteralContextModeling = disableLiteralContextModeling;
+            copy.sizeHint = sizeHint;
+            copy.npostfix = npostfix;
+            copy.ndirect = ndirect;
+            copy.streamOffset = streamOffset;
+            copy.largeWindow = largeWindow;
+            return copy;
+        }
+
         public int quality() {
             return quality;
         }
@@ -340,5 +929,40 @@ public class Encoder implements AutoCloseable {
         public Mode mode() {
             return mode;
         }
+
+        @Local
+        public int lgblock() {
+            return lgblock;
+        }
+
+        @Local
+        public boolean disableLiteralContextModeling() {
+            return disableLiteralContextModeling;
+        }
+
+        @Local
+        public long sizeHint() {
+            return sizeHint;
+        }
+
+        @Local
+        public int npostfix() {
+            return npostfix;
+        }
+
+        @Local
+        public int ndirect() {
+            return ndirect;
+        }
+
+        @Local
+        public long streamOffset() {
+            return streamOffset;
+        }
+
+        @Local
+        public boolean largeWindow() {
+            return largeWindow;
+        }
     }
 }
@@ -5,28 +5,78 @@
 */
 package com.aayushatharva.brotli4j.encoder;
 
+import com.aayushatharva.brotli4j.common.NativeAllocator;
+import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * JNI wrapper for brotli encoder.
  */
 @Upstream
 public class EncoderJNI {
-    private static native ByteBuffer nativeCreate(long[] context);
+    /* See encode.h, typedef enum BrotliEncoderParameter */
+    private static final int PARAM_MODE = 0;
+    private static final int PARAM_QUALITY = 1;
+    private static final int PARAM_LGWIN = 2;
+    private static final int PARAM_LGBLOCK = 3;
+    private static final int PARAM_DISABLE_LITERAL_CONTEXT_MODELING = 4;
+    private static final int PARAM_SIZE_HINT = 5;
+    private static final int PARAM_LARGE_WINDOW = 6;
+    private static final int PARAM_NPOSTFIX = 7;
+    private static final int PARAM_NDIRECT = 8;
+    private static final int PARAM_STREAM_OFFSET = 9;
+
+    /*
+     * Pinned arrays block GC, so one-shot compression pins them only while it is expected to be short;
+     * larger inputs are copied to native memory instead. Limits are per quality range: 0-4, 5-9, 10-11.
+     */
+    @Local
+    private static final int MAX_PINNED_LENGTH_FAST = 1 << 20;
+    @Local
+    private static final int MAX_PINNED_LENGTH = 1 << 16;
+    @Local
+    private static final int MAX_PINNED_LENGTH_SLOW = 1 << 12;
+
+    private static native ByteBuffer nativeCreate(long[] context, int[] parameters, long allocator);
     private static native void nativePush(long[] context, int length);
+    private static native void nativePushDirect(long[] context, ByteBuffer input, int offset, int length);
     private static native ByteBuffer nativePull(long[] context);
     private static native void nativeDestroy(long[] context);
+    private static native boolean nativeReset(long[] context);
     private static native boolean nativeAttachDictionary(long[] context, ByteBuffer dictionary);
     private static native ByteBuffer nativePrepareDictionary(ByteBuffer dictionary, long type);
     private static native void nativeDestroyDictionary(ByteBuffer dictionary);
+    private static native long nativePreparedDictionarySize(ByteBuffer dictionary);
+    private static native int nativeCompress(int[] parameters,
+                                             Object input, int inputOffset, int inputLength,
+                                             Object output, int outputOffset, int outputLength,
+                                             boolean pin);
+    private static native int nativeCompressBatch(int[] parameters, Object input, int[] inputBounds, int first,
+                                                  int count, Object output, int outputLength, int[] outputBounds);
+    private static native long nativeMaxCompressedSize(long inputSize);
 
     public enum Operation {
         PROCESS,
         FLUSH,
-        FINISH
+        FINISH,
+        EMIT_METADATA
+    }
+
+    /**
+     * Receives chunks pulled by {@link Wrapper#drain(Operation, OutputSink)}.
+     */
+    @Local
+    @FunctionalInterface
+    public interface OutputSink {
+        /**
+         * @param chunk encoder output; valid only till the next encoder call
+         */
+        void write(ByteBuffer chunk) throws IOException;
     }
 
     private static class PreparedDictionaryImpl implements PreparedDictionary, AutoCloseable {
@@ -69,21 +119,158 @@ public class EncoderJNI {
         return new PreparedDictionaryImpl(dictionaryData, dictionary);
     }
 
+    /**
+     * @param dictionary dictionary returned by {@link #prepareDictionary(ByteBuffer, int)}
+     * @return native memory footprint of the prepared dictionary, not counting raw dictionary data
+     */
+    @Local
+    static long preparedDictionarySize(PreparedDictionary dictionary) {
+        return nativePreparedDictionarySize(dictionary.getData());
+    }
+
+    /**
+     * Releases native memory of a dictionary returned by {@link #prepareDictionary(ByteBuffer, int)}.
+     */
+    @Local
+    static void destroyDictionary(PreparedDictionary dictionary) {
+        ((PreparedDictionaryImpl) dictionary).close();
+    }
+
+    /**
+     * Compresses the input region into the output region in a single native call.
+     * Both regions are either direct {@link ByteBuffer}s or {@code byte[]}s.
+     *
+     * @return compressed length, or {@code -1} if compression failed or output region is too small
+     */
+    @Local
+    static int compress(Encoder.Parameters params, Object input, int inputOffset, int inputLength,
+                        Object output, int outputOffset, int outputLength) {
+        return nativeCompress(nativeParameters(params),
+                input, inputOffset, inputLength, output, outputOffset, outputLength, pinnable(params, inputLength));
+    }
+
+    /**
+     * @return {@code true} if arrays could be pinned for one-shot compression of {@code inputLength} bytes
+     */
+    @Local
+    static boolean pinnable(Encoder.Parameters params, int inputLength) {
+        int quality = params.quality() < 0 ? 11 : params.quality();
+        if (quality <= 4) {
+            return inputLength <= MAX_PINNED_LENGTH_FAST;
+        }
+        return inputLength <= (quality <= 9 ? MAX_PINNED_LENGTH : MAX_PINNED_LENGTH_SLOW);
+    }
+
+    /**
+     * Compresses messages {@code [inputBounds[i], inputBounds[i + 1])} of the input region, starting with
+     * {@code first}, one right after another into the output region from {@code outputBounds[first]} in a
+     * single native call, setting {@code outputBounds[i + 1]} to the end of each. Both regions are either
+     * direct {@link ByteBuffer}s or {@code byte[]}s.
+     *
+     * @return index of the first message left uncompressed, as it might not fit before
+     * {@code outputLength}; {@code -1} if compression failed
+     */
+    @Local
+    static int compressBatch(int[] parameters, Object input, int[] inputBounds, int first, int count,
+                             Object output, int outputLength, int[] outputBounds) {
+        return nativeCompressBatch(parameters, input, inputBounds, first, count, output, outputLength,
+                outputBounds);
+    }
+
+    /**
+     * Converts encoder settings to flat {parameter, value} pairs; parameters left at default are omitted.
+     */
+    @Local
+    static int[] nativeParameters(Encoder.Parameters params) {
+        int npostfix = params.npostfix();
+        int ndirect = params.ndirect();
+        if (params.lgwin() > 24 && !params.largeWindow()) {
+            throw new IllegalArgumentException("lgwin above 24 requires large window");
+        }
+        int[] result = new int[2 * 10];
+        int count = 0;
+        count = put(result, count, PARAM_QUALITY, params.quality());
+        count = put(result, count, PARAM_LGWIN, params.lgwin());
+        if (params.largeWindow()) {
+            count = put(result, count, PARAM_LARGE_WINDOW, 1);
+        }
+        count = put(result, count, PARAM_MODE, params.mode() != null ? params.mode().ordinal() : -1);
+        count = put(result, count, PARAM_LGBLOCK, params.lgblock());
+        if (params.disableLiteralContextModeling()) {
+            count = put(result, count, PARAM_DISABLE_LITERAL_CONTEXT_MODELING, 1);
+        }
+        if (params.sizeHint() > 0) {
+            count = put(result, count, PARAM_SIZE_HINT, (int) Math.min(params.sizeHint(), 1 << 30));
+        }
+        count = put(result, count, PARAM_NPOSTFIX, npostfix);
+        count = put(result, count, PARAM_NDIRECT, ndirect);
+        if (params.streamOffset() > 0) {
+            count = put(result, count, PARAM_STREAM_OFFSET, (int) params.streamOffset());
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Local
+    private static int put(int[] parameters, int count, int parameter, int value) {
+        if (value < 0) {
+            return count;
+        }
+        parameters[count] = parameter;
+        parameters[count + 1] = value;
+        return count + 2;
+    }
+
+    /**
+     * @return upper bound of one-shot compressed size, or {@code 0} if it does not fit {@code long}
+     */
+    @Local
+    static long maxCompressedSize(long inputSize) {
+        return nativeMaxCompressedSize(inputSize);
+    }
+
     public static class Wrapper {
         protected final long[] context = new long[5];
         private final ByteBuffer inputBuffer;
         private boolean fresh = true;
+        /* Caller-owned input being consumed; referenced to keep its memory alive. */
+        private ByteBuffer directInput;
+        /* Bucket this wrapper belongs to, if created by EncoderPool. */
+        EncoderPool.Key key;
 
         public Wrapper(int inputBufferSize, int quality, int lgwin, Encoder.Mode mode)
                 throws IOException {
+            this(inputBufferSize, basicParameters(quality, lgwin, mode), null);
+        }
+
+        /**
+         * @param inputBufferSize input buffer size
+         * @param params          encoding parameters
+         * @throws IOException If native encoder can not be created
+         */
+        @Local
+        public Wrapper(int inputBufferSize, Encoder.Parameters params) throws IOException {
+            this(inputBufferSize, nativeParameters(params), null);
+        }
+
+        /**
+         * @param inputBufferSize input buffer size
+         * @param params          encoding parameters
+         * @param allocator       allocator of native encoder memory; {@code null} for system allocator
+         * @throws IOException If native encoder can not be created
+         */
+        @Local
+        public Wrapper(int inputBufferSize, Encoder.Parameters params, NativeAllocator allocator)
+                throws IOException {
+            this(inputBufferSize, nativeParameters(params), allocator);
+        }
+
+        @Local
+        Wrapper(int inputBufferSize, int[] parameters, NativeAllocator allocator) throws IOException {
             if (inputBufferSize <= 0) {
                 throw new IOException("buffer size must be positive");
             }
             this.context[1] = inputBufferSize;
-            this.context[2] = quality;
-            this.context[3] = lgwin;
-            this.context[4] = mode != null ? mode.ordinal() : -1;
-            this.inputBuffer = nativeCreate(this.context);
+            this.inputBuffer = nativeCreate(this.context, parameters, allocator != null ? allocator.retain() : 0);
             if (this.context[0] == 0) {
                 throw new IOException("failed to initialize native brotli encoder");
             }
@@ -93,6 +280,16 @@ public class EncoderJNI {
             this.context[4] = 0;
         }
 
+        @Local
+        private static int[] basicParameters(int quality, int lgwin, Encoder.Mode mode) {
+            int[] result = new int[2 * 3];
+            int count = 0;
+            count = put(result, count, PARAM_QUALITY, quality);
+            count = put(result, count, PARAM_LGWIN, lgwin);
+            count = put(result, count, PARAM_MODE, mode != null ? mode.ordinal() : -1);
+            return Arrays.copyOf(result, count);
+        }
+
         public boolean attachDictionary(ByteBuffer dictionary) {
             if (!dictionary.isDirect()) {
                 throw new IllegalArgumentException("only direct buffers allowed");
@@ -121,9 +318,40 @@ public class EncoderJNI {
             }
             context[1] = op.ordinal();
             fresh = false;
+            if (length != 0) {
+                directInput = null;
+            }
             nativePush(context, length);
         }
 
+        /**
+         * Pushes remaining bytes of a direct buffer to encoder without copying them to the input buffer.
+         * Continue with {@code push(op, 0)} while {@link #hasRemainingInput()}; buffer contents MUST NOT
+         * be modified till then. Buffer position is not changed.
+         *
+         * @param op    operation to perform
+         * @param input direct buffer
+         */
+        @Local
+        public void pushDirect(Operation op, ByteBuffer input) {
+            if (!input.isDirect()) {
+                throw new IllegalArgumentException("input is not a direct buffer");
+            }
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli encoder is already destroyed");
+            }
+            if (!isSuccess() || hasMoreOutput()) {
+                throw new IllegalStateException("pushing input to encoder in unexpected state");
+            }
+            if (hasRemainingInput()) {
+                throw new IllegalStateException("pushing input to encoder over previous input");
+            }
+            context[1] = op.ordinal();
+            fresh = false;
+            directInput = input;
+            nativePushDirect(context, input, input.position(), input.remaining());
+        }
+
         public boolean isSuccess() {
             return context[1] != 0;
         }
@@ -144,6 +372,14 @@ public class EncoderJNI {
             return inputBuffer;
         }
 
+        /**
+         * @return {@code true} if nothing has been pushed or pulled since construction or reset
+         */
+        @Local
+        boolean isFresh() {
+            return fresh;
+        }
+
         public ByteBuffer pull() {
             if (context[0] == 0) {
                 throw new IllegalStateException("brotli encoder is already destroyed");
@@ -155,6 +391,67 @@ public class EncoderJNI {
             return nativePull(context);
         }
 
+        /**
+         * Pushes the operation and pulls output till it is complete: PROCESS once pushed input is consumed,
+         * FINISH once the stream is finished, FLUSH and EMIT_METADATA once a push with that operation leaves
+         * neither input nor output behind.
+         *
+         * @param op   operation; PROCESS input MUST be pushed before
+         * @param sink receiver of output chunks
+         * @return {@code false} if encoding failed
+         * @throws IOException If sink fails
+         */
+        @Local
+        public boolean drain(Operation op, OutputSink sink) throws IOException {
+            boolean pushed = op == Operation.PROCESS;
+            while (true) {
+                if (!isSuccess()) {
+                    return false;
+                } else if (hasMoreOutput()) {
+                    sink.write(pull());
+                    pushed = op == Operation.PROCESS;
+                } else if (op == Operation.FINISH ? !isFinished() : (hasRemainingInput() || !pushed)) {
+                    push(op, 0);
+                    pushed = true;
+                } else {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns encoder to the state right after construction, so that another stream
+         * could be encoded. Input buffer and parameters are retained; attached dictionaries
+         * are dropped. If native encoder can not be recreated, resources are released.
+         *
+         * @throws IOException If native encoder can not be recreated
+         */
+        @Local
+        public void reset() throws IOException {
+            if (context[0] == 0) {
+                throw new IllegalStateException("brotli encoder is already destroyed");
+            }
+            if (!nativeReset(context)) {
+                destroy();
+                throw new IOException("failed to reset native brotli encoder");
+            }
+            ((Buffer) inputBuffer).clear();
+            this.directInput = null;
+            this.context[1] = 1;
+            this.context[2] = 0;
+            this.context[3] = 0;
+            this.context[4] = 0;
+            this.fresh = true;
+        }
+
+        /**
+         * @return {@code true} if native resources are not released yet
+         */
+        @Local
+        public boolean isAlive() {
+            return context[0] != 0;
+        }
+
         /**
          * Releases native resources.
          */
@@ -164,6 +461,7 @@ public class EncoderJNI {
             }
             nativeDestroy(context);
             context[0] = 0;
+            directInput = null;
         }
 
     }
@@ -0,0 +1,166 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.NativeAllocator;
+import com.aayushatharva.brotli4j.common.NativeArena;
+import com.aayushatharva.brotli4j.common.StatePool;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of reusable {@link EncoderJNI.Wrapper} instances, bucketed by encoder parameters and input buffer size.
+ * <p>
+ * Wrappers are reset when released, so an acquired wrapper is always ready to encode a new stream. Brotli can
+ * not reset a native state in place, so reset recreates it; by default the pool owns a {@link NativeArena}, so
+ * that memory of the old state is recycled for the new one.
+ */
+@Local
+public final class EncoderPool extends StatePool<EncoderPool.Key, EncoderJNI.Wrapper> {
+
+    private final NativeAllocator allocator;
+    /* Arena created by the pool itself, closed with it. */
+    private final NativeArena arena;
+
+    /**
+     * Creates a pool keeping up to twice the number of available processors idle encoders for a minute, allocating
+     * native memory from its own arena.
+     */
+    public EncoderPool() {
+        this(2 * Runtime.getRuntime().availableProcessors(), 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a pool allocating native memory from its own arena.
+     *
+     * @param maxIdle     maximum number of idle encoders kept across all buckets
+     * @param idleTimeout time after which an idle encoder is destroyed
+     * @param unit        unit of {@code idleTimeout}
+     */
+    public EncoderPool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        super(maxIdle, idleTimeout, unit);
+        this.arena = new NativeArena();
+        this.allocator = arena;
+    }
+
+    /**
+     * Creates a pool whose encoders allocate native memory with the given allocator.
+     *
+     * @param maxIdle     maximum number of idle encoders kept across all buckets
+     * @param idleTimeout time after which an idle encoder is destroyed
+     * @param unit        unit of {@code idleTimeout}
+     * @param allocator   allocator of native encoder memory; {@code null} for system allocator
+     */
+    public EncoderPool(int maxIdle, long idleTimeout, TimeUnit unit, NativeAllocator allocator) {
+        super(maxIdle, idleTimeout, unit);
+        this.allocator = allocator;
+        this.arena = null;
+    }
+
+    /**
+     * Takes an idle encoder matching the given settings, or creates a new one.
+     *
+     * @param params          encoding parameters
+     * @param inputBufferSize input buffer size
+     * @return encoder; MUST be returned with {@link #release(EncoderJNI.Wrapper)} and never destroyed by caller
+     * @throws IOException If native encoder can not be created
+     */
+    public EncoderJNI.Wrapper acquire(Encoder.Parameters params, int inputBufferSize) throws IOException {
+        return acquire(new Key(params, inputBufferSize));
+    }
+
+    /**
+     * Returns encoder taken with {@link #acquire(Encoder.Parameters, int)} to the pool.
+     *
+     * @param encoder encoder to return
+     */
+    public void release(EncoderJNI.Wrapper encoder) {
+        release(encoder.key, encoder);
+    }
+
+    /**
+     * Destroys all idle encoders and drops the reference to the pool's own arena; encoders in use keep it alive till
+     * they are destroyed.
+     */
+    @Override
+    public void close() {
+        super.close();
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    @Override
+    protected EncoderJNI.Wrapper create(Key key) throws IOException {
+        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(key.inputBufferSize, key.parameters, allocator);
+        encoder.key = key;
+        return encoder;
+    }
+
+    @Override
+    protected boolean reset(EncoderJNI.Wrapper encoder) {
+        if (!encoder.isAlive()) {
+            return false;
+        }
+        try {
+            encoder.reset();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void destroy(EncoderJNI.Wrapper encoder) {
+        if (encoder.isAlive()) {
+            encoder.destroy();
+        }
+    }
+
+    /**
+     * Bucket key: encoder parameters and input buffer size.
+     */
+    static final class Key {
+        private final int[] parameters;
+        private final int inputBufferSize;
+
+        Key(Encoder.Parameters params, int inputBufferSize) {
+            this.parameters = EncoderJNI.nativeParameters(params);
+            this.inputBufferSize = inputBufferSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return inputBufferSize == key.inputBufferSize && Arrays.equals(parameters, key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(parameters) + inputBufferSize;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.BrotliProcessor;
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Reactive processor compressing a stream of buffers into a single brotli stream.
+ * <p>
+ * Upstream buffers are coalesced straight into the native input buffer, which is encoded once full or when
+ * upstream completes. Published buffers are owned by the subscriber.
+ */
+@Local
+public final class EncoderProcessor extends BrotliProcessor {
+
+    /**
+     * Default size of the native input buffer.
+     */
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 65536;
+
+    private final EncoderJNI.Wrapper encoder;
+    private final ByteBuffer inputBuffer;
+    private EncoderJNI.Operation op = EncoderJNI.Operation.PROCESS;
+
+    /**
+     * Creates an EncoderProcessor.
+     *
+     * @param params encoding parameters
+     * @throws IOException If native encoder can not be created
+     */
+    public EncoderProcessor(Encoder.Parameters params) throws IOException {
+        this(params, DEFAULT_INPUT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an EncoderProcessor.
+     *
+     * @param params          encoding parameters
+     * @param inputBufferSize size of the native input buffer
+     * @throws IOException If native encoder can not be created
+     */
+    public EncoderProcessor(Encoder.Parameters params, int inputBufferSize) throws IOException {
+        this.encoder = new EncoderJNI.Wrapper(inputBufferSize, params);
+        this.inputBuffer = encoder.getInputBuffer();
+        ((Buffer) inputBuffer).clear();
+    }
+
+    @Override
+    protected Step advance() throws IOException {
+        if (!encoder.isSuccess()) {
+            throw new IOException("encoding failed");
+        } else if (encoder.hasMoreOutput()) {
+            if (!canEmit()) {
+                return Step.BLOCKED;
+            }
+            emit(encoder.pull());
+        } else if (encoder.hasRemainingInput()) {
+            encoder.push(op, 0);
+        } else if (encoder.isFinished()) {
+            return Step.DONE;
+        } else if (op == EncoderJNI.Operation.FINISH) {
+            encoder.push(op, 0);
+        } else if (nextInput() != null) {
+            ByteBuffer input = nextInput();
+            int length = Math.min(input.remaining(), inputBuffer.remaining());
+            ByteBuffer slice = input.duplicate();
+            ((Buffer) slice).limit(slice.position() + length);
+            inputBuffer.put(slice);
+            ((Buffer) input).position(input.position() + length);
+            if (!inputBuffer.hasRemaining()) {
+                encoder.push(op, inputBuffer.position());
+                ((Buffer) inputBuffer).clear();
+            }
+        } else if (inputComplete()) {
+            op = EncoderJNI.Operation.FINISH;
+            encoder.push(op, inputBuffer.position());
+            ((Buffer) inputBuffer).clear();
+        } else {
+            return Step.NEEDS_INPUT;
+        }
+        return Step.PROGRESS;
+    }
+
+    @Override
+    protected void release() {
+        if (encoder.isAlive()) {
+            encoder.destroy();
+        }
+    }
+}
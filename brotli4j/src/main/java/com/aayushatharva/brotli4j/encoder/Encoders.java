@@ -23,6 +23,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledDirectByteBuf;
 
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -34,6 +35,10 @@ import java.nio.ByteBuffer;
 @Local
 public final class Encoders {
 
+    private static final int MIN_POOLED_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_STORED_BLOCK_SIZE = 1 << 24;
+
     /**
      * Encodes the given {@link ByteBuf}
      *
@@ -74,16 +79,7 @@ public final class Encoders {
      * @throws IOException Thrown in case of error during encoding
      */
     public static void compress(ByteBuffer src, ByteBuffer dst) throws IOException {
-        ByteBuf srcBuf = PooledByteBufAllocator.DEFAULT.directBuffer();
-        ByteBuf dstBuf = PooledByteBufAllocator.DEFAULT.directBuffer();
-        try {
-            srcBuf.writeBytes(src);
-            compress(srcBuf, dstBuf, Encoder.Parameters.DEFAULT);
-        } finally {
-            dst.put(dstBuf.nioBuffer());
-            srcBuf.release();
-            dstBuf.release();
-        }
+        compress(src, dst, Encoder.Parameters.DEFAULT);
     }
 
     /**
@@ -95,6 +91,10 @@ public final class Encoders {
      * @throws IOException Thrown in case of error during encoding
      */
     public static void compress(ByteBuffer src, ByteBuffer dst, Encoder.Parameters params) throws IOException {
+        if (isAccessible(src) && isAccessible(dst)) {
+            Encoder.compress(src, dst, params);
+            return;
+        }
         ByteBuf srcBuf = PooledByteBufAllocator.DEFAULT.directBuffer();
         ByteBuf dstBuf = PooledByteBufAllocator.DEFAULT.directBuffer();
         try {
@@ -117,15 +117,29 @@ public final class Encoders {
      */
     public static void compress(ByteBuf src, ByteBuf dst, Encoder.Parameters params) throws IOException {
         int readableBytes = src.readableBytes();
-        if (readableBytes == 0) {
+        if (readableBytes == 0 && params.streamOffset() == 0) {
             dst.writeByte((byte) 6);
             return;
         }
 
-        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(readableBytes, params.quality(), params.lgwin(), params.mode());
+        int maxSize = Encoder.maxCompressedSize(readableBytes);
+        // Stream offset makes encoder emit an extra uncompressed meta-block the bound does not account for.
+        if (maxSize != 0 && src.nioBufferCount() == 1 && params.streamOffset() == 0) {
+            dst.ensureWritable(maxSize);
+            if (dst.nioBufferCount() == 1 && compressOneShot(src, dst, maxSize, params)) {
+                return;
+            }
+        }
+
+        boolean direct = isDirect(src);
+        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(direct ? 1 : Math.max(readableBytes, 1), params);
         try {
-            encoder.getInputBuffer().put(src.nioBuffer());
-            encoder.push(EncoderJNI.Operation.PROCESS, readableBytes);
+            if (direct) {
+                encoder.pushDirect(EncoderJNI.Operation.PROCESS, src.nioBuffer());
+            } else {
+                encoder.getInputBuffer().put(src.nioBuffer());
+                encoder.push(EncoderJNI.Operation.PROCESS, readableBytes);
+            }
             while (true) {
                 if (!encoder.isSuccess()) {
                     throw new IOException("encoding failed");
@@ -142,4 +156,155 @@ public final class Encoders {
             encoder.destroy();
         }
     }
+
+    /**
+     * Encodes the given {@link ByteBuf}, or stores it uncompressed if {@code policy} finds it too small
+     * or incompressible. Either way {@code dst} receives a valid brotli stream.
+     *
+     * @param src    {@link ByteBuf} source
+     * @param dst    {@link ByteBuf} destination
+     * @param params {@link Encoder.Parameters} instance
+     * @param policy {@link EncodingPolicy} deciding whether to compress
+     * @return path taken
+     * @throws IOException Thrown in case of error during encoding
+     */
+    public static EncodingPolicy.Path compress(ByteBuf src, ByteBuf dst, Encoder.Parameters params,
+                                               EncodingPolicy policy) throws IOException {
+        EncodingPolicy.Path path = policy.choose(src);
+        if (path == EncodingPolicy.Path.COMPRESSED) {
+            compress(src, dst, params);
+        } else {
+            store(src, dst);
+        }
+        return path;
+    }
+
+    /**
+     * Writes readable bytes of {@code src} as a brotli stream made of uncompressed meta-blocks.
+     * Stream header declares the smallest window; it does not limit the size of uncompressed meta-blocks.
+     */
+    static void store(ByteBuf src, ByteBuf dst) {
+        int remaining = src.readableBytes();
+        if (remaining == 0) {
+            dst.writeByte((byte) 6);
+            return;
+        }
+        int offset = src.readerIndex();
+        dst.ensureWritable(remaining + 5 * (remaining / MAX_STORED_BLOCK_SIZE + 1) + 1);
+        // WBITS = 16 is coded as a single zero bit.
+        int bitCount = 1;
+        while (remaining > 0) {
+            int length = Math.min(remaining, MAX_STORED_BLOCK_SIZE);
+            int nibbles = length - 1 < (1 << 16) ? 4 : length - 1 < (1 << 20) ? 5 : 6;
+            // ISLAST = 0, MNIBBLES, MLEN - 1, ISUNCOMPRESSED = 1
+            long bits = ((long) (nibbles - 4) << (bitCount + 1))
+                    | ((long) (length - 1) << (bitCount + 3))
+                    | (1L << (bitCount + 3 + 4 * nibbles));
+            bitCount += 4 + 4 * nibbles;
+            for (int i = 0; i < bitCount; i += 8) {
+                dst.writeByte((byte) (bits >>> i));
+            }
+            dst.writeBytes(src, offset, length);
+            offset += length;
+            remaining -= length;
+            bitCount = 0;
+        }
+        // ISLAST = 1, ISLASTEMPTY = 1
+        dst.writeByte((byte) 3);
+    }
+
+    /**
+     * Encodes the given {@link ByteBuf} with an encoder taken from {@code pool}
+     *
+     * @param src    {@link ByteBuf} source
+     * @param dst    {@link ByteBuf} destination
+     * @param params {@link Encoder.Parameters} instance
+     * @param pool   {@link EncoderPool} to take encoder from
+     * @throws IOException Thrown in case of error during encoding
+     */
+    public static void compress(ByteBuf src, ByteBuf dst, Encoder.Parameters params, EncoderPool pool)
+            throws IOException {
+        int readableBytes = src.readableBytes();
+        if (readableBytes == 0) {
+            dst.writeByte((byte) 6);
+            return;
+        }
+
+        boolean direct = isDirect(src);
+        EncoderJNI.Wrapper encoder = pool.acquire(params, pooledBufferSize(readableBytes));
+        try {
+            ByteBuffer inputBuffer = encoder.getInputBuffer();
+            int offset = src.readerIndex();
+            int remaining = readableBytes;
+            EncoderJNI.Operation op = EncoderJNI.Operation.PROCESS;
+            while (true) {
+                if (!encoder.isSuccess()) {
+                    throw new IOException("encoding failed");
+                } else if (encoder.hasMoreOutput()) {
+                    dst.writeBytes(encoder.pull());
+                } else if (encoder.hasRemainingInput()) {
+                    encoder.push(op, 0);
+                } else if (remaining > 0 && direct) {
+                    op = EncoderJNI.Operation.FINISH;
+                    encoder.pushDirect(op, src.nioBuffer(offset, remaining));
+                    remaining = 0;
+                } else if (remaining > 0) {
+                    int length = Math.min(remaining, inputBuffer.capacity());
+                    ((Buffer) inputBuffer).clear();
+                    ((Buffer) inputBuffer).limit(length);
+                    src.getBytes(offset, inputBuffer);
+                    offset += length;
+                    remaining -= length;
+                    if (remaining == 0) {
+                        op = EncoderJNI.Operation.FINISH;
+                    }
+                    encoder.push(op, length);
+                } else if (!encoder.isFinished()) {
+                    encoder.push(EncoderJNI.Operation.FINISH, 0);
+                } else {
+                    break;
+                }
+            }
+        } finally {
+            pool.release(encoder);
+        }
+    }
+
+    /**
+     * Rounds input size up to a power of two in range [4 KiB, 1 MiB], so that pooled
+     * encoders are shared between inputs of similar size.
+     */
+    static int pooledBufferSize(int size) {
+        int clamped = Math.max(MIN_POOLED_BUFFER_SIZE, Math.min(size, MAX_POOLED_BUFFER_SIZE));
+        return Integer.highestOneBit(clamped - 1) << 1;
+    }
+
+    /**
+     * Compresses readable bytes of {@code src} straight into writable space of {@code dst}
+     * with a single native call; both buffers must expose a single NIO buffer.
+     *
+     * @return {@code false} if buffers are neither direct nor array-backed
+     */
+    private static boolean compressOneShot(ByteBuf src, ByteBuf dst, int maxSize, Encoder.Parameters params)
+            throws IOException {
+        ByteBuffer input = src.nioBuffer(src.readerIndex(), src.readableBytes());
+        ByteBuffer output = dst.nioBuffer(dst.writerIndex(), maxSize);
+        if (!isAccessible(input) || !isAccessible(output)) {
+            return false;
+        }
+        int outputSize = Encoder.compress(input, output, params);
+        dst.writerIndex(dst.writerIndex() + outputSize);
+        return true;
+    }
+
+    /**
+     * @return {@code true} if readable bytes of {@code buf} could be handed to native encoder without copying
+     */
+    private static boolean isDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+
+    private static boolean isAccessible(ByteBuffer buffer) {
+        return buffer.isDirect() || buffer.hasArray();
+    }
 }
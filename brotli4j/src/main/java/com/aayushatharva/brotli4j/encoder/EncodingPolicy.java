@@ -0,0 +1,149 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Pre-check deciding whether a payload is worth compressing.
+ * <p>
+ * Payloads smaller than the size threshold, or whose sampled order-0 entropy exceeds the entropy threshold
+ * (JPEG, gzip and other already compressed formats score close to 8 bits per byte), are emitted as a stored
+ * brotli stream instead: still valid brotli, but produced without native encoder and only a few bytes larger
+ * than the payload. Order-0 estimate does not see long repeats of high-entropy content, so such payloads are
+ * stored too.
+ *
+ * @see Encoders#compress(ByteBuf, ByteBuf, Encoder.Parameters, EncodingPolicy)
+ */
+@Local
+public final class EncodingPolicy {
+
+    /**
+     * Stores payloads below 128 bytes or above 7.5 bits per byte, sampling up to 4 KiB.
+     */
+    public static final EncodingPolicy DEFAULT = new EncodingPolicy(128, 7.5, 4096);
+
+    /**
+     * Always compresses.
+     */
+    public static final EncodingPolicy ALWAYS = new EncodingPolicy(0, 8, 0);
+
+    private static final int STRIPE_SIZE = 256;
+
+    private final int minSize;
+    private final double maxEntropy;
+    private final int sampleSize;
+
+    /**
+     * Creates a policy.
+     *
+     * @param minSize    payloads smaller than this are stored
+     * @param maxEntropy payloads with estimated entropy above this (bits per byte, in range [0, 8]) are stored
+     * @param sampleSize number of bytes sampled by the entropy estimator; 0 disables the estimator
+     */
+    public EncodingPolicy(int minSize, double maxEntropy, int sampleSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize must not be negative");
+        }
+        if (maxEntropy < 0 || maxEntropy > 8) {
+            throw new IllegalArgumentException("maxEntropy should be in range [0, 8]");
+        }
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("sampleSize must not be negative");
+        }
+        this.minSize = minSize;
+        this.maxEntropy = maxEntropy;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Chooses how readable bytes of {@code src} should be encoded.
+     *
+     * @param src payload; indices are not modified
+     * @return chosen path
+     */
+    public Path choose(ByteBuf src) {
+        int length = src.readableBytes();
+        if (length < minSize) {
+            return Path.STORED_TOO_SMALL;
+        }
+        if (sampleSize > 0 && maxEntropy < 8 && estimateEntropy(src, sampleSize) > maxEntropy) {
+            return Path.STORED_INCOMPRESSIBLE;
+        }
+        return Path.COMPRESSED;
+    }
+
+    /**
+     * Estimates order-0 entropy of readable bytes of {@code src}. Payloads larger than {@code sampleSize}
+     * are sampled with evenly spaced stripes.
+     *
+     * @param src        payload; indices are not modified
+     * @param sampleSize maximum number of bytes to look at
+     * @return estimated entropy, in bits per byte
+     */
+    public static double estimateEntropy(ByteBuf src, int sampleSize) {
+        int length = src.readableBytes();
+        byte[] sample;
+        if (length <= sampleSize) {
+            sample = new byte[length];
+            src.getBytes(src.readerIndex(), sample);
+        } else {
+            int stripes = Math.max(1, sampleSize / STRIPE_SIZE);
+            int stripeSize = Math.min(STRIPE_SIZE, sampleSize);
+            long step = stripes > 1 ? (long) (length - stripeSize) / (stripes - 1) : 0;
+            sample = new byte[stripes * stripeSize];
+            for (int i = 0; i < stripes; i++) {
+                src.getBytes(src.readerIndex() + (int) (i * step), sample, i * stripeSize, stripeSize);
+            }
+        }
+        if (sample.length == 0) {
+            return 0;
+        }
+
+        int[] histogram = new int[256];
+        for (byte b : sample) {
+            histogram[b & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : histogram) {
+            if (count != 0) {
+                double p = (double) count / sample.length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    /**
+     * Encoding path taken for a payload.
+     */
+    public enum Path {
+        /**
+         * Payload was compressed by native encoder.
+         */
+        COMPRESSED,
+        /**
+         * Payload was below the size threshold and was emitted as a stored brotli stream.
+         */
+        STORED_TOO_SMALL,
+        /**
+         * Payload looked incompressible and was emitted as a stored brotli stream.
+         */
+        STORED_INCOMPRESSIBLE
+    }
+}
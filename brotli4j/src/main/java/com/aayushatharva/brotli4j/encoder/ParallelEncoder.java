@@ -0,0 +1,200 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Encoder that compresses large inputs on several cores and still produces a single standard brotli stream.
+ * <p>
+ * Input is split into blocks that are compressed concurrently by independent native encoders. Every block but
+ * the last one is flushed, so it ends on a byte boundary; every block but the first one is encoded with
+ * {@link Encoder.Parameters#setStreamOffset(long) stream offset}, so it has no stream header and can be
+ * appended to its predecessor. Blocks do not reference each other, so ratio is slightly worse than
+ * single-threaded one; the loss shrinks as block size grows past the window size.
+ */
+@Local
+public final class ParallelEncoder {
+
+    /**
+     * Default block size; 4 MiB matches the default window size.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private static final long MAX_STREAM_OFFSET = 1 << 30;
+
+    private final Encoder.Parameters params;
+    private final int blockSize;
+    private final int parallelism;
+    private final Executor executor;
+
+    /**
+     * Creates a parallel encoder running on the common {@link ForkJoinPool}.
+     *
+     * @param params encoding parameters
+     */
+    public ParallelEncoder(Encoder.Parameters params) {
+        this(params, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a parallel encoder.
+     *
+     * @param params      encoding parameters; stream offset and size hint are set per block
+     * @param blockSize   size of independently compressed input blocks
+     * @param parallelism maximum number of blocks being compressed (or awaiting output) at once
+     * @param executor    executor running block compression tasks
+     */
+    public ParallelEncoder(Encoder.Parameters params, int blockSize, int parallelism, Executor executor) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        this.params = params.copy();
+        this.blockSize = blockSize;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data bytes to compress
+     * @return compressed bytes
+     * @throws IOException If any failure during encoding
+     */
+    public byte[] compress(byte[] data) throws IOException {
+        return compress(data, 0, data.length);
+    }
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data   bytes to compress
+     * @param offset offset of the first byte to compress
+     * @param length number of bytes to compress
+     * @return compressed bytes
+     * @throws IOException If any failure during encoding
+     */
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(length / 4, 64));
+        compress(new ByteArrayInputStream(data, offset, length), output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Compresses everything readable from {@code source} into {@code destination}.
+     * Neither stream is closed.
+     *
+     * @param source      uncompressed input
+     * @param destination compressed output
+     * @return number of bytes read from {@code source}
+     * @throws IOException If any failure during reading, encoding or writing
+     */
+    public long compress(InputStream source, OutputStream destination) throws IOException {
+        ArrayDeque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        try {
+            long offset = 0;
+            byte[] pending = readBlock(source);
+            while (true) {
+                byte[] next = pending.length == blockSize ? readBlock(source) : new byte[0];
+                boolean last = next.length == 0;
+                if (inFlight.size() == parallelism) {
+                    writeBlock(inFlight.poll(), destination);
+                }
+                inFlight.add(submit(pending, offset, last));
+                offset += pending.length;
+                if (last) {
+                    break;
+                }
+                pending = next;
+            }
+            while (!inFlight.isEmpty()) {
+                writeBlock(inFlight.poll(), destination);
+            }
+            return offset;
+        } finally {
+            for (CompletableFuture<byte[]> block : inFlight) {
+                block.cancel(false);
+            }
+        }
+    }
+
+    private byte[] readBlock(InputStream source) throws IOException {
+        byte[] block = new byte[blockSize];
+        int length = 0;
+        while (length < blockSize) {
+            int read = source.read(block, length, blockSize - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length == blockSize ? block : Arrays.copyOf(block, length);
+    }
+
+    private CompletableFuture<byte[]> submit(byte[] block, long offset, boolean last) {
+        Encoder.Parameters blockParams = params.copy()
+                .setSizeHint(block.length)
+                .setStreamOffset(Math.min(offset, MAX_STREAM_OFFSET));
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return last ? Encoder.compress(block, blockParams)
+                        : Encoder.compressFlushed(block, 0, block.length, blockParams);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static void writeBlock(CompletableFuture<byte[]> block, OutputStream destination)
+            throws IOException {
+        byte[] compressed;
+        try {
+            compressed = block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for block encoding");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("block encoding failed", cause);
+        }
+        destination.write(compressed);
+    }
+}
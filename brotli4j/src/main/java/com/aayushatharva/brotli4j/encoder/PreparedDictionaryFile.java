@@ -0,0 +1,218 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Prepared dictionary persisted to, and memory-mapped from, a file.
+ * <p>
+ * Only self-contained dictionaries made by {@link PreparedDictionaryGenerator} can be persisted; dictionaries
+ * made by {@link Encoder#prepareDictionary(ByteBuffer, int)} reference caller memory. Loading maps the file
+ * read-only and uses it in place, so processes loading the same file share its page-cache pages. The mapping
+ * lives as long as this object (and encoders it is attached to) is reachable.
+ * <p>
+ * File layout: 32-byte big-endian header (magic {@code "B4JD"}, format version, byte order of the payload,
+ * reserved word, payload length, CRC32 of the payload), followed by the prepared dictionary as is.
+ */
+@Local
+public final class PreparedDictionaryFile implements PreparedDictionary {
+
+    /**
+     * Version of the file format written by {@link #write(PreparedDictionary, Path)}.
+     */
+    public static final int VERSION = 1;
+
+    private static final int FILE_MAGIC = 0x42344A44;
+    private static final int HEADER_SIZE = 32;
+    private static final int DICTIONARY_MAGIC = 0xDEBCEDE0;
+    private static final int DICTIONARY_HEADER_SIZE = 6 * 4;
+    private static final int LITTLE_ENDIAN = 1;
+    private static final int BIG_ENDIAN = 0;
+
+    private final ByteBuffer data;
+    private final ByteBuffer dictionary;
+
+    private PreparedDictionaryFile(ByteBuffer data, ByteBuffer dictionary) {
+        this.data = data;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Writes a prepared dictionary to a file; the file is replaced atomically where the file system allows it.
+     *
+     * @param dictionary dictionary made by {@link PreparedDictionaryGenerator}
+     * @param path       destination file
+     * @throws IOException If the file can not be written
+     */
+    public static void write(PreparedDictionary dictionary, Path path) throws IOException {
+        ByteBuffer data = dictionary.getData().duplicate().order(ByteOrder.nativeOrder());
+        ((Buffer) data).clear();
+        if (data.capacity() < DICTIONARY_HEADER_SIZE || data.getInt(0) != DICTIONARY_MAGIC) {
+            throw new IllegalArgumentException("only dictionaries made by PreparedDictionaryGenerator can be persisted");
+        }
+        sourceOffset(data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(FILE_MAGIC);
+        header.putInt(VERSION);
+        header.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN);
+        header.putInt(0);
+        header.putLong(data.capacity());
+        header.putLong(crc.getValue());
+        ((Buffer) header).flip();
+
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps a persisted dictionary, verifying its checksum.
+     *
+     * @param path file written by {@link #write(PreparedDictionary, Path)}
+     * @return mapped dictionary
+     * @throws IOException If the file can not be read, or is not a valid dictionary file
+     */
+    public static PreparedDictionaryFile map(Path path) throws IOException {
+        return map(path, true);
+    }
+
+    /**
+     * Maps a persisted dictionary.
+     *
+     * @param path           file written by {@link #write(PreparedDictionary, Path)}
+     * @param verifyChecksum {@code false} to skip reading the whole file; its structure is validated anyway
+     * @return mapped dictionary
+     * @throws IOException If the file can not be read, or is not a valid dictionary file
+     */
+    public static PreparedDictionaryFile map(Path path, boolean verifyChecksum) throws IOException {
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("not a prepared dictionary file: " + path);
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (file.getInt(0) != FILE_MAGIC) {
+            throw new IOException("not a prepared dictionary file: " + path);
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("unsupported prepared dictionary file version " + file.getInt(4) + ": " + path);
+        }
+        ByteOrder order = file.getInt(8) == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        if (order != ByteOrder.nativeOrder()) {
+            throw new IOException("prepared dictionary was written with " + order + " byte order: " + path);
+        }
+        long length = file.getLong(16);
+        if (length != file.capacity() - HEADER_SIZE) {
+            throw new IOException("truncated prepared dictionary file: " + path);
+        }
+
+        ((Buffer) file).position(HEADER_SIZE);
+        ByteBuffer data = file.slice().order(ByteOrder.nativeOrder());
+        if (verifyChecksum) {
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            if (crc.getValue() != file.getLong(24)) {
+                throw new IOException("prepared dictionary checksum mismatch: " + path);
+            }
+        }
+
+        int sourceOffset;
+        try {
+            if (data.capacity() < DICTIONARY_HEADER_SIZE || data.getInt(0) != DICTIONARY_MAGIC) {
+                throw new IllegalArgumentException("bad dictionary magic");
+            }
+            sourceOffset = sourceOffset(data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupted prepared dictionary file: " + path, e);
+        }
+        ((Buffer) data).position(sourceOffset);
+        ByteBuffer dictionary = data.slice();
+        ((Buffer) data).clear();
+        return new PreparedDictionaryFile(data, dictionary);
+    }
+
+    /**
+     * @return mapped prepared dictionary, for {@link Encoder#attachDictionary(PreparedDictionary)}
+     */
+    @Override
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * @return read-only view of raw dictionary data, for decoder {@code attachDictionary}
+     */
+    public ByteBuffer dictionary() {
+        return dictionary.duplicate();
+    }
+
+    /**
+     * Checks that the layout described by the dictionary header exactly fills the buffer.
+     *
+     * @return offset of the raw dictionary copy
+     */
+    private static int sourceOffset(ByteBuffer data) {
+        long totalItems = data.getInt(4) & 0xFFFFFFFFL;
+        long sourceSize = data.getInt(8) & 0xFFFFFFFFL;
+        int bucketBits = data.getInt(16);
+        int slotBits = data.getInt(20);
+        if (bucketBits < 0 || bucketBits >= 24 || slotBits < 0 || slotBits > bucketBits) {
+            throw new IllegalArgumentException("bad dictionary parameters");
+        }
+        long sourceOffset = DICTIONARY_HEADER_SIZE + (4L << slotBits) + (2L << bucketBits) + 4 * totalItems;
+        if (sourceOffset + sourceSize != data.capacity()) {
+            throw new IllegalArgumentException("dictionary size does not match its header");
+        }
+        return (int) sourceOffset;
+    }
+}
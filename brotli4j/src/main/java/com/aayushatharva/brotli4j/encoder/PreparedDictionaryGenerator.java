@@ -5,6 +5,7 @@
 */
 package com.aayushatharva.brotli4j.encoder;
 
+import com.aayushatharva.brotli4j.common.annotations.Local;
 import com.aayushatharva.brotli4j.common.annotations.Upstream;
 
 import java.nio.Buffer;
@@ -12,6 +13,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.stream.IntStream;
 
 /**
  * Java prepared (raw) dictionary producer.
@@ -21,6 +23,8 @@ public class PreparedDictionaryGenerator {
 
     private static final int MAGIC = 0xDEBCEDE0;
     private static final long HASH_MULTIPLIER = 0x1fe35a7bd3579bd3L;
+    /* Sources shorter than two chunks are hashed by the calling thread. */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
 
     private static class PreparedDictionaryImpl implements PreparedDictionary {
         private final ByteBuffer data;
@@ -43,8 +47,20 @@ public class PreparedDictionaryGenerator {
         return generate(src, 17, 3, 40, 5);
     }
 
+    @Local
     public static PreparedDictionary generate(ByteBuffer src,
                                               int bucketBits, int slotBits, int hashBits, int blockBits) {
+        int chunks = src.capacity() / MIN_CHUNK_SIZE;
+        chunks = Math.max(1, Math.min(chunks, Runtime.getRuntime().availableProcessors()));
+        return generate(src, bucketBits, slotBits, hashBits, blockBits, chunks);
+    }
+
+    /**
+     * Source is split into {@code chunks} ranges hashed concurrently; result does not depend on their number.
+     */
+    @Local
+    static PreparedDictionary generate(ByteBuffer src, int bucketBits, int slotBits, int hashBits,
+                                       int blockBits, int chunks) {
         ((Buffer) src).clear();  // Just in case...
         if (blockBits > 12) {
             throw new IllegalArgumentException("blockBits is too big");
@@ -65,37 +81,40 @@ public class PreparedDictionaryGenerator {
         if (sourceSize < 8) {
             throw new IllegalArgumentException("src is too short");
         }
-
-        /* Step 1: create "bloated" hasher. */
+        /* Hash of position i covers bytes [i, i + 8), read as a little-endian long. */
+        ByteBuffer source = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int numPositions = sourceSize - 7;
+        int chunkSize = (numPositions + chunks - 1) / chunks;
+        int numChunks = (numPositions + chunkSize - 1) / chunkSize;
+
+        /* Step 1: count items per bucket, capped by bucket limit; one histogram per chunk. */
+        short[][] chunkCounts = new short[numChunks][];
+        IntStream.range(0, numChunks).parallel().forEach(c -> {
+            short[] counts = new short[numBuckets];
+            int end = Math.min(numPositions, (c + 1) * chunkSize);
+            for (int i = c * chunkSize; i < end; ++i) {
+                int key = (int) (((source.getLong(i) & hashMask) * HASH_MULTIPLIER) >>> hashShift);
+                if (counts[key] < bucketLimit) {
+                    counts[key]++;
+                }
+            }
+            chunkCounts[c] = counts;
+        });
+        /* Replace chunk histograms with number of items in the subsequent chunks. */
         short[] num = new short[numBuckets];
-        int[] bucketHeads = new int[numBuckets];
-        int[] nextBucket = new int[sourceSize];
-
-        long accumulator = 0;
-        for (int i = 0; i < 7; ++i) {
-            accumulator |= (src.get(i) & 0xFFL) << (8 * i);
-        }
-        accumulator <<= 8;
-        /* TODO(eustas): apply custom "store" order. */
-        for (int i = 0; i + 7 < sourceSize; ++i) {
-            accumulator = (accumulator >>> 8) | ((src.get(i + 7) & 0xFFL) << 56);
-            long h = (accumulator & hashMask) * HASH_MULTIPLIER;
-            int key = (int) (h >>> hashShift);
-            int count = num[key];
-            nextBucket[i] = (count == 0) ? -1 : bucketHeads[key];
-            bucketHeads[key] = i;
-            count++;
-            if (count > bucketLimit) {
-                count = bucketLimit;
+        for (int c = numChunks - 1; c >= 0; --c) {
+            short[] counts = chunkCounts[c];
+            for (int j = 0; j < numBuckets; ++j) {
+                int count = counts[j];
+                counts[j] = num[j];
+                num[j] = (short) Math.min(num[j] + count, bucketLimit);
             }
-            num[key] = (short) count;
         }
 
         /* Step 2: find slot limits. */
         int[] slotLimit = new int[numSlots];
         int[] slotSize = new int[numSlots];
-        int totalItems = 0;
-        for (int i = 0; i < numSlots; ++i) {
+        IntStream.range(0, numSlots).parallel().forEach(i -> {
             boolean overflow = false;
             slotLimit[i] = bucketLimit;
             while (true) {
@@ -117,11 +136,14 @@ public class PreparedDictionaryGenerator {
                 }
                 if (!overflow) {
                     slotSize[i] = count;
-                    totalItems += count;
                     break;
                 }
                 slotLimit[i]--;
             }
+        });
+        int totalItems = 0;
+        for (int i = 0; i < numSlots; ++i) {
+            totalItems += slotSize[i];
         }
 
         /* Step 3: transfer data to "slim" hasher. */
@@ -140,7 +162,7 @@ public class PreparedDictionaryGenerator {
         pointer.position(pointer.position() + part1);
         ShortBuffer heads = pointer.asShortBuffer();
         pointer.position(pointer.position() + part2);
-        IntBuffer items = pointer.asIntBuffer();
+        ByteBuffer itemsData = pointer.slice().order(ByteOrder.nativeOrder());
         pointer.position(pointer.position() + part3);
         ByteBuffer sourceCopy = pointer.slice();
 
@@ -157,36 +179,49 @@ public class PreparedDictionaryGenerator {
         /* slot_bits     */
         struct.put(5, slotBits);
 
+        int[] slotStart = new int[numSlots];
         totalItems = 0;
         for (int i = 0; i < numSlots; ++i) {
             slotOffsets.put(i, totalItems);
+            slotStart[i] = totalItems;
             totalItems += slotSize[i];
             slotSize[i] = 0;
         }
 
+        /* Bucket items are the most recent positions of the bucket, newest first; "num" becomes item count. */
+        int[] bucketStart = new int[numBuckets];
         for (int i = 0; i < numBuckets; ++i) {
             int slot = i & slotMask;
             int count = num[i];
             if (count > slotLimit[slot]) {
                 count = slotLimit[slot];
             }
+            num[i] = (short) count;
             if (count == 0) {
                 heads.put(i, (short) 0xFFFF);
                 continue;
             }
-            int cursor = slotSize[slot];
-            heads.put(i, (short) cursor);
-            cursor += slotOffsets.get(slot);
+            heads.put(i, (short) slotSize[slot]);
+            bucketStart[i] = slotStart[slot] + slotSize[slot];
             slotSize[slot] += count;
-            int pos = bucketHeads[i];
-            for (int j = 0; j < count; j++) {
-                items.put(cursor++, pos);
-                pos = nextBucket[pos];
-            }
-            cursor--;
-            items.put(cursor, items.get(cursor) | 0x80000000);
         }
 
+        /* Every chunk is scanned backwards, skipping items taken by the subsequent chunks. */
+        IntStream.range(0, numChunks).parallel().forEach(c -> {
+            IntBuffer items = itemsData.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+            short[] taken = chunkCounts[c];
+            int begin = c * chunkSize;
+            for (int i = Math.min(numPositions, begin + chunkSize) - 1; i >= begin; --i) {
+                int key = (int) (((source.getLong(i) & hashMask) * HASH_MULTIPLIER) >>> hashShift);
+                int index = taken[key];
+                if (index < num[key]) {
+                    taken[key]++;
+                    /* The last (oldest) item of the bucket is marked. */
+                    items.put(bucketStart[key] + index, index == num[key] - 1 ? i | 0x80000000 : i);
+                }
+            }
+        });
+
         sourceCopy.put(src);
 
         return new PreparedDictionaryImpl(flat);
@@ -0,0 +1,95 @@
+/*
+ *    Copyright (c) 2020-2025, Aayush Atharva
+ *
+ *    Brotli4j licenses this file to you under the
+ *    Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.aayushatharva.brotli4j.encoder;
+
+import com.aayushatharva.brotli4j.common.annotations.Local;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Single-owner variant of {@link BrotliEncoderChannel}.
+ * <p>
+ * Does not synchronize, so it MUST be used by one thread at a time; in exchange writes take no monitor
+ * (which pins virtual threads on older JDKs) and allocate nothing besides native output views.
+ */
+@Local
+public class UnsynchronizedEncoderChannel extends Encoder implements GatheringByteChannel {
+    /**
+     * The default internal buffer size used by the encoder.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    /**
+     * Creates an UnsynchronizedEncoderChannel
+     *
+     * @param destination underlying destination
+     * @param params      encoding settings
+     * @param bufferSize  intermediate buffer size
+     * @throws IOException If any failure during initialization
+     */
+    public UnsynchronizedEncoderChannel(WritableByteChannel destination, Encoder.Parameters params,
+                                        int bufferSize) throws IOException {
+        super(destination, params, bufferSize);
+    }
+
+    /**
+     * Creates an UnsynchronizedEncoderChannel
+     *
+     * @param destination underlying destination
+     * @param params      encoding settings
+     * @throws IOException If any failure during initialization
+     */
+    public UnsynchronizedEncoderChannel(WritableByteChannel destination, Encoder.Parameters params)
+            throws IOException {
+        this(destination, params, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void attachDictionary(PreparedDictionary dictionary) throws IOException {
+        super.attachDictionary(dictionary);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        return writeBuffer(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        return writeBuffers(srcs, offset, length);
+    }
+}
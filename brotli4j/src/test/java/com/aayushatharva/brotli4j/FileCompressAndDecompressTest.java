@@ -16,6 +16,7 @@
  */
 package com.aayushatharva.brotli4j;
 
+import com.aayushatharva.brotli4j.decoder.Decoder;
 import com.aayushatharva.brotli4j.decoder.Decoders;
 import com.aayushatharva.brotli4j.encoder.Encoder;
 import com.aayushatharva.brotli4j.encoder.Encoders;
@@ -26,11 +27,15 @@ import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.stream.Collectors;
 
@@ -80,4 +85,36 @@ class FileCompressAndDecompressTest {
         byte[] compressed = Encoder.compress(chars, new Encoder.Parameters().setQuality(4));
         Assertions.assertTrue(chars.length < compressed.length);
     }
+
+    @Test
+    void compressAndDecompressFiles(@TempDir Path tempDir) throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 123];
+        Random random = new Random(17);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        Path source = tempDir.resolve("source.txt");
+        Path compressed = tempDir.resolve("source.txt.br");
+        Path decompressed = tempDir.resolve("decompressed.txt");
+        Files.write(source, data);
+
+        // Small windows make both sides cross several mapped regions
+        BrotliFiles.compress(source, compressed, Encoder.Parameters.create(4), 1024 * 1024);
+        Assertions.assertArrayEquals(data, Decoder.decompress(Files.readAllBytes(compressed)).getDecompressedData());
+        BrotliFiles.decompress(compressed, decompressed, 64 * 1024);
+        Assertions.assertArrayEquals(data, Files.readAllBytes(decompressed));
+
+        BrotliFiles.compress(source, compressed, Encoder.Parameters.create(5));
+        BrotliFiles.decompress(compressed, decompressed);
+        Assertions.assertArrayEquals(data, Files.readAllBytes(decompressed));
+
+        Files.write(source, new byte[0]);
+        BrotliFiles.compress(source, compressed);
+        BrotliFiles.decompress(compressed, decompressed);
+        Assertions.assertEquals(0, Files.size(decompressed));
+
+        byte[] truncated = Encoder.compress(data, Encoder.Parameters.create(4));
+        Files.write(compressed, Arrays.copyOf(truncated, truncated.length / 2));
+        Assertions.assertThrows(IOException.class, () -> BrotliFiles.decompress(compressed, decompressed));
+    }
 }
@@ -17,17 +17,29 @@
 package com.aayushatharva.brotli4j.decoder;
 
 import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliEncoderChannel;
 import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.UnsynchronizedEncoderChannel;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BrotliDecoderChannelTest {
     private static final byte[] compressedData = new byte[]{-117, 1, -128, 77, 101, 111, 119, 3};
@@ -103,6 +115,153 @@ public class BrotliDecoderChannelTest {
         assertEquals(data, result);
     }
 
+    @Test
+    public void gatheringWriteAndScatteringRead() throws IOException {
+        byte[] header = "HEADER".getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[40000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ("cats" + (i % 100)).charAt(i % 4);
+        }
+        byte[] trailer = "TRAILER".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer directBody = ByteBuffer.allocateDirect(body.length);
+        directBody.put(body).flip();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (BrotliEncoderChannel channel = new BrotliEncoderChannel(Channels.newChannel(baos),
+                Encoder.Parameters.create(4))) {
+            ByteBuffer[] srcs = {ByteBuffer.wrap(header), ByteBuffer.wrap(body), directBody, ByteBuffer.wrap(trailer)};
+            assertEquals(header.length + 2L * body.length + trailer.length, channel.write(srcs));
+            for (ByteBuffer src : srcs) {
+                assertFalse(src.hasRemaining());
+            }
+        }
+
+        BrotliDecoderChannel channel = new BrotliDecoderChannel(
+                new OneByteAtATimeByteChannel(ByteBuffer.wrap(baos.toByteArray())));
+        ByteBuffer[] dsts = {ByteBuffer.allocate(header.length), ByteBuffer.allocate(2 * body.length),
+                ByteBuffer.allocate(trailer.length + 1)};
+        long total = 0;
+        long read;
+        while ((read = channel.read(dsts, 0, dsts.length)) >= 0) {
+            total += read;
+        }
+        assertEquals(header.length + 2L * body.length + trailer.length, total);
+        assertArrayEquals(header, dsts[0].array());
+        for (int i = 0; i < 2 * body.length; i++) {
+            assertEquals(body[i % body.length], dsts[1].get(i));
+        }
+        assertEquals(trailer.length, dsts[2].position());
+        channel.close();
+    }
+
+    @Test
+    public void singleOwnerChannels() throws IOException {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("meow" + (i % 300)).charAt(i % 5);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (UnsynchronizedEncoderChannel channel = new UnsynchronizedEncoderChannel(Channels.newChannel(baos),
+                Encoder.Parameters.create(4), 4096)) {
+            for (int i = 0; i < data.length; i += 777) {
+                ByteBuffer src = ByteBuffer.wrap(data, i, Math.min(777, data.length - i));
+                assertEquals(src.remaining(), channel.write(src));
+            }
+        }
+
+        ByteBuffer output = ByteBuffer.allocate(data.length);
+        ByteBuffer small = ByteBuffer.allocate(100);
+        try (UnsynchronizedDecoderChannel channel = new UnsynchronizedDecoderChannel(
+                new EntireBufferByteChannel(ByteBuffer.wrap(baos.toByteArray())), 1024, 0)) {
+            int read;
+            while ((read = channel.read(small)) >= 0) {
+                assertEquals(small.position(), read);
+                small.flip();
+                output.put(small);
+                small.clear();
+            }
+            assertFalse(channel.read(new ByteBuffer[]{small}) > 0);
+        }
+        assertArrayEquals(data, output.array());
+    }
+
+    @Test
+    public void decompressWhenOutputOutrunsConsumedInput() throws IOException {
+        // Tiny window makes decoder stop on a full output buffer after all input is consumed.
+        byte[] data = new byte[200000];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (BrotliOutputStream output = new BrotliOutputStream(baos, Encoder.Parameters.create(4, 10))) {
+            output.write(data);
+        }
+
+        BrotliDecoderChannel channel = new BrotliDecoderChannel(
+                new EntireBufferByteChannel(ByteBuffer.wrap(baos.toByteArray())));
+        ByteBuffer output = ByteBuffer.allocate(data.length + 1);
+        while (channel.read(output) >= 0) {
+            assertTrue(output.hasRemaining());
+        }
+        assertEquals(data.length, output.position());
+        channel.close();
+    }
+
+    @Test
+    public void decompressIntoCallerBuffers() throws IOException {
+        byte[] data = new byte[300000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251 ^ i / 1000);
+        }
+        byte[] compressed = Encoder.compress(data, Encoder.Parameters.create(4, 16));
+
+        // Direct, array-backed with non-zero array offset and one byte buffers.
+        ByteBuffer[] outputs = {
+                ByteBuffer.allocateDirect(data.length),
+                ByteBuffer.wrap(new byte[data.length + 10], 10, data.length).slice(),
+                ByteBuffer.allocate(1)
+        };
+        for (ByteBuffer output : outputs) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            try (BrotliDecoderChannel channel = new BrotliDecoderChannel(
+                    new OneByteAtATimeByteChannel(ByteBuffer.wrap(compressed)))) {
+                int read;
+                while ((read = channel.read(output)) >= 0) {
+                    output.flip();
+                    assertEquals(read, output.remaining());
+                    byte[] chunk = new byte[read];
+                    output.get(chunk);
+                    result.write(chunk);
+                    output.clear();
+                }
+            }
+            assertArrayEquals(data, result.toByteArray());
+        }
+
+        // Composite destination falls back to copying decoder output.
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(Unpooled.buffer(1000));
+        composite.addComponent(Unpooled.directBuffer(1000));
+        ByteBuf[] destinations = {Unpooled.buffer(16),
+                Unpooled.directBuffer(16), composite};
+        for (ByteBuf destination : destinations) {
+            DirectDecompress result = Decoders.decompress(Unpooled.wrappedBuffer(compressed),
+                    destination);
+            assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
+            assertArrayEquals(data, ByteBufUtil.getBytes(destination));
+            destination.release();
+        }
+
+        assertThrows(IOException.class, () -> Decoders.decompress(Unpooled.wrappedBuffer(compressed),
+                Unpooled.buffer(), data.length - 1));
+        ByteBuf exact = Unpooled.buffer();
+        assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(Unpooled.wrappedBuffer(compressed),
+                exact, data.length).getResultStatus());
+        assertEquals(data.length, exact.readableBytes());
+        ByteBuf unbounded = Unpooled.buffer();
+        assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(Unpooled.wrappedBuffer(compressed),
+                unbounded, Integer.MAX_VALUE).getResultStatus());
+        assertArrayEquals(data, ByteBufUtil.getBytes(unbounded));
+    }
+
     private static class EntireBufferByteChannel implements ReadableByteChannel {
         private final ByteBuffer buffer;
 
@@ -17,18 +17,39 @@
 package com.aayushatharva.brotli4j.decoder;
 
 import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.common.ContentInfo;
+import com.aayushatharva.brotli4j.common.DictionaryTransport;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.BrotliSeekableOutputStream;
+import com.aayushatharva.brotli4j.encoder.DictionaryCompressedOutputStream;
 import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.aayushatharva.brotli4j.encoder.EncoderJNI;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -58,6 +79,38 @@ class DecoderTest {
         assertEquals("Meow", new String(directDecompress.getDecompressedData()));
     }
 
+    @Test
+    void decompressWithPool() throws IOException {
+        byte[] original = new byte[256 * 1024];
+        new Random(7).nextBytes(original);
+        byte[] compressed = Encoder.compress(original);
+
+        try (DecoderPool pool = new DecoderPool()) {
+            for (int i = 0; i < 2; i++) {
+                ByteBuf dst = Unpooled.directBuffer();
+                DirectDecompress result = Decoders.decompress(Unpooled.wrappedBuffer(compressed), dst, pool);
+                assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
+                assertArrayEquals(original, result.getDecompressedData());
+                dst.release();
+            }
+            assertEquals(1, pool.stats().created());
+            assertEquals(1, pool.stats().hits());
+        }
+    }
+
+    @Test
+    void decompressWithPoolRejectsTruncatedInput() throws IOException {
+        byte[] original = new byte[64 * 1024];
+        new Random(11).nextBytes(original);
+        byte[] compressed = Encoder.compress(original);
+
+        try (DecoderPool pool = new DecoderPool()) {
+            ByteBuf src = Unpooled.wrappedBuffer(compressed, 0, compressed.length - 8);
+            DirectDecompress result = Decoders.decompress(src, Unpooled.buffer(), pool);
+            assertEquals(DecoderJNI.Status.NEEDS_MORE_INPUT, result.getResultStatus());
+        }
+    }
+
     @Test
     void boundedPullCapsEachChunk() throws IOException {
         byte[] original = new byte[64 * 1024];
@@ -147,4 +200,498 @@ class DecoderTest {
         assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
         assertArrayEquals(original, result.getDecompressedData());
     }
+
+    @Test
+    void seekableStreamSupportsRandomAccess() throws IOException {
+        String[] words = {"the ", "brotli ", "window ", "frame ", "random ", "access ", "of ", "compressed ",
+                "content ", "and ", "dictionary ", "\n"};
+        Random random = new Random(5);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        while (text.size() < 300 * 1000) {
+            text.write(words[random.nextInt(words.length)].getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] original = text.toByteArray();
+
+        for (int lgwin : new int[]{-1, 22}) {
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            try (BrotliSeekableOutputStream out = new BrotliSeekableOutputStream(sink,
+                    Encoder.Parameters.create(11, lgwin), 16 * 1024)) {
+                out.write(original);
+            }
+            byte[] compressed = sink.toByteArray();
+
+            // Plain decoders skip the index.
+            assertArrayEquals(original, Decoder.decompress(compressed).getDecompressedData());
+
+            Path file = Files.createTempFile("brotli4j", ".br");
+            try {
+                Files.write(file, compressed);
+                try (BrotliSeekableChannel channel = new BrotliSeekableChannel(FileChannel.open(file))) {
+                    assertEquals(original.length, channel.size());
+                    assertEquals((original.length + 16 * 1024 - 1) / (16 * 1024), channel.index().frameCount());
+                    for (int i = 0; i < 20; i++) {
+                        int offset = random.nextInt(original.length);
+                        ByteBuffer range = ByteBuffer.allocate(Math.min(40 * 1024, original.length - offset));
+                        channel.position(offset);
+                        while (range.hasRemaining()) {
+                            channel.read(range);
+                        }
+                        assertArrayEquals(Arrays.copyOfRange(original, offset, offset + range.capacity()),
+                                range.array());
+                    }
+                    channel.position(original.length);
+                    assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void seekableStreamWithEmptyContent() throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        new BrotliSeekableOutputStream(sink).close();
+        assertArrayEquals(new byte[0], Decoder.decompress(sink.toByteArray()).getDecompressedData());
+    }
+    @Test
+    void decompressFromDirectMemory() throws IOException {
+        byte[] original = new byte[100 * 1024];
+        for (int i = 0; i < original.length; i++) {
+            original[i] = (byte) ('a' + (i * 5 + i / 777) % 11);
+        }
+        byte[] compressed = Encoder.compress(original);
+        ByteBuf src = Unpooled.directBuffer(compressed.length).writeBytes(compressed);
+
+        ByteBuf dst = Unpooled.buffer();
+        assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(src, dst).getResultStatus());
+        assertArrayEquals(original, ByteBufUtil.getBytes(dst));
+        dst.release();
+
+        try (DecoderPool pool = new DecoderPool()) {
+            dst = Unpooled.buffer();
+            assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(src, dst, pool).getResultStatus());
+            assertArrayEquals(original, ByteBufUtil.getBytes(dst));
+            dst.release();
+        }
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length);
+        direct.put(compressed).flip();
+        ByteBuffer output = ByteBuffer.allocate(original.length);
+        assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(direct, output).getResultStatus());
+        assertFalse(direct.hasRemaining());
+        assertArrayEquals(original, output.array());
+        src.release();
+    }
+
+    @Test
+    void decompressLargeWindowStream() throws IOException {
+        byte[] data = new byte[300 * 1024];
+        new Random(21).nextBytes(data);
+        System.arraycopy(data, 0, data, data.length / 2, data.length / 2);
+
+        assertThrows(IllegalArgumentException.class, () -> Encoder.compress(data, Encoder.Parameters.create(4, 25)));
+        Encoder.Parameters params = Encoder.Parameters.create(4, 25).setLargeWindow(true);
+        byte[] compressed = Encoder.compress(data, params);
+        assertTrue(Decoder.isLargeWindowStream(compressed));
+        assertTrue(Decoder.isLargeWindowStream(ByteBuffer.wrap(compressed)));
+        assertFalse(Decoder.isLargeWindowStream(Encoder.compress(data, Encoder.Parameters.create(4, 24))));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (BrotliOutputStream output = new BrotliOutputStream(streamed, params)) {
+            output.write(data);
+        }
+        assertTrue(Decoder.isLargeWindowStream(streamed.toByteArray()));
+
+        // RFC 7932 decoder rejects the stream, so large window has to be enabled explicitly.
+        assertThrows(IOException.class, () -> readFully(new BrotliInputStream(new ByteArrayInputStream(compressed))));
+        for (byte[] stream : Arrays.asList(compressed, streamed.toByteArray())) {
+            BrotliInputStream input = new BrotliInputStream(new ByteArrayInputStream(stream));
+            input.enableLargeWindow();
+            assertArrayEquals(data, readFully(input));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new BrotliSeekableOutputStream(new ByteArrayOutputStream(),
+                params));
+    }
+
+    @Test
+    void decompressWithParameters() throws IOException {
+        byte[] data = new byte[200 * 1024];
+        new Random(22).nextBytes(data);
+        System.arraycopy(data, 0, data, data.length / 2, data.length / 2);
+        byte[] compressed = Encoder.compress(data, Encoder.Parameters.create(4, 25).setLargeWindow(true));
+        Decoder.Parameters params = Decoder.Parameters.create()
+                .setDisableRingBufferReallocation(true)
+                .setLargeWindow(true);
+
+        assertArrayEquals(data, readFully(new BrotliInputStream(new ByteArrayInputStream(compressed), params)));
+        try (BrotliDecoderChannel channel = new BrotliDecoderChannel(
+                Channels.newChannel(new ByteArrayInputStream(compressed)), params)) {
+            ByteBuffer output = ByteBuffer.allocate(data.length);
+            while (output.hasRemaining() && channel.read(output) >= 0) {
+                // Keep reading.
+            }
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            assertArrayEquals(data, output.array());
+        }
+
+        // Size hint may be exact, too small or too large.
+        for (long sizeHint : new long[]{data.length, 1000, 2L * data.length}) {
+            DirectDecompress result = Decoder.decompress(compressed, params.setSizeHint(sizeHint));
+            assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
+            assertArrayEquals(data, result.getDecompressedData());
+        }
+        assertEquals(DecoderJNI.Status.ERROR, Decoder.decompress(compressed, Decoder.Parameters.create())
+                .getResultStatus());
+
+        ByteBuf decompressed = Unpooled.buffer();
+        DirectDecompress result = Decoders.decompress(Unpooled.wrappedBuffer(compressed), decompressed, 0, params);
+        assertEquals(DecoderJNI.Status.DONE, result.getResultStatus());
+        assertArrayEquals(data, ByteBufUtil.getBytes(decompressed));
+
+        // Parameters survive reset.
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(compressed.length, params);
+        try {
+            for (int i = 0; i < 2; i++) {
+                decoder.reset();
+                decoder.getInputBuffer().put(compressed);
+                decoder.push(compressed.length);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                while (decoder.getStatus() != DecoderJNI.Status.DONE) {
+                    assertTrue(decoder.getStatus() != DecoderJNI.Status.ERROR);
+                    if (decoder.getStatus() == DecoderJNI.Status.OK) {
+                        decoder.push(0);
+                    } else {
+                        ByteBuffer chunk = decoder.pull();
+                        byte[] bytes = new byte[chunk.remaining()];
+                        chunk.get(bytes);
+                        output.write(bytes);
+                    }
+                }
+                assertArrayEquals(data, output.toByteArray());
+            }
+        } finally {
+            decoder.destroy();
+        }
+        assertThrows(IllegalArgumentException.class, () -> Decoder.Parameters.create().setSizeHint(-1));
+
+        // Shared defaults can not be changed.
+        assertThrows(UnsupportedOperationException.class, () -> Decoder.Parameters.DEFAULT.setSizeHint(1));
+        assertThrows(UnsupportedOperationException.class, () -> Decoder.Parameters.DEFAULT.setLargeWindow(true));
+        assertThrows(UnsupportedOperationException.class,
+                () -> Decoder.Parameters.DEFAULT.setDisableRingBufferReallocation(true));
+        assertEquals(0, Decoder.Parameters.DEFAULT.sizeHint());
+        assertFalse(Decoder.Parameters.DEFAULT.largeWindow());
+    }
+
+    @Test
+    void decompressKnownSize() throws IOException {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 97 ^ i / 500);
+        }
+        byte[] compressed = Encoder.compress(data);
+
+        byte[] src = new byte[compressed.length + 7];
+        System.arraycopy(compressed, 0, src, 3, compressed.length);
+        byte[] dst = new byte[data.length + 5];
+        assertEquals(data.length, Decoder.decompress(src, 3, compressed.length, dst, 5, data.length));
+        assertArrayEquals(data, Arrays.copyOfRange(dst, 5, dst.length));
+        assertThrows(IOException.class, () -> Decoder.decompress(src, 3, compressed.length, dst, 5, data.length - 1));
+        // Truncated stream, and bytes after stream end.
+        assertThrows(IOException.class, () -> Decoder.decompress(src, 3, compressed.length - 1, dst, 0, dst.length));
+        assertThrows(IOException.class, () -> Decoder.decompress(src, 3, compressed.length + 1, dst, 0, dst.length));
+        assertThrows(IndexOutOfBoundsException.class, () -> Decoder.decompress(src, 3, src.length, dst, 0, 1));
+
+        for (boolean direct : new boolean[]{false, true}) {
+            ByteBuffer input = direct ? ByteBuffer.allocateDirect(compressed.length) : ByteBuffer.allocate(compressed.length);
+            input.put(compressed).flip();
+            ByteBuffer output = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+            assertEquals(data.length, Decoder.decompress(input, output));
+            assertFalse(input.hasRemaining());
+            assertFalse(output.hasRemaining());
+            output.flip();
+            byte[] result = new byte[data.length];
+            output.get(result);
+            assertArrayEquals(data, result);
+
+            input.flip();
+            output.clear();
+            assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(input, output).getResultStatus());
+            assertFalse(output.hasRemaining());
+
+            // Failures are reported without decoding again; source is consumed either way.
+            input.flip();
+            output.clear().limit(1000);
+            assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(input, output).getResultStatus());
+            assertFalse(input.hasRemaining());
+            assertFalse(output.hasRemaining());
+            assertEquals(data[999], output.get(999));
+            input.position(0).limit(compressed.length - 1);
+            output.clear();
+            assertEquals(DecoderJNI.Status.NEEDS_MORE_INPUT, Decoders.decompress(input, output).getResultStatus());
+            assertFalse(input.hasRemaining());
+            assertEquals(0, output.position());
+            ByteBuffer trailing = ByteBuffer.allocate(compressed.length + 1);
+            trailing.put(compressed).put((byte) 0).flip();
+            assertEquals(DecoderJNI.Status.ERROR, Decoders.decompress(trailing, output).getResultStatus());
+            assertFalse(trailing.hasRemaining());
+        }
+
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponents(true, Unpooled.buffer(10).writeZero(10), Unpooled.directBuffer(data.length));
+        composite.readerIndex(10);
+        for (ByteBuf output : new ByteBuf[]{Unpooled.buffer(1), Unpooled.directBuffer(1), composite}) {
+            ByteBuf input = Unpooled.directBuffer().writeBytes(compressed);
+            Decoders.decompressKnownSize(input, output, data.length);
+            assertFalse(input.isReadable());
+            assertArrayEquals(data, ByteBufUtil.getBytes(output));
+
+            input.readerIndex(0);
+            int writerIndex = output.writerIndex();
+            assertThrows(IOException.class, () -> Decoders.decompressKnownSize(input, output, data.length + 1));
+            assertThrows(IOException.class, () -> Decoders.decompressKnownSize(input, output, data.length - 1));
+            assertEquals(writerIndex, output.writerIndex());
+            assertEquals(0, input.readerIndex());
+            input.release();
+            output.release();
+        }
+
+        byte[] largeWindow = Encoder.compress(data, Encoder.Parameters.create(4, 25).setLargeWindow(true));
+        assertThrows(IOException.class, () -> Decoder.decompress(largeWindow, 0, largeWindow.length, dst, 0, dst.length));
+        assertEquals(data.length, Decoder.decompress(largeWindow, 0, largeWindow.length, dst, 0, dst.length,
+                Decoder.Parameters.create().setLargeWindow(true)));
+    }
+
+    @Test
+    void decompressWithContentInfo() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 200_000; i++) {
+            text.append("content info line ").append(i).append('\n');
+        }
+        byte[] data = text.toString().getBytes(StandardCharsets.US_ASCII);
+        Encoder.Parameters params = Encoder.Parameters.create(5);
+
+        byte[] compressed = Encoder.compressWithContentInfo(data, params, true);
+        DecoderJNI.Wrapper wrapper = new DecoderJNI.Wrapper(compressed.length);
+        try {
+            wrapper.getInputBuffer().put(compressed);
+            wrapper.push(compressed.length);
+            ContentInfo info = wrapper.getContentInfo();
+            assertEquals(data.length, info.size());
+            assertTrue(info.hasChecksum());
+            assertEquals(ContentInfo.of(data, 0, data.length).checksum(), info.checksum());
+        } finally {
+            wrapper.destroy();
+        }
+        assertArrayEquals(data, Decoder.decompress(compressed, 0, compressed.length));
+        assertArrayEquals(data, Decoder.decompress(compressed).getDecompressedData());
+        // Plain streaming decoder skips the metadata.
+        assertArrayEquals(data, readFully(new BrotliInputStream(new ByteArrayInputStream(compressed))));
+        assertThrows(IOException.class, () -> Decoder.decompress(compressed, 0, compressed.length, data.length - 1));
+
+        ByteBuf src = Unpooled.wrappedBuffer(compressed);
+        ByteBuf dst = Unpooled.buffer(0);
+        try {
+            assertEquals(DecoderJNI.Status.DONE, Decoders.decompress(src, dst).getResultStatus());
+            assertArrayEquals(data, ByteBufUtil.getBytes(dst));
+        } finally {
+            src.release();
+            dst.release();
+        }
+
+        byte[] unchecked = Encoder.compressWithContentInfo(data, params, false);
+        assertArrayEquals(data, Decoder.decompress(unchecked, 0, unchecked.length));
+        byte[] empty = Encoder.compressWithContentInfo(new byte[0], params, true);
+        assertEquals(0, Decoder.decompress(empty, 0, empty.length).length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out, params)) {
+            encoder.writeContentInfo(ContentInfo.of(data, 0, data.length));
+            encoder.write(data);
+            assertThrows(IllegalStateException.class, () -> encoder.writeContentInfo(ContentInfo.of(data.length)));
+        }
+        byte[] streamed = out.toByteArray();
+        assertArrayEquals(data, Decoder.decompress(streamed, 0, streamed.length));
+
+        out.reset();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out, params)) {
+            encoder.writeContentInfo(ContentInfo.of(data.length + 1));
+            encoder.write(data);
+        }
+        byte[] mismatched = out.toByteArray();
+        assertArrayEquals(data, readFully(new BrotliInputStream(new ByteArrayInputStream(mismatched))));
+        assertThrows(IOException.class, () -> Decoder.decompress(mismatched, 0, mismatched.length));
+        ByteBuf mismatchedSrc = Unpooled.wrappedBuffer(mismatched);
+        ByteBuf mismatchedDst = Unpooled.buffer();
+        try {
+            assertThrows(IOException.class, () -> Decoders.decompress(mismatchedSrc, mismatchedDst));
+        } finally {
+            mismatchedSrc.release();
+            mismatchedDst.release();
+        }
+    }
+
+    @Test
+    void forgedContentInfoSizeIsOnlyAHint() throws IOException {
+        byte[] data = "Meow".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out)) {
+            encoder.writeContentInfo(ContentInfo.of(2_000_000_000L));
+            encoder.write(data);
+        }
+        byte[] forged = out.toByteArray();
+        assertTrue(forged.length < 32);
+
+        // Declared size must not be allocated upfront.
+        assertThrows(IOException.class, () -> Decoder.decompress(forged));
+        assertThrows(IOException.class, () -> Decoder.decompress(forged, 0, forged.length));
+        ByteBuf src = Unpooled.wrappedBuffer(forged);
+        ByteBuf dst = Unpooled.buffer(0);
+        try {
+            assertThrows(IOException.class, () -> Decoders.decompress(src, dst));
+            assertTrue(dst.capacity() <= 1 << 16);
+        } finally {
+            src.release();
+            dst.release();
+        }
+
+        // Absurd sizes are not recognized at all.
+        byte[] metadata = ContentInfo.of(1).toMetadata();
+        ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN).putLong(5, Long.MAX_VALUE >>> 1);
+        assertNull(ContentInfo.fromMetadata(metadata));
+        assertThrows(IllegalArgumentException.class, () -> ContentInfo.of(1L << 48));
+    }
+
+    @Test
+    void contentInfoOnlyPrecedesData() throws IOException {
+        byte[] data = "Meow".getBytes(StandardCharsets.US_ASCII);
+        byte[] info = ContentInfo.of(data, 0, data.length).toMetadata();
+
+        // Other leading metadata is skipped.
+        byte[] compressed = encodeBlocks(EncoderJNI.Operation.EMIT_METADATA, "not content info".getBytes(),
+                EncoderJNI.Operation.EMIT_METADATA, info, EncoderJNI.Operation.FINISH, data);
+        assertEquals(data.length, contentInfoAfterDecoding(compressed).size());
+        assertArrayEquals(data, Decoder.decompress(compressed, 0, compressed.length));
+
+        // Content info after data is ignored, even if it does not match.
+        compressed = encodeBlocks(EncoderJNI.Operation.FLUSH, data,
+                EncoderJNI.Operation.EMIT_METADATA, ContentInfo.of(data.length + 1).toMetadata(),
+                EncoderJNI.Operation.FINISH, new byte[0]);
+        assertNull(contentInfoAfterDecoding(compressed));
+        assertArrayEquals(data, Decoder.decompress(compressed, 0, compressed.length));
+    }
+
+    /* Encodes (operation, bytes) pairs, each pushed with its operation. */
+    private static byte[] encodeBlocks(Object... blocks) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncoderJNI.Wrapper encoder = new EncoderJNI.Wrapper(1024, Encoder.Parameters.create(5));
+        try {
+            for (int i = 0; i < blocks.length; i += 2) {
+                EncoderJNI.Operation op = (EncoderJNI.Operation) blocks[i];
+                byte[] bytes = (byte[]) blocks[i + 1];
+                encoder.getInputBuffer().clear();
+                encoder.getInputBuffer().put(bytes);
+                encoder.push(op, bytes.length);
+                assertTrue(encoder.drain(op, chunk -> {
+                    byte[] copy = new byte[chunk.remaining()];
+                    chunk.get(copy);
+                    out.write(copy, 0, copy.length);
+                }));
+            }
+        } finally {
+            encoder.destroy();
+        }
+        return out.toByteArray();
+    }
+
+    private static ContentInfo contentInfoAfterDecoding(byte[] compressed) throws IOException {
+        DecoderJNI.Wrapper decoder = new DecoderJNI.Wrapper(compressed.length);
+        try {
+            decoder.getInputBuffer().put(compressed);
+            decoder.push(compressed.length);
+            while (true) {
+                switch (decoder.getStatus()) {
+                    case DONE:
+                        return decoder.getContentInfo();
+
+                    case OK:
+                        decoder.push(0);
+                        break;
+
+                    case NEEDS_MORE_OUTPUT:
+                        decoder.pull();
+                        break;
+
+                    default:
+                        throw new IOException("corrupted input");
+                }
+            }
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    private static byte[] readFully(BrotliInputStream input) throws IOException {
+        try (BrotliInputStream in = input) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void decompressDictionaryCompressedStream() throws IOException {
+        byte[] dictionary = new byte[32 * 1024];
+        new Random(13).nextBytes(dictionary);
+        byte[] data = Arrays.copyOfRange(dictionary, 4000, 24000);
+        ByteBuffer raw = ByteBuffer.allocateDirect(dictionary.length);
+        raw.put(dictionary).flip();
+        byte[] sha256 = DictionaryTransport.sha256(raw);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DictionaryCompressedOutputStream encoder = new DictionaryCompressedOutputStream(out,
+                Encoder.prepareDictionary(raw, 0), sha256, Encoder.Parameters.create(5))) {
+            encoder.write(data);
+        }
+        byte[] compressed = out.toByteArray();
+        assertEquals((byte) 0xFF, compressed[0]);
+        assertEquals("DCB", new String(compressed, 1, 3, StandardCharsets.US_ASCII));
+        assertArrayEquals(sha256, Arrays.copyOfRange(compressed, 4, DictionaryTransport.HEADER_SIZE));
+        assertTrue(compressed.length < DictionaryTransport.HEADER_SIZE + 100);
+
+        try (DictionaryCompressedInputStream decoder = new DictionaryCompressedInputStream(
+                new ByteArrayInputStream(compressed), hash -> Arrays.equals(hash, sha256) ? raw : null)) {
+            assertArrayEquals(sha256, decoder.dictionarySha256());
+            byte[] decompressed = new byte[data.length + 1];
+            int length = 0;
+            int read;
+            while ((read = decoder.read(decompressed, length, decompressed.length - length)) > 0) {
+                length += read;
+            }
+            assertArrayEquals(data, Arrays.copyOf(decompressed, length));
+        }
+
+        assertThrows(IOException.class, () -> new DictionaryCompressedInputStream(
+                new ByteArrayInputStream(compressed), hash -> null));
+        assertThrows(IOException.class, () -> new DictionaryCompressedInputStream(
+                new ByteArrayInputStream(compressedData), hash -> raw));
+
+        // Encoder is closed, along with destination, if dictionary can not be attached.
+        AtomicBoolean closed = new AtomicBoolean();
+        OutputStream destination = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        assertThrows(NullPointerException.class, () -> new DictionaryCompressedOutputStream(destination, null,
+                sha256, Encoder.Parameters.create(5)));
+        assertTrue(closed.get());
+    }
 }
@@ -17,19 +17,66 @@
 package com.aayushatharva.brotli4j.encoder;
 
 import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.BrotliAsync;
 import com.aayushatharva.brotli4j.common.BrotliCommon;
+import com.aayushatharva.brotli4j.common.BrotliFlow;
+import com.aayushatharva.brotli4j.common.DictionaryTransport;
+import com.aayushatharva.brotli4j.common.NativeArena;
+import com.aayushatharva.brotli4j.common.Utils;
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+import com.aayushatharva.brotli4j.decoder.ByteBufDecoder;
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.aayushatharva.brotli4j.decoder.DecoderProcessor;
+import com.aayushatharva.brotli4j.decoder.DecoderPool;
+import com.aayushatharva.brotli4j.decoder.Decoders;
+import io.netty.buffer.AbstractByteBufAllocator;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledHeapByteBuf;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class EncoderTest {
 
@@ -57,6 +104,812 @@ class EncoderTest {
         Encoders.compress(src, dst);
 
         assertArrayEquals(compressedData, ByteBufUtil.getBytes(dst));
+
+        // Stream offset is honoured by the streaming path only
+        Encoder.Parameters params = Encoder.Parameters.create(6).setStreamOffset(100);
+        for (byte[] data : new byte[][]{"Meow".getBytes(), new byte[0]}) {
+            dst.clear();
+            Encoders.compress(Unpooled.wrappedBuffer(data), dst, params);
+            assertArrayEquals(Encoder.compress(data, params), ByteBufUtil.getBytes(dst));
+        }
+        dst.release();
+    }
+
+    @Test
+    void compressIntoByteArray() throws IOException {
+        byte[] src = "Meow".getBytes();
+        byte[] dst = new byte[Encoder.maxCompressedSize(src.length) + 4];
+        int length = Encoder.compress(src, 0, src.length, dst, 4, dst.length - 4, Encoder.Parameters.DEFAULT);
+
+        assertArrayEquals(compressedData, Arrays.copyOfRange(dst, 4, 4 + length));
+
+        // Too large to pin at this quality, so arrays are copied; output is the same as from direct buffers
+        byte[] large = new byte[128 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ("{\"id\":" + (i % 100) + "}").charAt(i % 8);
+        }
+        byte[] largeDst = new byte[Encoder.maxCompressedSize(large.length) + 4];
+        length = Encoder.compress(large, 0, large.length, largeDst, 4, largeDst.length - 4,
+                Encoder.Parameters.create(5));
+        ByteBuffer directSrc = ByteBuffer.allocateDirect(large.length);
+        directSrc.put(large).flip();
+        ByteBuffer directDst = ByteBuffer.allocateDirect(largeDst.length);
+        assertEquals(length, Encoder.compress(directSrc, directDst, Encoder.Parameters.create(5)));
+        byte[] expected = new byte[length];
+        ((ByteBuffer) directDst.flip()).get(expected);
+        assertArrayEquals(expected, Arrays.copyOfRange(largeDst, 4, 4 + length));
+        assertArrayEquals(large, Decoder.decompress(expected, 0, expected.length));
+    }
+
+    @Test
+    void compressIntoDirectByteBuffer() throws IOException {
+        byte[] data = new byte[64 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("{\"id\":" + (i % 100) + "}").charAt(i % 8);
+        }
+        ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+        src.put(data).flip();
+        ByteBuffer dst = ByteBuffer.allocateDirect(Encoder.maxCompressedSize(data.length));
+
+        int length = Encoder.compress(src, dst, Encoder.Parameters.create(5));
+        assertEquals(length, dst.position());
+        assertFalse(src.hasRemaining());
+
+        byte[] compressed = new byte[length];
+        dst.flip();
+        dst.get(compressed);
+        assertArrayEquals(data, Decoder.decompress(compressed, 0, compressed.length));
+    }
+
+    @Test
+    void compressIntoTooSmallBuffer() {
+        byte[] src = new byte[4096];
+        new Random(42).nextBytes(src);
+        byte[] dst = new byte[16];
+
+        assertThrows(IOException.class,
+                () -> Encoder.compress(src, 0, src.length, dst, 0, dst.length, Encoder.Parameters.DEFAULT));
+    }
+
+    @Test
+    void maxCompressedSize() {
+        assertEquals(Utils.maxCompressedSize(0), Encoder.maxCompressedSize(0));
+        assertEquals(Utils.maxCompressedSize(1 << 20), Encoder.maxCompressedSize(1 << 20));
+    }
+
+    @Test
+    void compressWithPool() throws IOException {
+        byte[] data = new byte[10 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 7);
+        }
+
+        try (EncoderPool pool = new EncoderPool()) {
+            for (int i = 0; i < 3; i++) {
+                ByteBuf dst = Unpooled.directBuffer();
+                Encoders.compress(Unpooled.wrappedBuffer(data), dst, Encoder.Parameters.create(5), pool);
+                assertArrayEquals(data, Decoder.decompress(ByteBufUtil.getBytes(dst), 0, dst.readableBytes()));
+                dst.release();
+            }
+
+            assertEquals(1, pool.stats().created());
+            assertEquals(2, pool.stats().hits());
+            assertEquals(1, pool.stats().idle());
+            assertEquals(0, pool.stats().inUse());
+        }
+
+        // Encoder in use keeps the pool's own arena alive after the pool is closed.
+        EncoderPool pool = new EncoderPool();
+        EncoderJNI.Wrapper encoder = pool.acquire(Encoder.Parameters.create(5), 1024);
+        pool.close();
+        ByteBuf dst = Unpooled.buffer();
+        encoder.getInputBuffer().put(data, 0, 1024);
+        encoder.push(EncoderJNI.Operation.FINISH, 1024);
+        while (!encoder.isFinished()) {
+            if (encoder.hasMoreOutput()) {
+                dst.writeBytes(encoder.pull());
+            } else {
+                encoder.push(EncoderJNI.Operation.FINISH, 0);
+            }
+        }
+        pool.release(encoder);
+        assertArrayEquals(Arrays.copyOf(data, 1024), Decoder.decompress(ByteBufUtil.getBytes(dst), 0,
+                dst.readableBytes()));
+        dst.release();
+    }
+
+    @Test
+    void poolEvictsIdleEncoders() throws IOException, InterruptedException {
+        try (EncoderPool pool = new EncoderPool(1, 1, TimeUnit.MILLISECONDS)) {
+            EncoderJNI.Wrapper first = pool.acquire(Encoder.Parameters.DEFAULT, 1024);
+            EncoderJNI.Wrapper second = pool.acquire(Encoder.Parameters.DEFAULT, 1024);
+            pool.release(first);
+            pool.release(second);
+            assertEquals(1, pool.stats().idle());
+            assertEquals(1, pool.stats().destroyed());
+
+            Thread.sleep(5);
+            assertEquals(1, pool.evictIdle());
+            assertEquals(0, pool.stats().idle());
+        }
+    }
+
+    @Test
+    void compressWithNativeArena() throws IOException {
+        byte[] data = new byte[256 * 1024];
+        new Random(7).nextBytes(data);
+        for (int i = 0; i < data.length; i += 3) {
+            data[i] = 'a';
+        }
+
+        NativeArena arena = new NativeArena();
+        // Idle states are not kept, so every state returns its memory to the arena right after use
+        try (EncoderPool encoders = new EncoderPool(0, 1, TimeUnit.MINUTES, arena);
+             DecoderPool decoders = new DecoderPool(0, 1, TimeUnit.MINUTES, arena)) {
+            for (int i = 0; i < 3; i++) {
+                ByteBuf compressed = Unpooled.directBuffer();
+                ByteBuf decompressed = Unpooled.directBuffer();
+                Encoders.compress(Unpooled.wrappedBuffer(data), compressed, Encoder.Parameters.create(9), encoders);
+                Decoders.decompress(compressed, decompressed, decoders);
+                assertArrayEquals(data, ByteBufUtil.getBytes(decompressed));
+                compressed.release();
+                decompressed.release();
+            }
+        }
+
+        NativeArena.Stats stats = arena.stats();
+        assertEquals(0, stats.inUse());
+        assertTrue(stats.peak() > 0);
+        assertTrue(stats.reuses() > 0);
+        assertTrue(stats.retained() > 0);
+
+        arena.trim();
+        assertEquals(0, arena.stats().retained());
+        arena.close();
+        assertThrows(IllegalStateException.class, arena::stats);
+    }
+
+    @Test
+    void compressWithByteBufEncoder() throws IOException {
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("chunk-" + (i / 1000)).charAt(i % 7);
+        }
+
+        CompositeByteBuf compressed = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        try (ByteBufEncoder encoder = new ByteBufEncoder(Encoder.Parameters.create(5), UnpooledByteBufAllocator.DEFAULT)) {
+            ByteBuf direct = Unpooled.directBuffer().writeBytes(data, 0, 50 * 1024);
+            compressed.addComponent(true, encoder.encode(direct));
+            assertFalse(direct.isReadable());
+            direct.release();
+
+            // Composite input mixing direct and heap components
+            CompositeByteBuf composite = Unpooled.compositeBuffer()
+                    .addComponent(true, Unpooled.directBuffer().writeBytes(data, 50 * 1024, 30 * 1024))
+                    .addComponent(true, Unpooled.wrappedBuffer(data, 80 * 1024, 20 * 1024));
+            compressed.addComponent(true, encoder.encode(composite));
+            composite.release();
+
+            compressed.addComponent(true, encoder.flush());
+            try (ByteBufDecoder decoder = new ByteBufDecoder(UnpooledByteBufAllocator.DEFAULT)) {
+                ByteBuf partial = decoder.decode(compressed.duplicate());
+                assertArrayEquals(Arrays.copyOf(data, 100 * 1024), ByteBufUtil.getBytes(partial));
+                assertFalse(decoder.isFinished());
+                partial.release();
+            }
+
+            compressed.addComponent(true, encoder.encode(Unpooled.wrappedBuffer(data, 100 * 1024, 100 * 1024)));
+            compressed.addComponent(true, encoder.finish());
+            assertTrue(encoder.isFinished());
+            assertThrows(IllegalStateException.class, () -> encoder.encode(Unpooled.wrappedBuffer(data)));
+        }
+
+        ByteBuf decompressed = Unpooled.buffer();
+        try (ByteBufDecoder decoder = new ByteBufDecoder(UnpooledByteBufAllocator.DEFAULT, 1024)) {
+            while (compressed.isReadable()) {
+                ByteBuf output = decoder.decode(compressed.readSlice(Math.min(777, compressed.readableBytes())));
+                decompressed.writeBytes(output);
+                output.release();
+            }
+            assertTrue(decoder.isFinished());
+            assertThrows(IOException.class, () -> decoder.decode(Unpooled.wrappedBuffer(new byte[1])));
+        }
+        assertArrayEquals(data, ByteBufUtil.getBytes(decompressed));
+        compressed.release();
+    }
+
+    @Test
+    void shareDictionariesThroughRegistry() throws IOException {
+        byte[] dictionary = new byte[64 * 1024];
+        new Random(3).nextBytes(dictionary);
+        byte[] data = Arrays.copyOfRange(dictionary, 1000, 41000);
+
+        DictionaryRegistry registry = new DictionaryRegistry(0);
+        byte[] sha256;
+        byte[] compressed;
+        try (DictionaryRegistry.Lease lease = registry.acquire(dictionary);
+             DictionaryRegistry.Lease same = registry.acquire(ByteBuffer.wrap(dictionary.clone()))) {
+            assertEquals(1, registry.stats().entries());
+            assertEquals(1, registry.stats().hits());
+            assertTrue(registry.stats().bytes() > dictionary.length);
+            assertEquals(lease.getData(), same.getData());
+            sha256 = lease.sha256();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (BrotliOutputStream encoder = new BrotliOutputStream(out)) {
+                encoder.attachDictionary(lease);
+                encoder.write(data);
+            }
+            compressed = out.toByteArray();
+            assertTrue(compressed.length < data.length / 10);
+
+            try (DictionaryRegistry.Lease found = registry.find(sha256)) {
+                assertArrayEquals(data, decompressAll(compressed, found.dictionary()));
+            }
+
+            // Over budget, but still leased
+            assertEquals(1, registry.stats().entries());
+        }
+
+        // Released right after the last lease is closed, as the budget is exhausted
+        assertEquals(0, registry.stats().entries());
+        assertEquals(0, registry.stats().bytes());
+        assertNull(registry.find(sha256));
+    }
+
+    @Test
+    void generateDictionaryInChunks() throws IOException {
+        byte[] dictionary = new byte[256 * 1024];
+        Random random = new Random(5);
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = (byte) ('a' + random.nextInt(random.nextInt(26) + 1));
+        }
+        ByteBuffer source = BrotliCommon.makeNative(dictionary);
+
+        ByteBuffer expected = PreparedDictionaryGenerator.generate(source, 17, 3, 40, 5, 1).getData();
+        for (int chunks : new int[]{2, 7, 64}) {
+            ByteBuffer actual = PreparedDictionaryGenerator.generate(source, 17, 3, 40, 5, chunks).getData();
+            assertEquals(expected, actual);
+        }
+
+        byte[] data = Arrays.copyOfRange(dictionary, 100000, 140000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out)) {
+            encoder.attachDictionary(PreparedDictionaryGenerator.generate(source));
+            encoder.write(data);
+        }
+        byte[] compressed = out.toByteArray();
+        assertTrue(compressed.length < data.length / 10);
+
+        assertArrayEquals(data, decompressAll(compressed, source));
+    }
+
+    @Test
+    void generateDictionaryMatchesGoldenLayout() {
+        // Digests of the layout produced by the original single-pass generator; prepared dictionary is stored
+        // in native byte order, so they pin little-endian layout only.
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            return;
+        }
+        Random random = new Random(5);
+        byte[] text = new byte[256 * 1024];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + random.nextInt(random.nextInt(26) + 1));
+        }
+        random = new Random(11);
+        byte[] largeText = new byte[1024 * 1024];
+        for (int i = 0; i < largeText.length; i++) {
+            largeText[i] = (byte) ('a' + random.nextInt(random.nextInt(26) + 1));
+        }
+        byte[] binary = new byte[64 * 1024];
+        new Random(7).nextBytes(binary);
+        // Fills every slot past 0xFFFF items, so that slot limits are lowered.
+        byte[] largeBinary = new byte[4 * 1024 * 1024];
+        new Random(13).nextBytes(largeBinary);
+        byte[] tiny = new byte[8];
+        new Random(17).nextBytes(tiny);
+        byte[] zeros = new byte[100000];
+
+        assertGoldenLayout(text, new int[]{17, 3, 40, 5},
+                "ac2d7470bd95544340d9570abf752750ea2a24b78f1a94bf59723bdeb4531268");
+        assertGoldenLayout(binary, new int[]{17, 3, 40, 5},
+                "25e11dc011375da971ae911489797774cb93ec6477cb026c7f9aef9fc483ae79");
+        assertGoldenLayout(largeText, new int[]{15, 2, 32, 4},
+                "9d0649be45a3a411cf7c283fe3d33a9ad93cd1f18a122c777de3f7a1b603d26a");
+        assertGoldenLayout(largeBinary, new int[]{17, 3, 40, 5},
+                "74bd75d9ac1878a5d63e37995357eef26f3a3710cc2f567314bcd653fae1561f");
+        assertGoldenLayout(tiny, new int[]{17, 3, 40, 5},
+                "5445eb75e9a1ca6efe756091efdd44be923970a0b4a3178a792ff2ee858a1afa");
+        assertGoldenLayout(zeros, new int[]{16, 4, 48, 3},
+                "af11e7e13192133cbb48611d7f4428013ac8f031a3fe8ed294680881ca71df2e");
+    }
+
+    private static void assertGoldenLayout(byte[] dictionary, int[] params, String sha256) {
+        ByteBuffer source = BrotliCommon.makeNative(dictionary);
+        for (int chunks : new int[]{0, 1, 7}) {
+            ByteBuffer data = chunks == 0
+                    ? PreparedDictionaryGenerator.generate(source, params[0], params[1], params[2], params[3]).getData()
+                    : PreparedDictionaryGenerator.generate(source, params[0], params[1], params[2], params[3], chunks)
+                    .getData();
+            ((Buffer) data).clear();
+            assertEquals(sha256, ByteBufUtil.hexDump(DictionaryTransport.sha256(data)),
+                    "size " + dictionary.length + ", chunks " + chunks);
+        }
+    }
+
+    @Test
+    void persistPreparedDictionary(@TempDir Path tempDir) throws IOException {
+        byte[] dictionary = new byte[64 * 1024];
+        new Random(7).nextBytes(dictionary);
+        byte[] data = Arrays.copyOfRange(dictionary, 2000, 42000);
+        PreparedDictionary generated = PreparedDictionaryGenerator.generate(BrotliCommon.makeNative(dictionary));
+
+        Path file = tempDir.resolve("dictionary.bin");
+        PreparedDictionaryFile.write(generated, file);
+        PreparedDictionaryFile mapped = PreparedDictionaryFile.map(file);
+        assertEquals(generated.getData().duplicate().clear(), mapped.getData());
+        assertEquals(ByteBuffer.wrap(dictionary), mapped.dictionary());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out)) {
+            encoder.attachDictionary(mapped);
+            encoder.write(data);
+        }
+        byte[] compressed = out.toByteArray();
+        assertTrue(compressed.length < data.length / 10);
+        assertArrayEquals(data, decompressAll(compressed, mapped.dictionary()));
+
+        // Native dictionaries reference caller memory and can not be persisted
+        PreparedDictionary prepared = Encoder.prepareDictionary(BrotliCommon.makeNative(dictionary), 0);
+        assertThrows(IllegalArgumentException.class, () -> PreparedDictionaryFile.write(prepared, file));
+
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] ^= 1;
+        Path corrupted = tempDir.resolve("corrupted.bin");
+        Files.write(corrupted, content);
+        assertThrows(IOException.class, () -> PreparedDictionaryFile.map(corrupted));
+        PreparedDictionaryFile.map(corrupted, false);
+
+        Files.write(corrupted, Arrays.copyOf(content, content.length - 1));
+        assertThrows(IOException.class, () -> PreparedDictionaryFile.map(corrupted, false));
+    }
+
+    @Test
+    void trainDictionary() throws IOException {
+        Random random = new Random(11);
+        String[] roles = {"admin", "editor", "viewer", "billing"};
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String sample = "{\"id\":" + random.nextInt(1000000)
+                    + ",\"name\":\"user-" + Integer.toHexString(random.nextInt()) + "\""
+                    + ",\"email\":\"" + Long.toHexString(random.nextLong()) + "@example.com\""
+                    + ",\"roles\":[\"" + roles[random.nextInt(roles.length)] + "\"]"
+                    + ",\"active\":" + random.nextBoolean()
+                    + ",\"created\":\"2024-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10)
+                    + "T12:00:00Z\",\"links\":{\"self\":\"https://api.example.com/v1/users/" + i + "\"}}";
+            samples.add(sample.getBytes());
+        }
+
+        DictionaryTrainer.Result result = new DictionaryTrainer()
+                .setMaxSize(4096)
+                .setParameters(Encoder.Parameters.create(5))
+                .train(samples);
+        byte[] dictionary = result.dictionary();
+        assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+        assertEquals(360, result.trainingSamples());
+        assertEquals(40, result.heldOutSamples());
+        assertTrue(result.savings() > 0.3, result.toString());
+
+        byte[] data = samples.get(9);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream encoder = new BrotliOutputStream(out)) {
+            encoder.attachDictionary(Encoder.prepareDictionary(BrotliCommon.makeNative(dictionary), 0));
+            encoder.write(data);
+        }
+        assertArrayEquals(data, decompressAll(out.toByteArray(), BrotliCommon.makeNative(dictionary)));
+    }
+
+    @Test
+    void compressAsynchronously() throws Exception {
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("{\"id\":" + (i % 1000) + "}").charAt(i % 8);
+        }
+
+        try (BrotliAsync async = new BrotliAsync()) {
+            ByteBuf compressed = async.compress(Unpooled.wrappedBuffer(data), Encoder.Parameters.create(5),
+                    UnpooledByteBufAllocator.DEFAULT).get();
+            ByteBuf decompressed = async.decompress(compressed, UnpooledByteBufAllocator.DEFAULT).get();
+            assertArrayEquals(data, ByteBufUtil.getBytes(decompressed));
+            compressed.release();
+            decompressed.release();
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            ByteBuffer compressedBuffer = async.compress(direct, Encoder.Parameters.create(5)).get();
+            assertEquals(data.length, direct.remaining());
+            ByteBuffer decompressedBuffer = async.decompress(compressedBuffer).get();
+            assertEquals(ByteBuffer.wrap(data), decompressedBuffer);
+
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> async.decompress(ByteBuffer.wrap(data)).get());
+            assertTrue(failure.getCause() instanceof IOException);
+
+            assertEquals(ByteBuffer.wrap(data), async.decompress(compressedBuffer, data.length).get());
+            assertEquals(ByteBuffer.wrap(data), async.decompress(compressedBuffer, Integer.MAX_VALUE).get());
+            failure = assertThrows(ExecutionException.class,
+                    () -> async.decompress(compressedBuffer, data.length - 1).get());
+            assertTrue(failure.getCause() instanceof IOException);
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+        try (BrotliAsync async = new BrotliAsync(executor, 2)) {
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<ByteBuffer> first = async.compress(ByteBuffer.wrap(data), Encoder.Parameters.create(5));
+            CompletableFuture<ByteBuffer> second = async.compress(ByteBuffer.wrap(data), Encoder.Parameters.create(5));
+            CompletableFuture<ByteBuffer> rejected = async.compress(ByteBuffer.wrap(data), Encoder.Parameters.DEFAULT);
+            assertEquals(2, async.pending());
+            ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+            assertTrue(failure.getCause() instanceof RejectedExecutionException);
+
+            assertTrue(first.cancel(false));
+            blocked.countDown();
+            assertEquals(ByteBuffer.wrap(data), async.decompress(second.get()).get());
+            assertTrue(first.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+
+        // Tasks queued before close still complete.
+        executor = Executors.newSingleThreadExecutor();
+        CountDownLatch closing = new CountDownLatch(1);
+        try {
+            CompletableFuture<ByteBuffer> queued;
+            try (BrotliAsync async = new BrotliAsync(executor, 2)) {
+                executor.execute(() -> {
+                    try {
+                        closing.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                queued = async.compress(ByteBuffer.wrap(data), Encoder.Parameters.create(5));
+            }
+            closing.countDown();
+            assertArrayEquals(data, Decoder.decompress(ByteBufUtil.getBytes(Unpooled.wrappedBuffer(queued.get())))
+                    .getDecompressedData());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void cancelAsynchronousDecompressionWhileProducingOutput() throws Exception {
+        // Small input expanding to large output, pulled in window-sized chunks.
+        byte[] compressed = Encoder.compress(new byte[32 << 20], Encoder.Parameters.create(1, 16));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicReference<CompletableFuture<ByteBuf>> future = new AtomicReference<>();
+        AtomicInteger writes = new AtomicInteger();
+        ByteBufAllocator allocator = new AbstractByteBufAllocator() {
+            @Override
+            protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+                return new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity) {
+                    @Override
+                    public ByteBuf writeBytes(ByteBuffer src) {
+                        if (writes.incrementAndGet() == 1) {
+                            future.get().cancel(false);
+                        }
+                        return super.writeBytes(src);
+                    }
+                };
+            }
+
+            @Override
+            protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+                return newHeapBuffer(initialCapacity, maxCapacity);
+            }
+
+            @Override
+            public boolean isDirectBufferPooled() {
+                return false;
+            }
+        };
+        try (BrotliAsync async = new BrotliAsync(executor, 2)) {
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            future.set(async.decompress(Unpooled.wrappedBuffer(compressed), allocator));
+            blocked.countDown();
+            assertThrows(CancellationException.class, () -> future.get().get());
+            // Wait for the task to leave, then check it stopped right after the first chunk.
+            executor.submit(() -> null).get();
+            assertEquals(1, writes.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void compressBatch() throws IOException {
+        Random random = new Random(20);
+        List<byte[]> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            byte[] message = ("{\"id\":" + i + ",\"name\":\"record-" + random.nextInt(100) + "\",\"tags\":[")
+                    .getBytes();
+            message = Arrays.copyOf(message, message.length + (i % 7 == 0 ? 0 : random.nextInt(2000)));
+            for (int j = message.length - 1; j >= 0 && message[j] == 0; j--) {
+                message[j] = (byte) ('a' + random.nextInt(3));
+            }
+            messages.add(message);
+        }
+        messages.add(new byte[0]);
+
+        CompressedBatch batch = Encoder.compressBatch(messages, Encoder.Parameters.create(5));
+        assertEquals(messages.size(), batch.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertArrayEquals(messages.get(i), Decoder.decompress(batch.toByteArray(i)).getDecompressedData());
+            assertArrayEquals(Encoder.compress(messages.get(i), Encoder.Parameters.create(5)), batch.toByteArray(i));
+        }
+
+        // Same layout from a single source array; non-basic parameters take another native path.
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        int[] bounds = new int[messages.size() + 1];
+        for (int i = 0; i < messages.size(); i++) {
+            joined.write(messages.get(i), 0, messages.get(i).length);
+            bounds[i + 1] = joined.size();
+        }
+        Encoder.Parameters params = Encoder.Parameters.create(4).setBlock(16);
+        batch = Encoder.compressBatch(joined.toByteArray(), bounds, params);
+        assertEquals(messages.get(42).length, Decoder.decompress(batch.toByteArray(42)).getDecompressedData().length);
+
+        // Direct buffers with room for only a part of the batch.
+        ByteBuffer src = ByteBuffer.allocateDirect(joined.size());
+        src.put(joined.toByteArray()).flip();
+        ByteBuffer dst = ByteBuffer.allocateDirect(batch.totalLength() / 2);
+        int[] dstBounds = new int[bounds.length];
+        int done = Encoder.compressBatch(src, bounds, dst, dstBounds, params);
+        assertTrue(done > 0 && done < messages.size());
+        assertEquals(dstBounds[done], dst.position());
+        for (int i = 0; i < done; i++) {
+            byte[] compressed = new byte[dstBounds[i + 1] - dstBounds[i]];
+            ((ByteBuffer) dst.duplicate().position(dstBounds[i])).get(compressed);
+            assertArrayEquals(messages.get(i), Decoder.decompress(compressed).getDecompressedData());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> Encoder.compressBatch(messages,
+                Encoder.Parameters.create(4).setStreamOffset(1)));
+        assertThrows(IllegalArgumentException.class, () -> Encoder.compressBatch(new byte[4], new int[]{2, 1},
+                Encoder.Parameters.DEFAULT));
+    }
+
+    @Test
+    void compressWithProcessors() throws IOException {
+        byte[] data = new byte[100 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ("{\"id\":" + (i % 1000) + "}").charAt(i % 8);
+        }
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int i = 0; i < data.length; i += 1000) {
+            chunks.add(ByteBuffer.wrap(data, i, Math.min(1000, data.length - i)));
+        }
+
+        ListPublisher source = new ListPublisher(chunks);
+        EncoderProcessor encoder = new EncoderProcessor(Encoder.Parameters.create(5), 16 * 1024);
+        DecoderProcessor decoder = new DecoderProcessor();
+        CollectingSubscriber sink = new CollectingSubscriber();
+        source.subscribe(encoder);
+        encoder.subscribe(decoder);
+        decoder.subscribe(sink);
+        while (!sink.done) {
+            sink.subscription.request(1);
+        }
+        assertNull(sink.failure);
+        assertArrayEquals(data, sink.out.toByteArray());
+        assertTrue(source.cancelled || source.next == chunks.size());
+
+        // Nothing is pulled from upstream without downstream demand, and cancelling propagates upstream.
+        source = new ListPublisher(chunks);
+        encoder = new EncoderProcessor(Encoder.Parameters.create(5));
+        sink = new CollectingSubscriber();
+        source.subscribe(encoder);
+        encoder.subscribe(sink);
+        assertEquals(0, source.next);
+        sink.subscription.cancel();
+        assertTrue(source.cancelled);
+        assertFalse(sink.done);
+
+        // Corrupted input fails downstream.
+        source = new ListPublisher(Arrays.asList(ByteBuffer.wrap(data, 0, 1000)));
+        decoder = new DecoderProcessor();
+        sink = new CollectingSubscriber();
+        source.subscribe(decoder);
+        decoder.subscribe(sink);
+        sink.subscription.request(Long.MAX_VALUE);
+        assertTrue(sink.failure instanceof IOException);
+
+        // Upstream failure before downstream subscribes is delivered on subscription; a second subscriber is
+        // rejected.
+        encoder = new EncoderProcessor(Encoder.Parameters.create(5));
+        IOException upstreamFailure = new IOException("upstream failed");
+        encoder.onError(upstreamFailure);
+        sink = new CollectingSubscriber();
+        encoder.subscribe(sink);
+        assertSame(upstreamFailure, sink.failure);
+        CollectingSubscriber second = new CollectingSubscriber();
+        encoder.subscribe(second);
+        assertNotNull(second.subscription);
+        assertTrue(second.failure instanceof IllegalStateException);
+    }
+
+    @Test
+    void compressWithAdvancedParameters() throws IOException {
+        byte[] data = new byte[64 * 1024];
+        new Random(3).nextBytes(data);
+        for (int i = 0; i < data.length; i += 2) {
+            data[i] = (byte) (i >> 9);
+        }
+
+        Encoder.Parameters params = new Encoder.Parameters()
+                .setQuality(6)
+                .setWindow(18)
+                .setBlock(16)
+                .setDisableLiteralContextModeling(true)
+                .setSizeHint(data.length)
+                .setPostfixBits(1)
+                .setDirectDistanceCodes(12);
+
+        byte[] compressed = Encoder.compress(data, params);
+        assertArrayEquals(data, Decoder.decompress(compressed).getDecompressedData());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliOutputStream stream = new BrotliOutputStream(out, params)) {
+            stream.write(data);
+        }
+        assertArrayEquals(data, Decoder.decompress(out.toByteArray()).getDecompressedData());
+    }
+
+    @Test
+    void rejectInvalidAdvancedParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new Encoder.Parameters().setBlock(25));
+        assertThrows(IllegalArgumentException.class, () -> new Encoder.Parameters().setPostfixBits(4));
+        assertThrows(IllegalArgumentException.class, () -> new Encoder.Parameters().setDirectDistanceCodes(121));
+        assertThrows(IllegalArgumentException.class, () -> new Encoder.Parameters().setSizeHint(-1));
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> new Encoder.Parameters().setPostfixBits(2).setDirectDistanceCodes(6));
+        assertEquals("ndirect should be a multiple of 4 in range [0, 60] for npostfix 2, or -1; got 6",
+                failure.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> new Encoder.Parameters().setDirectDistanceCodes(16));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Encoder.Parameters().setDirectDistanceCodes(12).setPostfixBits(3));
+        assertEquals(120, new Encoder.Parameters().setPostfixBits(3).setDirectDistanceCodes(120).ndirect());
+    }
+
+    @Test
+    void compressInParallel() throws IOException {
+        byte[] data = new byte[1024 * 1024 + 123];
+        Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4) + (i >> 14) % 3);
+        }
+
+        Encoder.Parameters params = Encoder.Parameters.create(9, 18);
+        ParallelEncoder encoder = new ParallelEncoder(params, 64 * 1024, 4, ForkJoinPool.commonPool());
+        byte[] compressed = encoder.compress(data);
+        assertArrayEquals(data, Decoder.decompress(compressed).getDecompressedData());
+
+        assertArrayEquals(data, decompressAll(compressed));
+
+        assertArrayEquals(new byte[0], Decoder.decompress(encoder.compress(new byte[0])).getDecompressedData());
+        byte[] tiny = new ParallelEncoder(params, 1, 2, ForkJoinPool.commonPool()).compress("Meow".getBytes());
+        assertArrayEquals("Meow".getBytes(), Decoder.decompress(tiny).getDecompressedData());
+    }
+
+    @Test
+    void compressWithPolicyStoresTinyAndIncompressiblePayloads() throws IOException {
+        byte[] tiny = "{\"status\":\"ok\",\"items\":[],\"more\":false}".getBytes();
+        assertPolicyPath(tiny, EncodingPolicy.Path.STORED_TOO_SMALL);
+
+        Random random = new Random(11);
+        for (int size : new int[]{4096, 70000, 1536 * 1024}) {
+            byte[] noise = new byte[size];
+            random.nextBytes(noise);
+            ByteBuf dst = assertPolicyPath(noise, EncodingPolicy.Path.STORED_INCOMPRESSIBLE);
+            assertTrue(dst.readableBytes() <= size + 8);
+            dst.release();
+        }
+
+        byte[] text = new byte[64 * 1024];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + random.nextInt(6));
+        }
+        ByteBuf dst = assertPolicyPath(text, EncodingPolicy.Path.COMPRESSED);
+        assertTrue(dst.readableBytes() < text.length / 2);
+        dst.release();
+    }
+
+    private static ByteBuf assertPolicyPath(byte[] data, EncodingPolicy.Path expected) throws IOException {
+        ByteBuf dst = Unpooled.buffer();
+        EncodingPolicy.Path path = Encoders.compress(Unpooled.wrappedBuffer(data), dst,
+                Encoder.Parameters.DEFAULT, EncodingPolicy.DEFAULT);
+        assertEquals(expected, path);
+        assertArrayEquals(data, Decoder.decompress(ByteBufUtil.getBytes(dst)).getDecompressedData());
+        return dst;
+    }
+
+    @Test
+    void compressFromDirectMemory() throws Exception {
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + (i * 7 + i / 1000) % 13);
+        }
+        ByteBuf src = Unpooled.directBuffer(data.length).writeBytes(data);
+
+        // Composite destination takes the streaming path.
+        ByteBuf dst = Unpooled.compositeBuffer();
+        Encoders.compress(src, dst, Encoder.Parameters.create(4));
+        assertArrayEquals(data, Decoder.decompress(ByteBufUtil.getBytes(dst)).getDecompressedData());
+        dst.release();
+
+        try (EncoderPool pool = new EncoderPool()) {
+            dst = Unpooled.buffer();
+            Encoders.compress(src, dst, Encoder.Parameters.create(4), pool);
+            assertArrayEquals(data, Decoder.decompress(ByteBufUtil.getBytes(dst)).getDecompressedData());
+            dst.release();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliEncoderChannel channel = new BrotliEncoderChannel(Channels.newChannel(out),
+                Encoder.Parameters.create(4), 16 * 1024)) {
+            channel.write(ByteBuffer.wrap(data, 0, 100));
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length - 100);
+            direct.put(data, 100, data.length - 100).flip();
+            assertEquals(data.length - 100, channel.write(direct));
+            assertFalse(direct.hasRemaining());
+        }
+        assertArrayEquals(data, Decoder.decompress(out.toByteArray()).getDecompressedData());
+        src.release();
+
+        // Non-blocking destination stops the write once it is full, instead of spinning on it; small window
+        // makes encoder emit output early.
+        byte[] random = new byte[1 << 20];
+        new Random(7).nextBytes(random);
+        Pipe pipe = Pipe.open();
+        pipe.sink().configureBlocking(false);
+        ByteArrayOutputStream piped = new ByteArrayOutputStream();
+        Thread reader = new Thread(() -> {
+            try (InputStream in = Channels.newInputStream(pipe.source())) {
+                byte[] chunk = new byte[16 * 1024];
+                for (int read; (read = in.read(chunk)) >= 0; ) {
+                    piped.write(chunk, 0, read);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try (BrotliEncoderChannel channel = new BrotliEncoderChannel(pipe.sink(), Encoder.Parameters.create(4, 16),
+                16 * 1024)) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(random.length);
+            direct.put(random).flip();
+            assertTrue(channel.write(direct) < random.length);
+            reader.start();
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+        }
+        reader.join();
+        assertArrayEquals(random, Decoder.decompress(piped.toByteArray()).getDecompressedData());
     }
 
     @Test
@@ -108,4 +961,85 @@ class EncoderTest {
             assertArrayEquals(expectedCompression, byteArrayOutputStream.toByteArray());  // Otherwise the GC already cleared the data
         }
     }
+
+    private static byte[] decompressAll(byte[] compressed) throws IOException {
+        return decompressAll(compressed, null);
+    }
+
+    /* Reads the whole stream with BrotliInputStream, attaching the raw dictionary if given. */
+    private static byte[] decompressAll(byte[] compressed, ByteBuffer dictionary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BrotliInputStream decoder = new BrotliInputStream(new ByteArrayInputStream(compressed))) {
+            if (dictionary != null) {
+                decoder.attachDictionary(dictionary);
+            }
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = decoder.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static final class ListPublisher implements BrotliFlow.Publisher<ByteBuffer> {
+        private final List<ByteBuffer> items;
+        private int next;
+        private boolean cancelled;
+
+        ListPublisher(List<ByteBuffer> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(BrotliFlow.Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new BrotliFlow.Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && !cancelled && next < items.size(); i++) {
+                        subscriber.onNext(items.get(next++).duplicate());
+                    }
+                    if (!cancelled && next == items.size()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class CollectingSubscriber implements BrotliFlow.Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private BrotliFlow.Subscription subscription;
+        private Throwable failure;
+        private boolean done;
+
+        @Override
+        public void onSubscribe(BrotliFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            byte[] bytes = new byte[item.remaining()];
+            item.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            done = true;
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+        }
+    }
 }
@@ -0,0 +1,46 @@
+/* Copyright (c) 2020-2025, Aayush Atharva
+
+   Distributed under Apache License, Version 2.0.
+   See file LICENSE for detail or copy at
+   http://www.apache.org/licenses/LICENSE-2.0
+*/
+
+#ifndef BROTLI4J_ALLOCATOR_H_
+#define BROTLI4J_ALLOCATOR_H_
+
+#include <brotli/types.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * Allocation hook shared by native encoder and decoder states.
+ *
+ * Java side passes address of this structure (see NativeAllocator.retain)
+ * together with one reference; native state owns that reference and calls
+ * release when it is destroyed. alloc_func / free_func / opaque are handed to
+ * Brotli{En,De}coderCreateInstance as is; free_func MUST accept NULL.
+ */
+typedef struct Brotli4jAllocator {
+  brotli_alloc_func alloc_func;
+  brotli_free_func free_func;
+  void* opaque;
+  void (*retain)(struct Brotli4jAllocator* allocator);
+  void (*release)(struct Brotli4jAllocator* allocator);
+} Brotli4jAllocator;
+
+/**
+ * Creates a size-class arena; see NativeArena.
+ *
+ * @param max_retained maximal number of bytes kept in idle blocks
+ * @returns allocator holding one reference owned by caller; null in case of
+ *          failure
+ */
+Brotli4jAllocator* Brotli4jCreateArena(size_t max_retained);
+
+#ifdef __cplusplus
+}
+#endif
+
+#endif  /* BROTLI4J_ALLOCATOR_H_ */
@@ -0,0 +1,280 @@
+/* Copyright (c) 2020-2025, Aayush Atharva
+
+   Distributed under Apache License, Version 2.0.
+   See file LICENSE for detail or copy at
+   http://www.apache.org/licenses/LICENSE-2.0
+*/
+
+#include "allocator.h"  // NOLINT: build/include
+
+#include <jni.h>
+
+#include <atomic>
+#include <cstdlib>
+#include <mutex>
+#include <new>
+
+namespace {
+/* Requests up to this size go straight to malloc. */
+const size_t kMinArenaSize = 4096;
+/* Requests above this size go straight to malloc. */
+const size_t kMaxArenaSize = static_cast<size_t>(1) << 30;
+/* Every power of two is split into 4 size classes. */
+const int kClassesPerPower = 4;
+const int kMinPower = 12;
+const int kMaxPower = 30;
+const int kClassCount = (kMaxPower - kMinPower) * kClassesPerPower;
+/* Class index of blocks allocated with plain malloc. */
+const uint32_t kNoClass = 0xFFFFFFFFu;
+
+/* Precedes every block; keeps payload 16-byte aligned. */
+typedef struct BlockHeader {
+  uint32_t size_class;
+  uint32_t reserved;
+  size_t size;
+} BlockHeader;
+const size_t kHeaderSize = 16;
+static_assert(sizeof(BlockHeader) <= kHeaderSize, "block header too large");
+
+/* Idle block; "next" is stored in the payload. */
+typedef struct FreeBlock {
+  struct FreeBlock* next;
+} FreeBlock;
+
+typedef struct Arena {
+  Brotli4jAllocator allocator;  /* MUST be the first member. */
+  std::atomic<int> references;
+
+  std::mutex mutex;
+  FreeBlock* free_lists[kClassCount];
+  size_t max_retained;
+
+  std::atomic<size_t> in_use;
+  std::atomic<size_t> retained;
+  std::atomic<size_t> peak;
+  std::atomic<uint64_t> allocations;
+  std::atomic<uint64_t> reuses;
+} Arena;
+
+Arena* getArena(void* opaque) {
+  return static_cast<Arena*>(opaque);
+}
+
+/* Smallest class holding "size" bytes; size in (kMinArenaSize, kMaxArenaSize].
+   Classes of [2^p, 2^(p+1)) are 5/4, 6/4, 7/4 and 8/4 of 2^p. */
+int sizeClass(size_t size) {
+  size_t n = size - 1;
+  int power = kMinPower;
+  while ((n >> (power + 1)) != 0) {
+    ++power;
+  }
+  int sub = static_cast<int>((n >> (power - 2)) & 3);
+  return (power - kMinPower) * kClassesPerPower + sub;
+}
+
+size_t classSize(int size_class) {
+  int power = kMinPower + size_class / kClassesPerPower;
+  size_t sub = static_cast<size_t>(size_class % kClassesPerPower);
+  return (4 + sub + 1) << (power - 2);
+}
+
+void updatePeak(Arena* arena, size_t in_use) {
+  size_t peak = arena->peak.load(std::memory_order_relaxed);
+  while (in_use > peak &&
+         !arena->peak.compare_exchange_weak(peak, in_use,
+                                            std::memory_order_relaxed)) {
+  }
+}
+
+void* arenaAlloc(void* opaque, size_t size) {
+  Arena* arena = getArena(opaque);
+  uint32_t size_class = kNoClass;
+  size_t block_size = size;
+  BlockHeader* header = nullptr;
+  if (size > kMinArenaSize && size <= kMaxArenaSize) {
+    int index = sizeClass(size);
+    size_class = static_cast<uint32_t>(index);
+    block_size = classSize(index);
+    std::lock_guard<std::mutex> lock(arena->mutex);
+    FreeBlock* block = arena->free_lists[index];
+    if (block) {
+      arena->free_lists[index] = block->next;
+      header = reinterpret_cast<BlockHeader*>(
+          reinterpret_cast<uint8_t*>(block) - kHeaderSize);
+      arena->retained.fetch_sub(block_size, std::memory_order_relaxed);
+      arena->reuses.fetch_add(1, std::memory_order_relaxed);
+    }
+  }
+  if (!header) {
+    header = static_cast<BlockHeader*>(malloc(kHeaderSize + block_size));
+    if (!header) {
+      return nullptr;
+    }
+    header->size_class = size_class;
+    header->reserved = 0;
+    header->size = block_size;
+  }
+  arena->allocations.fetch_add(1, std::memory_order_relaxed);
+  updatePeak(arena, arena->in_use.fetch_add(block_size,
+      std::memory_order_relaxed) + block_size);
+  return reinterpret_cast<uint8_t*>(header) + kHeaderSize;
+}
+
+void arenaFree(void* opaque, void* address) {
+  if (!address) {
+    return;
+  }
+  Arena* arena = getArena(opaque);
+  BlockHeader* header = reinterpret_cast<BlockHeader*>(
+      static_cast<uint8_t*>(address) - kHeaderSize);
+  size_t block_size = header->size;
+  arena->in_use.fetch_sub(block_size, std::memory_order_relaxed);
+  if (header->size_class != kNoClass) {
+    std::lock_guard<std::mutex> lock(arena->mutex);
+    size_t retained = arena->retained.load(std::memory_order_relaxed);
+    if (retained + block_size <= arena->max_retained) {
+      FreeBlock* block = static_cast<FreeBlock*>(address);
+      block->next = arena->free_lists[header->size_class];
+      arena->free_lists[header->size_class] = block;
+      arena->retained.fetch_add(block_size, std::memory_order_relaxed);
+      return;
+    }
+  }
+  free(header);
+}
+
+/* Release all idle blocks. */
+void trim(Arena* arena) {
+  std::lock_guard<std::mutex> lock(arena->mutex);
+  for (int i = 0; i < kClassCount; ++i) {
+    FreeBlock* block = arena->free_lists[i];
+    while (block) {
+      FreeBlock* next = block->next;
+      free(reinterpret_cast<uint8_t*>(block) - kHeaderSize);
+      arena->retained.fetch_sub(classSize(i), std::memory_order_relaxed);
+      block = next;
+    }
+    arena->free_lists[i] = nullptr;
+  }
+}
+
+void retain(Brotli4jAllocator* allocator) {
+  Arena* arena = getArena(allocator->opaque);
+  arena->references.fetch_add(1, std::memory_order_relaxed);
+}
+
+void release(Brotli4jAllocator* allocator) {
+  Arena* arena = getArena(allocator->opaque);
+  if (arena->references.fetch_sub(1, std::memory_order_acq_rel) == 1) {
+    trim(arena);
+    delete arena;
+  }
+}
+
+}  /* namespace */
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+Brotli4jAllocator* Brotli4jCreateArena(size_t max_retained) {
+  Arena* arena = new (std::nothrow) Arena();
+  if (!arena) {
+    return nullptr;
+  }
+  arena->allocator.alloc_func = arenaAlloc;
+  arena->allocator.free_func = arenaFree;
+  arena->allocator.opaque = arena;
+  arena->allocator.retain = retain;
+  arena->allocator.release = release;
+  arena->references.store(1);
+  for (int i = 0; i < kClassCount; ++i) {
+    arena->free_lists[i] = nullptr;
+  }
+  arena->max_retained = max_retained;
+  arena->in_use.store(0);
+  arena->retained.store(0);
+  arena->peak.store(0);
+  arena->allocations.store(0);
+  arena->reuses.store(0);
+  return &arena->allocator;
+}
+
+/**
+ * Creates a new size-class arena.
+ *
+ * Arena is referenced by Java object; every native state created with it adds
+ * a reference.
+ *
+ * @param max_retained maximal number of bytes kept in idle blocks
+ * @returns address of Brotli4jAllocator; 0 in case of failure
+ */
+JNIEXPORT jlong JNICALL
+Java_com_aayushatharva_brotli4j_common_NativeArena_nativeCreate(
+    JNIEnv* /*env*/, jobject /*jobj*/, jlong max_retained) {
+  return reinterpret_cast<jlong>(
+      Brotli4jCreateArena(static_cast<size_t>(max_retained)));
+}
+
+/**
+ * Adds a reference to arena.
+ *
+ * @param address address returned by nativeCreate
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_common_NativeArena_nativeRetain(
+    JNIEnv* /*env*/, jobject /*jobj*/, jlong address) {
+  Brotli4jAllocator* allocator =
+      reinterpret_cast<Brotli4jAllocator*>(address);
+  allocator->retain(allocator);
+}
+
+/**
+ * Removes a reference from arena; last reference frees the arena.
+ *
+ * @param address address returned by nativeCreate
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_common_NativeArena_nativeRelease(
+    JNIEnv* /*env*/, jobject /*jobj*/, jlong address) {
+  Brotli4jAllocator* allocator =
+      reinterpret_cast<Brotli4jAllocator*>(address);
+  allocator->release(allocator);
+}
+
+/**
+ * Reads arena counters.
+ *
+ * @param address address returned by nativeCreate
+ * @param stats {out_in_use, out_retained, out_peak, out_allocations,
+ *               out_reuses} tuple
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_common_NativeArena_nativeStats(
+    JNIEnv* env, jobject /*jobj*/, jlong address, jlongArray stats) {
+  Brotli4jAllocator* allocator =
+      reinterpret_cast<Brotli4jAllocator*>(address);
+  Arena* arena = getArena(allocator->opaque);
+  jlong values[5];
+  values[0] = static_cast<jlong>(arena->in_use.load());
+  values[1] = static_cast<jlong>(arena->retained.load());
+  values[2] = static_cast<jlong>(arena->peak.load());
+  values[3] = static_cast<jlong>(arena->allocations.load());
+  values[4] = static_cast<jlong>(arena->reuses.load());
+  env->SetLongArrayRegion(stats, 0, 5, values);
+}
+
+/**
+ * Releases all idle blocks of arena.
+ *
+ * @param address address returned by nativeCreate
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_common_NativeArena_nativeTrim(
+    JNIEnv* /*env*/, jobject /*jobj*/, jlong address) {
+  trim(getArena(reinterpret_cast<Brotli4jAllocator*>(address)->opaque));
+}
+
+#ifdef __cplusplus
+}
+#endif
@@ -5,12 +5,28 @@
 */
 
 #include "decoder_jni.h"  // NOLINT: build/include
+#include "allocator.h"  // NOLINT: build/include
 
 #include <brotli/decode.h>
 
+#include <cstring>
 #include <new>
 
 namespace {
+/* Leading metadata blocks larger than this are not captured. */
+const size_t kMaxMetadataSize = 64;
+
+/* Content info metadata blocks start with this magic. */
+const uint8_t kContentInfoMagic[4] = {'B', 'R', 'C', 'I'};
+
+/* Capture progress of the leading content info metadata block. */
+enum MetadataState {
+  METADATA_PENDING,
+  METADATA_CAPTURING,
+  METADATA_CAPTURED,
+  METADATA_SKIPPED
+};
+
 /* A structure used to persist the decoder's state in between calls. */
 typedef struct DecoderHandle {
   BrotliDecoderState* state;
@@ -19,8 +35,24 @@ typedef struct DecoderHandle {
   size_t dictionary_count;
 
   uint8_t* input_start;
+  /* Either input_start, or caller-owned direct memory. */
+  const uint8_t* input_data;
   size_t input_offset;
   size_t input_length;
+
+  /* Allocation hook; null for default malloc / free. */
+  Brotli4jAllocator* allocator;
+
+  uint8_t metadata[kMaxMetadataSize];
+  size_t metadata_size;
+  size_t metadata_expected;
+  MetadataState metadata_state;
+
+  /* True once a decode call wrote or buffered any output. */
+  bool output_seen;
+  /* Output region of the running decode call, if any. */
+  const uint8_t* out_start;
+  uint8_t* const* next_out;
 } DecoderHandle;
 
 /* Obtain handle from opaque pointer. */
@@ -28,6 +60,129 @@ DecoderHandle* getHandle(void* opaque) {
   return static_cast<DecoderHandle*>(opaque);
 }
 
+/* Check if any data meta-block has been decoded so far. */
+bool hasDecodedData(DecoderHandle* handle) {
+  if (handle->output_seen || BrotliDecoderHasMoreOutput(handle->state)) {
+    return true;
+  }
+  /* Output written straight to caller memory by the running decode call. */
+  return handle->next_out && *handle->next_out != handle->out_start;
+}
+
+/* Start capturing a metadata block, if it fits and precedes any data. */
+void onMetadataStart(void* opaque, size_t size) {
+  DecoderHandle* handle = getHandle(opaque);
+  if (handle->metadata_state != METADATA_PENDING ||
+      size < sizeof(kContentInfoMagic)) {
+    return;
+  }
+  if (size > kMaxMetadataSize || hasDecodedData(handle)) {
+    handle->metadata_state = METADATA_SKIPPED;
+    return;
+  }
+  handle->metadata_size = 0;
+  handle->metadata_expected = size;
+  handle->metadata_state = METADATA_CAPTURING;
+}
+
+/* Accumulate metadata block contents. */
+void onMetadataChunk(void* opaque, const uint8_t* data, size_t size) {
+  DecoderHandle* handle = getHandle(opaque);
+  if (handle->metadata_state != METADATA_CAPTURING) {
+    return;
+  }
+  size_t room = handle->metadata_expected - handle->metadata_size;
+  if (size > room) size = room;
+  memcpy(handle->metadata + handle->metadata_size, data, size);
+  handle->metadata_size += size;
+  if (handle->metadata_size == handle->metadata_expected) {
+    /* Other leading metadata is skipped; content info may still follow. */
+    bool content_info = memcmp(handle->metadata, kContentInfoMagic,
+                               sizeof(kContentInfoMagic)) == 0;
+    handle->metadata_state =
+        content_info ? METADATA_CAPTURED : METADATA_PENDING;
+  }
+}
+
+/* Create decoder instance using allocation hook stored in handle. */
+BrotliDecoderState* createState(DecoderHandle* handle) {
+  Brotli4jAllocator* allocator = handle->allocator;
+  BrotliDecoderState* state = allocator ?
+      BrotliDecoderCreateInstance(allocator->alloc_func, allocator->free_func,
+                                  allocator->opaque) :
+      BrotliDecoderCreateInstance(nullptr, nullptr, nullptr);
+  handle->metadata_size = 0;
+  handle->metadata_expected = 0;
+  handle->metadata_state = METADATA_PENDING;
+  handle->output_seen = false;
+  handle->out_start = nullptr;
+  handle->next_out = nullptr;
+  if (state) {
+    BrotliDecoderSetMetadataCallbacks(state, onMetadataStart, onMetadataChunk,
+                                      handle);
+  }
+  return state;
+}
+
+/* Release references to attached dictionaries. */
+void releaseDictionaries(JNIEnv* env, DecoderHandle* handle) {
+  for (size_t i = 0; i < handle->dictionary_count; ++i) {
+    env->DeleteGlobalRef(handle->dictionary_refs[i]);
+    handle->dictionary_refs[i] = nullptr;
+  }
+  handle->dictionary_count = 0;
+}
+
+/* Decode pending input into out (if not null), and store status to context.
+   No JNI calls are made, so that out could be a pinned array.
+   Returns number of bytes written to out. */
+size_t decompressStream(DecoderHandle* handle, jlong* context, uint8_t* out,
+                        size_t out_size) {
+  const uint8_t* in = handle->input_data + handle->input_offset;
+  size_t in_size = handle->input_length - handle->input_offset;
+  size_t available_out = out_size;
+  uint8_t* next_out = out;
+  if (out) {
+    handle->out_start = out;
+    handle->next_out = &next_out;
+  }
+  BrotliDecoderResult status = BrotliDecoderDecompressStream(handle->state,
+      &in_size, &in, &available_out, out ? &next_out : nullptr, nullptr);
+  handle->out_start = nullptr;
+  handle->next_out = nullptr;
+  handle->input_offset = handle->input_length - in_size;
+  switch (status) {
+    case BROTLI_DECODER_RESULT_SUCCESS:
+      /* Bytes after stream end are not allowed. */
+      context[1] = (handle->input_offset == handle->input_length) ? 1 : 0;
+      break;
+
+    case BROTLI_DECODER_RESULT_NEEDS_MORE_INPUT:
+      context[1] = 2;
+      break;
+
+    case BROTLI_DECODER_RESULT_NEEDS_MORE_OUTPUT:
+      context[1] = 3;
+      break;
+
+    default:
+      context[1] = 0;
+      break;
+  }
+  context[2] = BrotliDecoderHasMoreOutput(handle->state) ? 1 : 0;
+  if (context[2] || available_out != out_size) {
+    handle->output_seen = true;
+  }
+  return out_size - available_out;
+}
+
+/* Decode pending input and report status; see nativePush. */
+void decompress(JNIEnv* env, jlongArray ctx, jlong* context,
+                DecoderHandle* handle) {
+  decompressStream(handle, context, nullptr, 0);
+  env->SetLongArrayRegion(ctx, 0, 3, context);
+}
+
 }  /* namespace */
 
 #ifdef __cplusplus
@@ -41,11 +196,13 @@ extern "C" {
  * cookie is 0.
  *
  * @param ctx {out_cookie, in_directBufferSize} tuple
+ * @param allocator address of Brotli4jAllocator, or 0 for default allocator;
+ *                  reference is owned by decoder, even if creation fails
  * @returns direct ByteBuffer if directBufferSize is not 0; otherwise null
  */
 JNIEXPORT jobject JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeCreate(
-    JNIEnv* env, jobject /*jobj*/, jlongArray ctx) {
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jlong allocator) {
   bool ok = true;
   DecoderHandle* handle = nullptr;
   jlong context[3];
@@ -64,17 +221,20 @@ Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeCreate(
     handle->input_offset = 0;
     handle->input_length = 0;
     handle->input_start = nullptr;
+    handle->input_data = nullptr;
+    handle->allocator = reinterpret_cast<Brotli4jAllocator*>(allocator);
 
     if (input_size == 0) {
       ok = false;
     } else {
       handle->input_start = new (std::nothrow) uint8_t[input_size];
+      handle->input_data = handle->input_start;
       ok = !!handle->input_start;
     }
   }
 
   if (ok) {
-    handle->state = BrotliDecoderCreateInstance(nullptr, nullptr, nullptr);
+    handle->state = createState(handle);
     ok = !!handle->state;
   }
 
@@ -82,9 +242,15 @@ Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeCreate(
     /* TODO(eustas): future versions (e.g. when 128-bit architecture comes)
                      might require thread-safe cookie<->handle mapping. */
     context[0] = reinterpret_cast<jlong>(handle);
-  } else if (!!handle) {
-    if (!!handle->input_start) delete[] handle->input_start;
-    delete handle;
+  } else {
+    if (allocator) {
+      Brotli4jAllocator* hook = reinterpret_cast<Brotli4jAllocator*>(allocator);
+      hook->release(hook);
+    }
+    if (!!handle) {
+      if (!!handle->input_start) delete[] handle->input_start;
+      delete handle;
+    }
   }
 
   env->SetLongArrayRegion(ctx, 0, 3, context);
@@ -125,37 +291,49 @@ Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePush(
     if (handle->input_offset < handle->input_length) {
       return;
     }
+    handle->input_data = handle->input_start;
     handle->input_offset = 0;
     handle->input_length = input_length;
   }
 
-  /* Actual decompression. */
-  const uint8_t* in = handle->input_start + handle->input_offset;
-  size_t in_size = handle->input_length - handle->input_offset;
-  size_t out_size = 0;
-  BrotliDecoderResult status = BrotliDecoderDecompressStream(
-      handle->state, &in_size, &in, &out_size, nullptr, nullptr);
-  handle->input_offset = handle->input_length - in_size;
-  switch (status) {
-    case BROTLI_DECODER_RESULT_SUCCESS:
-      /* Bytes after stream end are not allowed. */
-      context[1] = (handle->input_offset == handle->input_length) ? 1 : 0;
-      break;
-
-    case BROTLI_DECODER_RESULT_NEEDS_MORE_INPUT:
-      context[1] = 2;
-      break;
+  decompress(env, ctx, context, handle);
+}
 
-    case BROTLI_DECODER_RESULT_NEEDS_MORE_OUTPUT:
-      context[1] = 3;
-      break;
+/**
+ * Push caller-owned direct memory to decoder without copying it.
+ *
+ * Memory MUST stay valid until decoder reports that input is consumed.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @param input direct ByteBuffer
+ * @param input_offset offset of the first byte to decode within input
+ * @param input_length number of bytes to decode
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePushDirect(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject input,
+    jint input_offset, jint input_length) {
+  jlong context[3];
+  env->GetLongArrayRegion(ctx, 0, 3, context);
+  DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  context[1] = 0;  /* ERROR */
+  context[2] = 0;
+  env->SetLongArrayRegion(ctx, 0, 3, context);
 
-    default:
-      context[1] = 0;
-      break;
+  /* Still have unconsumed data. Workflow is broken. */
+  if (handle->input_offset < handle->input_length) {
+    return;
   }
-  context[2] = BrotliDecoderHasMoreOutput(handle->state) ? 1 : 0;
-  env->SetLongArrayRegion(ctx, 0, 3, context);
+  const uint8_t* address =
+      static_cast<const uint8_t*>(env->GetDirectBufferAddress(input));
+  if (!address) {
+    return;
+  }
+  handle->input_data = address + input_offset;
+  handle->input_offset = 0;
+  handle->input_length = input_length;
+
+  decompress(env, ctx, context, handle);
 }
 
 /**
@@ -208,6 +386,152 @@ Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullBounded(
   return pullImpl(env, ctx, cap);
 }
 
+/**
+ * Continue decoding pending input, writing decompressed data directly to
+ * caller-owned memory, rather than exposing decoder-owned output.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @param output direct ByteBuffer or byte array
+ * @param output_offset offset of the first byte to write within output
+ * @param output_length number of bytes available for writing
+ * @returns number of bytes written; -1 if output is not accessible
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullInto(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject output,
+    jint output_offset, jint output_length) {
+  jlong context[3];
+  env->GetLongArrayRegion(ctx, 0, 3, context);
+  DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+
+  /* Direct address MUST be resolved before array is pinned. */
+  uint8_t* address =
+      static_cast<uint8_t*>(env->GetDirectBufferAddress(output));
+  void* array = nullptr;
+  if (!address) {
+    array = env->GetPrimitiveArrayCritical(static_cast<jarray>(output),
+                                           nullptr);
+    if (!array) {
+      return -1;
+    }
+    address = static_cast<uint8_t*>(array);
+  }
+  size_t written = decompressStream(handle, context, address + output_offset,
+                                    static_cast<size_t>(output_length));
+  if (!!array) {
+    env->ReleasePrimitiveArrayCritical(static_cast<jarray>(output), array, 0);
+  }
+  env->SetLongArrayRegion(ctx, 0, 3, context);
+  return static_cast<jint>(written);
+}
+
+/**
+ * Decompresses a whole stream in a single call, without a persistent decoder.
+ *
+ * Both input and output are either direct ByteBuffers or byte arrays. Unlike
+ * upstream BrotliDecoderDecompress, too small output region is told apart
+ * from corrupted input, and bytes after stream end are rejected.
+ *
+ * @param large_window accept large window streams
+ * @param disable_reallocation allocate ring buffer according to window size
+ * @returns length of decompressed data; -1 if input is corrupted or followed by
+ *          extra bytes; -2 if output region is too small; -3 if input is
+ *          truncated
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDecompress(
+    JNIEnv* env, jobject /*jobj*/, jboolean large_window,
+    jboolean disable_reallocation, jobject input, jint input_offset,
+    jint input_length, jobject output, jint output_offset,
+    jint output_length) {
+  BrotliDecoderState* state =
+      BrotliDecoderCreateInstance(nullptr, nullptr, nullptr);
+  if (!state) {
+    return -1;
+  }
+  bool ok = true;
+  if (large_window) {
+    ok = !!BrotliDecoderSetParameter(state, BROTLI_DECODER_PARAM_LARGE_WINDOW,
+                                     1);
+  }
+  if (ok && disable_reallocation) {
+    ok = !!BrotliDecoderSetParameter(state,
+        BROTLI_DECODER_PARAM_DISABLE_RING_BUFFER_REALLOCATION, 1);
+  }
+
+  /* Direct addresses MUST be resolved before arrays are pinned. */
+  const uint8_t* input_address =
+      static_cast<const uint8_t*>(env->GetDirectBufferAddress(input));
+  uint8_t* output_address =
+      static_cast<uint8_t*>(env->GetDirectBufferAddress(output));
+  void* input_array = nullptr;
+  void* output_array = nullptr;
+  if (ok && !input_address) {
+    input_array =
+        env->GetPrimitiveArrayCritical(static_cast<jarray>(input), nullptr);
+    input_address = static_cast<const uint8_t*>(input_array);
+    ok = !!input_array;
+  }
+  if (ok && !output_address) {
+    output_array =
+        env->GetPrimitiveArrayCritical(static_cast<jarray>(output), nullptr);
+    output_address = static_cast<uint8_t*>(output_array);
+    ok = !!output_array;
+  }
+
+  BrotliDecoderResult result = BROTLI_DECODER_RESULT_ERROR;
+  size_t available_in = static_cast<size_t>(input_length);
+  size_t available_out = static_cast<size_t>(output_length);
+  if (ok) {
+    const uint8_t* next_in = input_address + input_offset;
+    uint8_t* next_out = output_address + output_offset;
+    result = BrotliDecoderDecompressStream(state, &available_in, &next_in,
+        &available_out, &next_out, nullptr);
+  }
+
+  if (!!output_array) {
+    env->ReleasePrimitiveArrayCritical(static_cast<jarray>(output),
+                                       output_array, 0);
+  }
+  if (!!input_array) {
+    env->ReleasePrimitiveArrayCritical(static_cast<jarray>(input),
+        input_array, JNI_ABORT);
+  }
+  BrotliDecoderDestroyInstance(state);
+
+  if (result == BROTLI_DECODER_RESULT_SUCCESS && available_in == 0) {
+    return static_cast<jint>(output_length - available_out);
+  }
+  if (result == BROTLI_DECODER_RESULT_NEEDS_MORE_OUTPUT) return -2;
+  return (result == BROTLI_DECODER_RESULT_NEEDS_MORE_INPUT) ? -3 : -1;
+}
+
+/**
+ * Returns contents of the content info metadata block preceding stream data.
+ *
+ * @param ctx {in_cookie} tuple
+ * @returns byte array; null if no such block has been fully decoded yet, it
+ *          is longer than kMaxMetadataSize, or it follows data
+ */
+JNIEXPORT jbyteArray JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeGetMetadata(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx) {
+  jlong context[1];
+  env->GetLongArrayRegion(ctx, 0, 1, context);
+  DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  if (handle->metadata_state != METADATA_CAPTURED) {
+    return nullptr;
+  }
+  jsize size = static_cast<jsize>(handle->metadata_size);
+  jbyteArray result = env->NewByteArray(size);
+  if (!result) {
+    return nullptr;
+  }
+  env->SetByteArrayRegion(result, 0, size,
+                          reinterpret_cast<const jbyte*>(handle->metadata));
+  return result;
+}
+
 /**
  * Releases all used resources.
  *
@@ -220,13 +544,60 @@ Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDestroy(
   env->GetLongArrayRegion(ctx, 0, 3, context);
   DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
   BrotliDecoderDestroyInstance(handle->state);
-  for (size_t i = 0; i < handle->dictionary_count; ++i) {
-    env->DeleteGlobalRef(handle->dictionary_refs[i]);
+  releaseDictionaries(env, handle);
+  if (handle->allocator) {
+    handle->allocator->release(handle->allocator);
   }
   delete[] handle->input_start;
   delete handle;
 }
 
+/**
+ * Resets decoder to the state right after creation.
+ *
+ * Input buffer is retained; attached dictionaries are released. Brotli has no
+ * public reset, so the instance is recreated; with an arena allocator its
+ * large blocks are recycled rather than freed.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @returns false if decoder instance could not be recreated
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeReset(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx) {
+  jlong context[3];
+  env->GetLongArrayRegion(ctx, 0, 3, context);
+  DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  BrotliDecoderDestroyInstance(handle->state);
+  releaseDictionaries(env, handle);
+  handle->input_data = handle->input_start;
+  handle->input_offset = 0;
+  handle->input_length = 0;
+  handle->state = createState(handle);
+  context[1] = 2;
+  context[2] = 0;
+  env->SetLongArrayRegion(ctx, 1, 2, context + 1);
+  return static_cast<jboolean>(!!handle->state);
+}
+
+/**
+ * Sets decoder parameter; MUST be invoked before decoding starts.
+ *
+ * @param ctx {in_cookie} tuple
+ * @param parameter see BrotliDecoderParameter
+ * @returns false if parameter is not accepted
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeSetParameter(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jint parameter, jint value) {
+  jlong context[1];
+  env->GetLongArrayRegion(ctx, 0, 1, context);
+  DecoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  return static_cast<jboolean>(!!BrotliDecoderSetParameter(handle->state,
+      static_cast<BrotliDecoderParameter>(parameter),
+      static_cast<uint32_t>(value)));
+}
+
 JNIEXPORT jboolean JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeAttachDictionary(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject dictionary) {
@@ -24,7 +24,7 @@ extern "C" {
  */
 JNIEXPORT jobject JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeCreate(
-    JNIEnv* env, jobject /*jobj*/, jlongArray ctx);
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jlong allocator);
 
 /**
  * Push data to decoder.
@@ -44,6 +44,19 @@ JNIEXPORT void JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePush(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jint input_length);
 
+/**
+ * Push caller-owned direct memory to decoder without copying it.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @param input direct ByteBuffer; MUST stay valid until input is consumed
+ * @param input_offset offset of the first byte to decode within input
+ * @param input_length number of bytes to decode
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePushDirect(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject input,
+    jint input_offset, jint input_length);
+
 /**
  * Pull decompressed data from decoder.
  *
@@ -71,6 +84,47 @@ JNIEXPORT jobject JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullBounded(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jint max_bytes);
 
+/**
+ * Continue decoding pending input, writing decompressed data directly to
+ * caller-owned memory.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @param output direct ByteBuffer or byte array
+ * @param output_offset offset of the first byte to write within output
+ * @param output_length number of bytes available for writing
+ * @returns number of bytes written; -1 if output is not accessible
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullInto(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject output,
+    jint output_offset, jint output_length);
+
+/**
+ * Decompresses a whole stream in a single call, without a persistent decoder.
+ *
+ * @param large_window accept large window streams
+ * @param disable_reallocation allocate ring buffer according to window size
+ * @returns length of decompressed data; -1 if input is corrupted or followed by
+ *          extra bytes; -2 if output region is too small; -3 if input is
+ *          truncated
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDecompress(
+    JNIEnv* env, jobject /*jobj*/, jboolean large_window,
+    jboolean disable_reallocation, jobject input, jint input_offset,
+    jint input_length, jobject output, jint output_offset,
+    jint output_length);
+
+/**
+ * Returns contents of the first non-empty metadata block.
+ *
+ * @param ctx {in_cookie} tuple
+ * @returns byte array; null if no such block has been decoded
+ */
+JNIEXPORT jbyteArray JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeGetMetadata(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx);
+
 /**
  * Releases all used resources.
  *
@@ -80,10 +134,31 @@ JNIEXPORT void JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDestroy(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx);
 
+/**
+ * Resets decoder to the state right after creation.
+ *
+ * @param ctx {in_cookie, out_status} tuple
+ * @returns false if decoder instance could not be recreated
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeReset(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx);
+
 JNIEXPORT jboolean JNICALL
 Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeAttachDictionary(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject dictionary);
 
+/**
+ * Sets decoder parameter; MUST be invoked before decoding starts.
+ *
+ * @param ctx {in_cookie} tuple
+ * @param parameter see BrotliDecoderParameter
+ * @returns false if parameter is not accepted
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeSetParameter(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jint parameter, jint value);
+
 #ifdef __cplusplus
 }
 #endif
@@ -13,24 +13,43 @@ extern "C" {
 #endif
 
 static const JNINativeMethod kDecoderMethods[] = {
-    {"nativeCreate", "([J)Ljava/nio/ByteBuffer;",
+    {"nativeCreate", "([JJ)Ljava/nio/ByteBuffer;",
      reinterpret_cast<void*>(
          Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeCreate)},
     {"nativePush", "([JI)V",
      reinterpret_cast<void*>(
          Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePush)},
+    {"nativePushDirect", "([JLjava/nio/ByteBuffer;II)V",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePushDirect)},
     {"nativePull", "([J)Ljava/nio/ByteBuffer;",
      reinterpret_cast<void*>(
          Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePull)},
     {"nativePullBounded", "([JI)Ljava/nio/ByteBuffer;",
      reinterpret_cast<void*>(
          Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullBounded)},
+    {"nativePullInto", "([JLjava/lang/Object;II)I",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativePullInto)},
+    {"nativeDecompress",
+     "(ZZLjava/lang/Object;IILjava/lang/Object;II)I",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDecompress)},
+    {"nativeGetMetadata", "([J)[B",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeGetMetadata)},
     {"nativeDestroy", "([J)V",
      reinterpret_cast<void*>(
          Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeDestroy)},
+    {"nativeReset", "([J)Z",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeReset)},
     {"nativeAttachDictionary", "([JLjava/nio/ByteBuffer;)Z",
      reinterpret_cast<void*>(
-         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeAttachDictionary)}};
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeAttachDictionary)},
+    {"nativeSetParameter", "([JII)Z",
+     reinterpret_cast<void*>(
+         Java_com_aayushatharva_brotli4j_decoder_DecoderJNI_nativeSetParameter)}};
 
 JNIEXPORT jint JNI_OnLoad(JavaVM* vm, void* reserved) {
   JNIEnv* env;
@@ -4,12 +4,19 @@
    See file LICENSE for detail or copy at https://opensource.org/licenses/MIT
 */
 
+#include "allocator.h"  // NOLINT: build/include
+
 #include <brotli/encode.h>
 #include <jni.h>
 
 #include <new>
 
 namespace {
+/* Maximal number of {parameter, value} pairs accepted from Java. */
+const jsize kMaxParameters = 16;
+/* Idle memory kept by the arena shared by messages of a batch. */
+const size_t kBatchArenaRetained = static_cast<size_t>(64) << 20;
+
 /* A structure used to persist the encoder's state in between calls. */
 typedef struct EncoderHandle {
   BrotliEncoderState* state;
@@ -18,8 +25,16 @@ typedef struct EncoderHandle {
   size_t dictionary_count;
 
   uint8_t* input_start;
+  /* Either input_start, or caller-owned direct memory. */
+  const uint8_t* input_data;
   size_t input_offset;
   size_t input_last;
+
+  jint parameters[2 * kMaxParameters];
+  jsize parameter_count;
+
+  /* Allocation hook; null for default malloc / free. */
+  Brotli4jAllocator* allocator;
 } EncoderHandle;
 
 /* Obtain handle from opaque pointer. */
@@ -27,6 +42,219 @@ EncoderHandle* getHandle(void* opaque) {
   return static_cast<EncoderHandle*>(opaque);
 }
 
+/* Apply {parameter, value} pairs to encoder instance. */
+bool setParameters(BrotliEncoderState* state, const jint* parameters,
+                   jsize count) {
+  for (jsize i = 0; i < count; ++i) {
+    BrotliEncoderParameter parameter =
+        static_cast<BrotliEncoderParameter>(parameters[2 * i]);
+    uint32_t value = static_cast<uint32_t>(parameters[2 * i + 1]);
+    if (!BrotliEncoderSetParameter(state, parameter, value)) {
+      return false;
+    }
+  }
+  return true;
+}
+
+/* Copy {parameter, value} pairs from Java array; count is set to pairs. */
+bool readParameters(JNIEnv* env, jintArray parameters, jint* out,
+                    jsize* count) {
+  jsize length = env->GetArrayLength(parameters);
+  if ((length % 2) != 0 || length > 2 * kMaxParameters) {
+    return false;
+  }
+  env->GetIntArrayRegion(parameters, 0, length, out);
+  *count = length / 2;
+  return true;
+}
+
+/* Create encoder instance and apply parameters stored in handle. */
+bool createState(EncoderHandle* handle) {
+  Brotli4jAllocator* allocator = handle->allocator;
+  handle->state = allocator ?
+      BrotliEncoderCreateInstance(allocator->alloc_func, allocator->free_func,
+                                  allocator->opaque) :
+      BrotliEncoderCreateInstance(nullptr, nullptr, nullptr);
+  if (!handle->state) {
+    return false;
+  }
+  if (!setParameters(handle->state, handle->parameters,
+                     handle->parameter_count)) {
+    BrotliEncoderDestroyInstance(handle->state);
+    handle->state = nullptr;
+    return false;
+  }
+  return true;
+}
+
+/* Release references to attached dictionaries. */
+void releaseDictionaries(JNIEnv* env, EncoderHandle* handle) {
+  for (size_t i = 0; i < handle->dictionary_count; ++i) {
+    env->DeleteGlobalRef(handle->dictionary_refs[i]);
+    handle->dictionary_refs[i] = nullptr;
+  }
+  handle->dictionary_count = 0;
+}
+
+/* Obtain address of direct buffer; null if data is not a direct buffer.
+   MUST be invoked before any array is pinned; no JNI calls are allowed inside
+   of critical region. */
+uint8_t* getDirectAddress(JNIEnv* env, jobject data) {
+  return static_cast<uint8_t*>(env->GetDirectBufferAddress(data));
+}
+
+/* Settings of one-shot compression. */
+typedef struct OneShotParameters {
+  jint pairs[2 * kMaxParameters];
+  jsize count;
+  int quality;
+  int lgwin;
+  BrotliEncoderMode mode;
+  /* Only quality, lgwin and mode are set. */
+  bool basic;
+} OneShotParameters;
+
+/* Copy {parameter, value} pairs from Java array and classify them. */
+bool readOneShotParameters(JNIEnv* env, jintArray parameters,
+                           OneShotParameters* out) {
+  if (!readParameters(env, parameters, out->pairs, &out->count)) {
+    return false;
+  }
+  out->quality = BROTLI_DEFAULT_QUALITY;
+  out->lgwin = BROTLI_DEFAULT_WINDOW;
+  out->mode = BROTLI_DEFAULT_MODE;
+  out->basic = true;
+  for (jsize i = 0; i < out->count; ++i) {
+    switch (out->pairs[2 * i]) {
+      case BROTLI_PARAM_QUALITY: out->quality = out->pairs[2 * i + 1]; break;
+      case BROTLI_PARAM_LGWIN: out->lgwin = out->pairs[2 * i + 1]; break;
+      case BROTLI_PARAM_MODE:
+        out->mode = static_cast<BrotliEncoderMode>(out->pairs[2 * i + 1]);
+        break;
+      default: out->basic = false; break;
+    }
+  }
+  return true;
+}
+
+/* Compress a region; encoded_size is room on input and size on output.
+   If only quality, lgwin and mode are specified and no allocator is given,
+   upstream BrotliEncoderCompress is used; otherwise an encoder instance is
+   created with allocator (null for malloc) and configured with all the
+   parameters. Output for basic parameters is the same either way. */
+bool compressOneShot(const OneShotParameters& params,
+                     Brotli4jAllocator* allocator, const uint8_t* input,
+                     size_t input_length, uint8_t* output,
+                     size_t* encoded_size) {
+  if (params.basic && (!allocator || input_length == 0)) {
+    return !!BrotliEncoderCompress(params.quality, params.lgwin, params.mode,
+        input_length, input, encoded_size, output);
+  }
+  BrotliEncoderState* state = allocator ?
+      BrotliEncoderCreateInstance(allocator->alloc_func, allocator->free_func,
+                                  allocator->opaque) :
+      BrotliEncoderCreateInstance(nullptr, nullptr, nullptr);
+  if (!state) {
+    return false;
+  }
+  size_t room = *encoded_size;
+  size_t available_in = input_length;
+  const uint8_t* next_in = input;
+  size_t available_out = room;
+  uint8_t* next_out = output;
+  BrotliEncoderSetParameter(state, BROTLI_PARAM_SIZE_HINT,
+      static_cast<uint32_t>(input_length));
+  bool ok = setParameters(state, params.pairs, params.count);
+  if (ok && params.basic && params.lgwin > BROTLI_MAX_WINDOW_BITS) {
+    ok = !!BrotliEncoderSetParameter(state, BROTLI_PARAM_LARGE_WINDOW,
+                                     BROTLI_TRUE);
+  }
+  ok = ok && BrotliEncoderCompressStream(state, BROTLI_OPERATION_FINISH,
+          &available_in, &next_in, &available_out, &next_out, nullptr) &&
+      BrotliEncoderIsFinished(state);
+  *encoded_size = room - available_out;
+  BrotliEncoderDestroyInstance(state);
+  size_t bound = BrotliEncoderMaxCompressedSize(input_length);
+  if (params.basic && (!ok || (bound != 0 && *encoded_size > bound))) {
+    /* Upstream stores such input uncompressed. */
+    *encoded_size = room;
+    return !!BrotliEncoderCompress(params.quality, params.lgwin, params.mode,
+        input_length, input, encoded_size, output);
+  }
+  return ok;
+}
+
+/* Resolve addresses of array-backed regions; direct addresses are already
+   resolved. Arrays are pinned with GetPrimitiveArrayCritical, so no JNI calls
+   are allowed till unpinRegions. */
+bool pinRegions(JNIEnv* env, jobject input, uint8_t** input_address,
+                void** input_array, jobject output, uint8_t** output_address,
+                void** output_array) {
+  if (!*input_address) {
+    *input_array = env->GetPrimitiveArrayCritical(
+        static_cast<jarray>(input), nullptr);
+    if (!*input_array) {
+      return false;
+    }
+    *input_address = static_cast<uint8_t*>(*input_array);
+  }
+  if (!*output_address) {
+    *output_array = env->GetPrimitiveArrayCritical(
+        static_cast<jarray>(output), nullptr);
+    if (!*output_array) {
+      if (!!*input_array) {
+        env->ReleasePrimitiveArrayCritical(
+            static_cast<jarray>(input), *input_array, JNI_ABORT);
+      }
+      return false;
+    }
+    *output_address = static_cast<uint8_t*>(*output_array);
+  }
+  return true;
+}
+
+/* Release arrays pinned by pinRegions. */
+void unpinRegions(JNIEnv* env, jobject input, void* input_array,
+                  jobject output, void* output_array) {
+  if (!!output_array) {
+    env->ReleasePrimitiveArrayCritical(
+        static_cast<jarray>(output), output_array, 0);
+  }
+  if (!!input_array) {
+    env->ReleasePrimitiveArrayCritical(
+        static_cast<jarray>(input), input_array, JNI_ABORT);
+  }
+}
+
+/* Map Java EncoderJNI.Operation ordinal to native operation. */
+bool toOperation(int operation, BrotliEncoderOperation* op) {
+  switch (operation) {
+    case 0: *op = BROTLI_OPERATION_PROCESS; return true;
+    case 1: *op = BROTLI_OPERATION_FLUSH; return true;
+    case 2: *op = BROTLI_OPERATION_FINISH; return true;
+    case 3: *op = BROTLI_OPERATION_EMIT_METADATA; return true;
+    default: return false;
+  }
+}
+
+/* Compress pending input and report status; see nativePush. */
+void compress(JNIEnv* env, jlongArray ctx, jlong* context,
+              EncoderHandle* handle, BrotliEncoderOperation op) {
+  const uint8_t* in = handle->input_data + handle->input_offset;
+  size_t in_size = handle->input_last - handle->input_offset;
+  size_t out_size = 0;
+  BROTLI_BOOL status = BrotliEncoderCompressStream(
+      handle->state, op, &in_size, &in, &out_size, nullptr, nullptr);
+  handle->input_offset = handle->input_last - in_size;
+  if (!!status) {
+    context[1] = 1;
+    context[2] = BrotliEncoderHasMoreOutput(handle->state) ? 1 : 0;
+    context[3] = (handle->input_offset != handle->input_last) ? 1 : 0;
+    context[4] = BrotliEncoderIsFinished(handle->state) ? 1 : 0;
+  }
+  env->SetLongArrayRegion(ctx, 0, 5, context);
+}
+
 }  /* namespace */
 
 #ifdef __cplusplus
@@ -39,12 +267,16 @@ extern "C" {
  * Cookie to address created encoder is stored in out_cookie. In case of failure
  * cookie is 0.
  *
- * @param ctx {out_cookie, in_directBufferSize, in_quality, in_lgwin} tuple
+ * @param ctx {out_cookie, in_directBufferSize} tuple
+ * @param parameters flat {parameter, value} pairs; see BrotliEncoderParameter
+ * @param allocator address of Brotli4jAllocator, or 0 for default allocator;
+ *                  reference is owned by encoder, even if creation fails
  * @returns direct ByteBuffer if directBufferSize is not 0; otherwise null
  */
 JNIEXPORT jobject JNICALL
 Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeCreate(
-    JNIEnv* env, jobject /*jobj*/, jlongArray ctx) {
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jintArray parameters,
+    jlong allocator) {
   bool ok = true;
   EncoderHandle* handle = nullptr;
   jlong context[5];
@@ -62,42 +294,40 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeCreate(
     handle->input_offset = 0;
     handle->input_last = 0;
     handle->input_start = nullptr;
+    handle->input_data = nullptr;
+    handle->allocator = reinterpret_cast<Brotli4jAllocator*>(allocator);
 
     if (input_size == 0) {
       ok = false;
     } else {
       handle->input_start = new (std::nothrow) uint8_t[input_size];
+      handle->input_data = handle->input_start;
       ok = !!handle->input_start;
     }
   }
 
   if (ok) {
-    handle->state = BrotliEncoderCreateInstance(nullptr, nullptr, nullptr);
-    ok = !!handle->state;
+    ok = readParameters(env, parameters, handle->parameters,
+                        &handle->parameter_count);
   }
 
   if (ok) {
-    int quality = context[2];
-    if (quality >= 0) {
-      BrotliEncoderSetParameter(handle->state, BROTLI_PARAM_QUALITY, quality);
-    }
-    int lgwin = context[3];
-    if (lgwin >= 0) {
-      BrotliEncoderSetParameter(handle->state, BROTLI_PARAM_LGWIN, lgwin);
-    }
-    int mode = context[4];
-    if (mode >= 0) {
-      BrotliEncoderSetParameter(handle->state, BROTLI_PARAM_MODE, mode);
-    }
+    ok = createState(handle);
   }
 
   if (ok) {
     /* TODO(eustas): future versions (e.g. when 128-bit architecture comes)
                      might require thread-safe cookie<->handle mapping. */
     context[0] = reinterpret_cast<jlong>(handle);
-  } else if (!!handle) {
-    if (!!handle->input_start) delete[] handle->input_start;
-    delete handle;
+  } else {
+    if (allocator) {
+      Brotli4jAllocator* hook = reinterpret_cast<Brotli4jAllocator*>(allocator);
+      hook->release(hook);
+    }
+    if (!!handle) {
+      if (!!handle->input_start) delete[] handle->input_start;
+      delete handle;
+    }
   }
 
   env->SetLongArrayRegion(ctx, 0, 1, context);
@@ -128,11 +358,8 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePush(
   env->SetLongArrayRegion(ctx, 0, 5, context);
 
   BrotliEncoderOperation op;
-  switch (operation) {
-    case 0: op = BROTLI_OPERATION_PROCESS; break;
-    case 1: op = BROTLI_OPERATION_FLUSH; break;
-    case 2: op = BROTLI_OPERATION_FINISH; break;
-    default: return;  /* ERROR */
+  if (!toOperation(operation, &op)) {
+    return;  /* ERROR */
   }
 
   if (input_length != 0) {
@@ -140,24 +367,54 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePush(
     if (handle->input_offset < handle->input_last) {
       return;
     }
+    handle->input_data = handle->input_start;
     handle->input_offset = 0;
     handle->input_last = input_length;
   }
 
-  /* Actual compression. */
-  const uint8_t* in = handle->input_start + handle->input_offset;
-  size_t in_size = handle->input_last - handle->input_offset;
-  size_t out_size = 0;
-  BROTLI_BOOL status = BrotliEncoderCompressStream(
-      handle->state, op, &in_size, &in, &out_size, nullptr, nullptr);
-  handle->input_offset = handle->input_last - in_size;
-  if (!!status) {
-    context[1] = 1;
-    context[2] = BrotliEncoderHasMoreOutput(handle->state) ? 1 : 0;
-    context[3] = (handle->input_offset != handle->input_last) ? 1 : 0;
-    context[4] = BrotliEncoderIsFinished(handle->state) ? 1 : 0;
-  }
+  compress(env, ctx, context, handle, op);
+}
+
+/**
+ * Push caller-owned direct memory to encoder without copying it.
+ *
+ * Memory MUST stay valid until encoder reports that input is consumed.
+ *
+ * @param ctx {in_cookie, in_operation_out_success, out_has_more_output,
+ *             out_has_remaining_input} tuple
+ * @param input direct ByteBuffer
+ * @param input_offset offset of the first byte to compress within input
+ * @param input_length number of bytes to compress
+ */
+JNIEXPORT void JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePushDirect(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject input,
+    jint input_offset, jint input_length) {
+  jlong context[5];
+  env->GetLongArrayRegion(ctx, 0, 5, context);
+  EncoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  int operation = context[1];
+  context[1] = 0;  /* ERROR */
   env->SetLongArrayRegion(ctx, 0, 5, context);
+
+  BrotliEncoderOperation op;
+  if (!toOperation(operation, &op)) {
+    return;  /* ERROR */
+  }
+  /* Still have unconsumed data. Workflow is broken. */
+  if (handle->input_offset < handle->input_last) {
+    return;
+  }
+  const uint8_t* address =
+      static_cast<const uint8_t*>(env->GetDirectBufferAddress(input));
+  if (!address) {
+    return;
+  }
+  handle->input_data = address + input_offset;
+  handle->input_offset = 0;
+  handle->input_last = input_length;
+
+  compress(env, ctx, context, handle, op);
 }
 
 /**
@@ -196,13 +453,38 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeDestroy(
   env->GetLongArrayRegion(ctx, 0, 2, context);
   EncoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
   BrotliEncoderDestroyInstance(handle->state);
-  for (size_t i = 0; i < handle->dictionary_count; ++i) {
-    env->DeleteGlobalRef(handle->dictionary_refs[i]);
+  releaseDictionaries(env, handle);
+  if (handle->allocator) {
+    handle->allocator->release(handle->allocator);
   }
   delete[] handle->input_start;
   delete handle;
 }
 
+/**
+ * Resets encoder to the state right after creation.
+ *
+ * Input buffer and parameters are retained; attached dictionaries are
+ * released. Brotli has no public reset, so the instance is recreated; with an
+ * arena allocator its large blocks are recycled rather than freed.
+ *
+ * @param ctx {in_cookie} tuple
+ * @returns false if encoder instance could not be recreated
+ */
+JNIEXPORT jboolean JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeReset(
+    JNIEnv* env, jobject /*jobj*/, jlongArray ctx) {
+  jlong context[2];
+  env->GetLongArrayRegion(ctx, 0, 2, context);
+  EncoderHandle* handle = getHandle(reinterpret_cast<void*>(context[0]));
+  BrotliEncoderDestroyInstance(handle->state);
+  releaseDictionaries(env, handle);
+  handle->input_data = handle->input_start;
+  handle->input_offset = 0;
+  handle->input_last = 0;
+  return static_cast<jboolean>(createState(handle));
+}
+
 JNIEXPORT jboolean JNICALL
 Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeAttachDictionary(
     JNIEnv* env, jobject /*jobj*/, jlongArray ctx, jobject dictionary) {
@@ -252,6 +534,27 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeDestroyDictionary(
       reinterpret_cast<BrotliEncoderPreparedDictionary*>(address));
 }
 
+/**
+ * Calculates memory footprint of a prepared dictionary.
+ *
+ * @param dictionary direct ByteBuffer returned by nativePrepareDictionary
+ * @returns allocation size in bytes; 0 if dictionary is not valid
+ */
+JNIEXPORT jlong JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePreparedDictionarySize(
+    JNIEnv* env, jobject /*jobj*/, jobject dictionary) {
+  if (!dictionary) {
+    return 0;
+  }
+  uint8_t* address =
+      static_cast<uint8_t*>(env->GetDirectBufferAddress(dictionary));
+  if (!address) {
+    return 0;
+  }
+  return static_cast<jlong>(BrotliEncoderGetPreparedDictionarySize(
+      reinterpret_cast<BrotliEncoderPreparedDictionary*>(address)));
+}
+
 JNIEXPORT jobject JNICALL
 Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePrepareDictionary(
     JNIEnv* env, jobject /*jobj*/, jobject dictionary, jlong type) {
@@ -280,6 +583,183 @@ Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativePrepareDictionary(
   return env->NewDirectByteBuffer(prepared_dictionary, 4);
 }
 
+/**
+ * Compresses data in a single call.
+ *
+ * Both input and output are either direct ByteBuffers or byte arrays.
+ *
+ * If only quality, lgwin and mode are specified, upstream
+ * BrotliEncoderCompress is used; otherwise a temporary encoder instance is
+ * configured with all the parameters.
+ *
+ * @param parameters flat {parameter, value} pairs; see BrotliEncoderParameter
+ * @param pin if true, arrays are pinned for the whole compression, blocking
+ *            GC; otherwise they are copied to and from native memory
+ * @returns length of compressed data, or -1 if compression failed or output
+ *          region is too small
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeCompress(
+    JNIEnv* env, jobject /*jobj*/, jintArray parameters,
+    jobject input, jint input_offset, jint input_length,
+    jobject output, jint output_offset, jint output_length, jboolean pin) {
+  OneShotParameters params;
+  if (!readOneShotParameters(env, parameters, &params)) {
+    return -1;
+  }
+
+  uint8_t* input_address = getDirectAddress(env, input);
+  uint8_t* output_address = getDirectAddress(env, output);
+  size_t encoded_size = static_cast<size_t>(output_length);
+  if (!pin) {
+    uint8_t* input_copy = nullptr;
+    uint8_t* output_copy = nullptr;
+    bool ok = true;
+    /* One extra byte keeps allocations non-empty. */
+    if (!input_address) {
+      input_copy = new (std::nothrow) uint8_t[input_length + 1];
+      ok = !!input_copy;
+      if (ok) {
+        env->GetByteArrayRegion(static_cast<jbyteArray>(input), input_offset,
+            input_length, reinterpret_cast<jbyte*>(input_copy));
+      }
+    }
+    if (ok && !output_address) {
+      output_copy = new (std::nothrow) uint8_t[output_length + 1];
+      ok = !!output_copy;
+    }
+    ok = ok && compressOneShot(params, nullptr,
+        input_copy ? input_copy : input_address + input_offset,
+        static_cast<size_t>(input_length),
+        output_copy ? output_copy : output_address + output_offset,
+        &encoded_size);
+    if (ok && output_copy) {
+      env->SetByteArrayRegion(static_cast<jbyteArray>(output), output_offset,
+          static_cast<jsize>(encoded_size),
+          reinterpret_cast<jbyte*>(output_copy));
+    }
+    delete[] input_copy;
+    delete[] output_copy;
+    return ok ? static_cast<jint>(encoded_size) : -1;
+  }
+
+  void* input_array = nullptr;
+  void* output_array = nullptr;
+  if (!pinRegions(env, input, &input_address, &input_array,
+                  output, &output_address, &output_array)) {
+    return -1;
+  }
+
+  bool ok = compressOneShot(params, nullptr, input_address + input_offset,
+      static_cast<size_t>(input_length), output_address + output_offset,
+      &encoded_size);
+
+  unpinRegions(env, input, input_array, output, output_array);
+  return ok ? static_cast<jint>(encoded_size) : -1;
+}
+
+/**
+ * Compresses a batch of independent messages in a single call.
+ *
+ * Both input and output are either direct ByteBuffers or byte arrays. Message
+ * i spans [input_bounds[i], input_bounds[i + 1]) of input; messages starting
+ * with first are compressed one right after another into output, starting at
+ * output_bounds[first], and output_bounds[i + 1] is set to the end of each.
+ *
+ * Compression stops before the first message that might not fit the
+ * remaining output region, i.e. its BrotliEncoderMaxCompressedSize bound
+ * exceeds the room left.
+ *
+ * Encoder instances of all messages share one arena, so that memory freed by
+ * one message is reused by the next one. Arrays are pinned around each
+ * message only, so that GC is not blocked for the whole batch.
+ *
+ * @param parameters flat {parameter, value} pairs; see BrotliEncoderParameter
+ * @param input_bounds count + 1 ascending offsets within input
+ * @param output_bounds count + 1 offsets within output
+ * @param output_length end of output region
+ * @returns index of the first message left uncompressed, or -1 if
+ *          compression failed
+ */
+JNIEXPORT jint JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeCompressBatch(
+    JNIEnv* env, jobject /*jobj*/, jintArray parameters, jobject input,
+    jintArray input_bounds, jint first, jint count, jobject output,
+    jint output_length, jintArray output_bounds) {
+  OneShotParameters params;
+  if (!readOneShotParameters(env, parameters, &params) || first < 0 ||
+      first > count) {
+    return -1;
+  }
+  jint* bounds = new (std::nothrow) jint[2 * (static_cast<size_t>(count) + 1)];
+  if (!bounds) {
+    return -1;
+  }
+  jint* in_bounds = bounds;
+  jint* out_bounds = bounds + count + 1;
+  env->GetIntArrayRegion(input_bounds, 0, count + 1, in_bounds);
+  env->GetIntArrayRegion(output_bounds, first, 1, out_bounds + first);
+
+  uint8_t* input_direct = getDirectAddress(env, input);
+  uint8_t* output_direct = getDirectAddress(env, output);
+  Brotli4jAllocator* arena = Brotli4jCreateArena(kBatchArenaRetained);
+
+  jint done = first;
+  size_t position = static_cast<size_t>(out_bounds[first]);
+  size_t end = static_cast<size_t>(output_length);
+  if (position > end) {
+    done = -1;
+  }
+  for (; done >= 0 && done < count; ++done) {
+    size_t length = static_cast<size_t>(in_bounds[done + 1] - in_bounds[done]);
+    size_t bound = BrotliEncoderMaxCompressedSize(length);
+    if (bound == 0 || bound > end - position) {
+      break;
+    }
+    uint8_t* input_address = input_direct;
+    uint8_t* output_address = output_direct;
+    void* input_array = nullptr;
+    void* output_array = nullptr;
+    if (!pinRegions(env, input, &input_address, &input_array,
+                    output, &output_address, &output_array)) {
+      done = -1;
+      break;
+    }
+    size_t encoded_size = end - position;
+    bool ok = compressOneShot(params, arena, input_address + in_bounds[done],
+        length, output_address + position, &encoded_size);
+    unpinRegions(env, input, input_array, output, output_array);
+    if (!ok) {
+      done = -1;
+      break;
+    }
+    position += encoded_size;
+    out_bounds[done + 1] = static_cast<jint>(position);
+  }
+
+  if (arena) {
+    arena->release(arena);
+  }
+  if (done > first) {
+    env->SetIntArrayRegion(output_bounds, first + 1, done - first,
+                           out_bounds + first + 1);
+  }
+  delete[] bounds;
+  return done;
+}
+
+/**
+ * Returns the upper bound of one-shot compressed size.
+ *
+ * @returns 0 if result does not fit size_t
+ */
+JNIEXPORT jlong JNICALL
+Java_com_aayushatharva_brotli4j_encoder_EncoderJNI_nativeMaxCompressedSize(
+    JNIEnv* /*env*/, jobject /*jobj*/, jlong input_size) {
+  return static_cast<jlong>(
+      BrotliEncoderMaxCompressedSize(static_cast<size_t>(input_size)));
+}
+
 #ifdef __cplusplus
 }
 #endif